@@ -0,0 +1,55 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.service.AdminClientManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call latency of an admin round trip (listTopics) against an embedded broker:
+ * a fresh {@link Admin} per call, as the service used to do, versus the shared {@link AdminClientManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AdminClientBenchmark {
+
+    private EmbeddedKafkaKraftBroker broker;
+    private Map<String, Object> config;
+    private AdminClientManager manager;
+
+    @Setup
+    public void setUp() {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, "bench-a", "bench-b", "bench-c");
+        broker.afterPropertiesSet();
+        config = Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        manager = new AdminClientManager(config, new KafkaMcpProperties.Admin(), new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public Set<String> adminClientPerCall() throws Exception {
+        try (Admin admin = Admin.create(config)) {
+            return admin.listTopics().names().get();
+        }
+    }
+
+    @Benchmark
+    public Set<String> sharedAdminClient() throws Exception {
+        return manager.call(admin -> admin.listTopics().names());
+    }
+}
@@ -0,0 +1,526 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.KafkaMcpSbaiApplication;
+import com.elzakaria.kafkamcpsbai.tool.ResponseRenderer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
+import io.modelcontextprotocol.client.transport.HttpClientStreamableHttpTransport;
+import io.modelcontextprotocol.spec.McpClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the running server over its real transport: starts an embedded KRaft broker and the application on
+ * a random port, then, for each step of {@code clients}, opens that many MCP sessions over Streamable HTTP
+ * ({@code /mcp}) or SSE ({@code /sse} and {@code /mcp/message}, with {@code transport=sse}), has every session call
+ * tools from a weighted mix back to back for the warmup and measurement periods, and prints throughput, latency
+ * percentiles, broker connections, pooled consumers, platform threads, heap and GC for the step. {@code idle}
+ * further sessions are opened before the first step and kept open without calling anything, the way most agent
+ * sessions spend their time.
+ * <p>
+ * Options are {@code key=value} arguments; arguments starting with {@code --} are passed to the application, e.g.
+ * {@code --kafka.mcp.consumer.pool-size=32}. Clients and server share the JVM, so heap and GC figures include the
+ * clients' own (small) share. See docs/benchmarks.md.
+ */
+public class McpLoadTest {
+
+    private static final String TOPIC = "load";
+
+    private final Map<String, String> options;
+    private final List<String> appArgs;
+    private final Map<String, Integer> mix;
+    private final String[] weightedTools;
+    private final int partitions;
+    private final int seedRecords;
+    private final String value;
+    private final String transport;
+
+    private String baseUrl;
+    private MeterRegistry appRegistry;
+    private final List<McpSyncClient> idleSessions = Collections.synchronizedList(new ArrayList<>());
+
+    McpLoadTest(Map<String, String> options, List<String> appArgs) {
+        this.options = options;
+        this.appArgs = appArgs;
+        this.mix = parseMix(option("mix", "listTopics:2,describeTopic:2,produceMessage:2,consumeMessages:1,peekMessages:3"));
+        this.weightedTools = mix.entrySet().stream()
+                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
+                .toArray(String[]::new);
+        this.partitions = Integer.parseInt(option("partitions", "6"));
+        this.seedRecords = Integer.parseInt(option("seed", "10000"));
+        this.value = "x".repeat(Integer.parseInt(option("valueSize", "256")));
+        this.transport = option("transport", "streamable");
+        if (!transport.equals("streamable") && !transport.equals("sse")) {
+            throw new IllegalArgumentException("Unknown transport " + transport + "; expected streamable or sse");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (!arg.isBlank()) {
+                throw new IllegalArgumentException("Expected key=value or --app.property=value: " + arg);
+            }
+        }
+        new McpLoadTest(options, appArgs).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        LoggingSystem.get(McpLoadTest.class.getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, partitions, TOPIC);
+        broker.afterPropertiesSet();
+        ConfigurableApplicationContext context = null;
+        try {
+            seed(broker.getBrokersAsString());
+            List<String> args = new ArrayList<>(List.of(
+                    "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                    "--server.port=0",
+                    "--spring.ai.mcp.server.protocol=" + ("sse".equals(transport) ? "SSE" : "STREAMABLE"),
+                    "--spring.docker.compose.enabled=false",
+                    "--logging.level.root=WARN"));
+            args.addAll(appArgs);
+            context = new SpringApplication(KafkaMcpSbaiApplication.class).run(args.toArray(String[]::new));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            appRegistry = context.getBean(MeterRegistry.class);
+
+            Duration warmup = DurationStyle.detectAndParse(option("warmup", "10s"));
+            Duration duration = DurationStyle.detectAndParse(option("duration", "30s"));
+            Duration think = DurationStyle.detectAndParse(option("think", "0ms"));
+            int idle = intOption("idle", 0);
+            System.out.printf("%s transport, mix %s, %d partitions, %d seed records, %d-byte values, warmup %s, measure %s, think %s%n",
+                    transport, mix, partitions, seedRecords, value.length(), warmup, duration, think);
+            long idleStart = System.nanoTime();
+            int idleOpened = openIdle(idle);
+            System.out.printf("%d idle sessions opened in %.0f ms, %d failed%n%n",
+                    idleOpened, (System.nanoTime() - idleStart) / 1e6, idle - idleOpened);
+
+            List<StepResult> results = new ArrayList<>();
+            for (String clients : option("clients", "10").split(",")) {
+                StepResult result = runStep(Integer.parseInt(clients.trim()), warmup, duration, think);
+                result.print();
+                results.add(result);
+            }
+            if (results.size() > 1) {
+                System.out.println("Summary");
+                System.out.printf("%8s %10s %9s %9s %8s %8s %9s %8s %9s%n",
+                        "clients", "calls/s", "p50 ms", "p99 ms", "errors", "brokerCx", "consumers", "threads", "gc ms/s");
+                for (StepResult r : results) {
+                    Stats total = r.total();
+                    System.out.printf("%8d %10.1f %9.2f %9.2f %8d %8d %9d %8d %9.1f%n",
+                            r.clients, total.count / r.seconds, total.percentile(0.50), total.percentile(0.99),
+                            total.errors, r.peakBrokerConnections, r.peakConsumers, r.peakThreads,
+                            r.gcMillis / r.seconds);
+                }
+            }
+        } finally {
+            for (McpSyncClient session : idleSessions) {
+                session.closeGracefully();
+            }
+            if (context != null) {
+                context.close();
+            }
+            broker.destroy();
+        }
+    }
+
+    /**
+     * Opens sessions that stay connected for the whole run without calling tools; returns how many opened.
+     */
+    private int openIdle(int count) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> connects = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                connects.add(executor.submit(() -> idleSessions.add(connect())));
+            }
+            int opened = 0;
+            for (Future<?> connect : connects) {
+                try {
+                    connect.get();
+                    opened++;
+                } catch (ExecutionException e) {
+                    // Counted as failed
+                }
+            }
+            return opened;
+        }
+    }
+
+    private StepResult runStep(int clients, Duration warmup, Duration duration, Duration think) throws Exception {
+        StepResult result = new StepResult(clients, mix.keySet());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<McpSyncClient> sessions = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger connectFailures = new AtomicInteger();
+        try {
+            long connectStart = System.nanoTime();
+            List<Future<?>> connects = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                connects.add(executor.submit(() -> {
+                    try {
+                        sessions.add(connect());
+                    } catch (RuntimeException e) {
+                        connectFailures.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> connect : connects) {
+                connect.get();
+            }
+            result.connectMillis = (System.nanoTime() - connectStart) / 1e6;
+            result.connectFailures = connectFailures.get();
+
+            long measureStart = System.nanoTime() + warmup.toNanos();
+            long end = measureStart + duration.toNanos();
+            List<Worker> workers = new ArrayList<>();
+            List<Future<?>> running = new ArrayList<>();
+            for (McpSyncClient session : sessions) {
+                Worker worker = new Worker(session, measureStart, end, think);
+                workers.add(worker);
+                running.add(executor.submit(worker));
+            }
+
+            Sampler sampler = new Sampler();
+            while (System.nanoTime() < measureStart) {
+                Thread.sleep(200);
+            }
+            sampler.start();
+            while (System.nanoTime() < end) {
+                sampler.sample();
+                Thread.sleep(500);
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            sampler.finish(result);
+
+            // Calls are recorded when they start inside the window, so the window is the denominator
+            result.seconds = duration.toNanos() / 1e9;
+            for (Worker worker : workers) {
+                worker.stats.forEach((tool, stats) -> result.byTool.get(tool).merge(stats));
+            }
+        } finally {
+            for (McpSyncClient session : sessions) {
+                session.closeGracefully();
+            }
+            executor.shutdown();
+        }
+        return result;
+    }
+
+    private McpSyncClient connect() {
+        McpSyncClient client = McpClient.sync(clientTransport(baseUrl, transport))
+                .requestTimeout(Duration.ofSeconds(60))
+                .clientInfo(new McpSchema.Implementation("mcp-load-test", "1.0.0"))
+                .build();
+        client.initialize();
+        return client;
+    }
+
+    /**
+     * Client side of {@code transport}: {@code streamable} ({@code /mcp}) or {@code sse} ({@code /sse}).
+     */
+    static McpClientTransport clientTransport(String baseUrl, String transport) {
+        return switch (transport) {
+            case "streamable" -> HttpClientStreamableHttpTransport.builder(baseUrl)
+                    .endpoint("/mcp")
+                    .build();
+            case "sse" -> HttpClientSseClientTransport.builder(baseUrl)
+                    .sseEndpoint("/sse")
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown transport " + transport + "; expected streamable or sse");
+        };
+    }
+
+    private void seed(String bootstrapServers) {
+        Map<String, Object> config = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.LINGER_MS_CONFIG, 20);
+        try (KafkaProducer<String, String> producer =
+                     new KafkaProducer<>(config, new StringSerializer(), new StringSerializer())) {
+            for (int i = 0; i < seedRecords; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, "key-" + i, value));
+            }
+        }
+    }
+
+    /**
+     * Arguments for one call of {@code tool}; peeks land on a random offset of the seeded range.
+     */
+    private Map<String, Object> arguments(String tool) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (tool) {
+            case "listTopics", "listConsumerGroups", "describeCluster" -> Map.of();
+            case "describeTopic" -> Map.of("topicName", TOPIC);
+            case "produceMessage" -> Map.of("topicName", TOPIC, "message", value,
+                    "key", "key-" + random.nextInt(seedRecords + 1));
+            case "consumeMessages" -> Map.of("topicName", TOPIC, "maxMessages", intOption("consumeMax", 10),
+                    "fromBeginning", true, "timeoutSeconds", 5);
+            case "peekMessages" -> Map.of("topicName", TOPIC, "partition", random.nextInt(partitions),
+                    "offset", random.nextInt(Math.max(1, seedRecords / partitions)),
+                    "count", intOption("peekCount", 10));
+            default -> throw new IllegalArgumentException("No arguments defined for tool " + tool);
+        };
+    }
+
+    private String option(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    private int intOption(String key, int defaultValue) {
+        return Integer.parseInt(option(key, String.valueOf(defaultValue)));
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            if (weight > 0) {
+                mix.put(parts[0], weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Empty tool mix: " + spec);
+        }
+        return mix;
+    }
+
+    /**
+     * One MCP session calling tools back to back until {@code end}; only calls started after {@code measureStart}
+     * are recorded.
+     */
+    private final class Worker implements Runnable {
+        private final McpSyncClient session;
+        private final long measureStart;
+        private final long end;
+        private final long thinkMillis;
+        private final Map<String, Stats> stats = new HashMap<>();
+
+        Worker(McpSyncClient session, long measureStart, long end, Duration think) {
+            this.session = session;
+            this.measureStart = measureStart;
+            this.end = end;
+            this.thinkMillis = think.toMillis();
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long start;
+            while ((start = System.nanoTime()) < end) {
+                String tool = weightedTools[random.nextInt(weightedTools.length)];
+                boolean failed;
+                try {
+                    McpSchema.CallToolResult result = session.callTool(new McpSchema.CallToolRequest(tool, arguments(tool)));
+                    failed = Boolean.TRUE.equals(result.isError()) || isErrorResponse(result);
+                } catch (RuntimeException e) {
+                    failed = true;
+                }
+                if (start >= measureStart) {
+                    stats.computeIfAbsent(tool, t -> new Stats()).add(System.nanoTime() - start, failed);
+                }
+                if (thinkMillis > 0) {
+                    try {
+                        Thread.sleep(thinkMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private static boolean isErrorResponse(McpSchema.CallToolResult result) {
+            return !result.content().isEmpty()
+                    && result.content().getFirst() instanceof McpSchema.TextContent text
+                    && text.text().startsWith(ResponseRenderer.ERROR_PREFIX);
+        }
+    }
+
+    /**
+     * Latencies of one tool (or all of them), in nanoseconds, plus the number of failed calls.
+     */
+    static final class Stats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void add(long nanos, boolean failed) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        void merge(Stats other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i], false);
+            }
+            errors += other.errors;
+        }
+
+        /** Latency in milliseconds at quantile {@code q}; sorts on first use after adding. */
+        double percentile(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            Arrays.sort(latencies, 0, count);
+            int index = (int) Math.min(count - 1, Math.ceil(q * count) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /**
+     * Samples broker connections, pooled consumers and heap during the measurement period, and diffs GC counters
+     * across it.
+     */
+    private final class Sampler {
+        private final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private final long[] gcCountsAtStart = new long[collectors.size()];
+        private final long[] gcMillisAtStart = new long[collectors.size()];
+        private int peakBrokerConnections;
+        private int peakConsumers;
+        private int peakThreads;
+        private long peakHeap;
+
+        void start() {
+            for (int i = 0; i < collectors.size(); i++) {
+                gcCountsAtStart[i] = collectors.get(i).getCollectionCount();
+                gcMillisAtStart[i] = collectors.get(i).getCollectionTime();
+            }
+            sample();
+        }
+
+        void sample() {
+            peakBrokerConnections = Math.max(peakBrokerConnections, brokerConnections());
+            peakConsumers = Math.max(peakConsumers, (int) (gauge("kafka.mcp.consumer.pool.active")
+                    + gauge("kafka.mcp.consumer.pool.idle")));
+            // Platform threads only; virtual threads are not counted
+            peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+            peakHeap = Math.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        void finish(StepResult result) {
+            sample();
+            result.peakBrokerConnections = peakBrokerConnections;
+            result.peakConsumers = peakConsumers;
+            result.peakThreads = peakThreads;
+            result.peakHeap = peakHeap;
+            result.maxHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                    result.heapAfterGc += pool.getCollectionUsage().getUsed();
+                }
+            }
+            for (int i = 0; i < collectors.size(); i++) {
+                long count = collectors.get(i).getCollectionCount() - gcCountsAtStart[i];
+                long millis = collectors.get(i).getCollectionTime() - gcMillisAtStart[i];
+                result.gc.put(collectors.get(i).getName(), count + " collections, " + millis + " ms");
+                result.gcMillis += millis;
+            }
+        }
+
+        /** Open connections on the broker's client listeners; the controller listener is left out. */
+        private int brokerConnections() {
+            int connections = 0;
+            try {
+                for (ObjectName name : mbeans.queryNames(
+                        new ObjectName("kafka.server:type=socket-server-metrics,listener=*,networkProcessor=*"), null)) {
+                    if (!name.getKeyProperty("listener").toUpperCase(Locale.ROOT).contains("CONTROLLER")) {
+                        connections += ((Number) mbeans.getAttribute(name, "connection-count")).intValue();
+                    }
+                }
+            } catch (Exception e) {
+                return -1;
+            }
+            return connections;
+        }
+
+        private double gauge(String name) {
+            Gauge gauge = appRegistry.find(name).gauge();
+            return gauge != null ? gauge.value() : 0;
+        }
+    }
+
+    private static final class StepResult {
+        final int clients;
+        final Map<String, Stats> byTool = new LinkedHashMap<>();
+        final Map<String, String> gc = new LinkedHashMap<>();
+        double connectMillis;
+        int connectFailures;
+        double seconds;
+        int peakBrokerConnections;
+        int peakConsumers;
+        int peakThreads;
+        long peakHeap;
+        long heapAfterGc;
+        long maxHeap;
+        long gcMillis;
+
+        StepResult(int clients, Collection<String> tools) {
+            this.clients = clients;
+            tools.forEach(tool -> byTool.put(tool, new Stats()));
+        }
+
+        Stats total() {
+            Stats total = new Stats();
+            byTool.values().forEach(total::merge);
+            return total;
+        }
+
+        void print() {
+            System.out.printf("== %d clients: %d sessions opened in %.0f ms, %d failed%n",
+                    clients, clients - connectFailures, connectMillis, connectFailures);
+            System.out.printf("%-18s %8s %7s %9s %9s %9s %9s%n", "tool", "calls", "errors", "calls/s", "p50 ms", "p99 ms", "max ms");
+            byTool.forEach((tool, stats) -> printRow(tool, stats));
+            printRow("total", total());
+            System.out.printf("broker connections (peak) %d, pooled consumers (peak) %d, platform threads (peak) %d%n",
+                    peakBrokerConnections, peakConsumers, peakThreads);
+            System.out.printf("heap: peak %d MB, live after last GC %d MB, max %d MB%n",
+                    peakHeap >> 20, heapAfterGc >> 20, maxHeap >> 20);
+            System.out.printf("gc: %s, %.1f%% of wall time%n%n", gc, 100.0 * gcMillis / (seconds * 1000));
+        }
+
+        private void printRow(String tool, Stats stats) {
+            System.out.printf("%-18s %8d %7d %9.1f %9.2f %9.2f %9.2f%n", tool, stats.count, stats.errors,
+                    stats.count / seconds, stats.percentile(0.50), stats.percentile(0.99), stats.percentile(1.0));
+        }
+    }
+}
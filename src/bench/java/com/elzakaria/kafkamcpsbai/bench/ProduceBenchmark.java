@@ -0,0 +1,105 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.BatchProduceResult;
+import com.elzakaria.kafkamcpsbai.dto.ProduceRecord;
+import com.elzakaria.kafkamcpsbai.dto.ProduceResult;
+import com.elzakaria.kafkamcpsbai.service.BatchProducer;
+import com.elzakaria.kafkamcpsbai.service.KafkaCluster;
+import com.elzakaria.kafkamcpsbai.service.KafkaClusters;
+import com.elzakaria.kafkamcpsbai.service.KafkaService;
+import com.elzakaria.kafkamcpsbai.service.PayloadDecoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cost of the produce tools with an auto-completing {@link MockProducer}: record and header
+ * construction, serialization, future handling and result mapping, without any network. Broker round trips are
+ * what the batch path saves on a real cluster; this measures the overhead the server adds around them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProduceBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private MockProducer<String, String> singleProducer;
+    private MockProducer<String, String> batchProducer;
+    private KafkaService kafkaService;
+    private List<ProduceRecord> records;
+    private final Map<String, String> headers = Map.of("traceId", "trace-1", "source", "bench");
+
+    @Setup
+    public void setUp() {
+        singleProducer = mockProducer();
+        batchProducer = mockProducer();
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(new MockProducerFactory<>(() -> singleProducer));
+        // Only the produce paths are exercised; the other collaborators are never touched
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        KafkaCluster cluster = new KafkaCluster(properties.getDefaultCluster(), template, null, null,
+                new BatchProducer(new MockProducerFactory<>(() -> batchProducer)), null, null, null, null, null);
+        kafkaService = new KafkaService(
+                new KafkaClusters(cluster, properties, PayloadDecoder.PLAIN, null, new SimpleMeterRegistry()),
+                PayloadDecoder.PLAIN, null, null, null, null, properties);
+
+        String value = "{\"orderId\":1,\"status\":\"CREATED\",\"amount\":42.5}";
+        records = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            ProduceRecord record = new ProduceRecord();
+            record.setKey("order-" + i);
+            record.setValue(value);
+            record.setHeaders(headers);
+            records.add(record);
+        }
+    }
+
+    /**
+     * {@code batchSize} single-record {@code produceMessage} calls, each waiting for its acknowledgement.
+     */
+    @Benchmark
+    public List<ProduceResult> produceMessageLoop() {
+        List<ProduceResult> results = new ArrayList<>(batchSize);
+        for (ProduceRecord record : records) {
+            results.add(kafkaService.produceMessage(null, "bench", record.getKey(), record.getValue(), headers));
+        }
+        singleProducer.clear();
+        return results;
+    }
+
+    /**
+     * One {@code produceMessages} call with {@code batchSize} records.
+     */
+    @Benchmark
+    public BatchProduceResult produceMessages() throws InterruptedException {
+        BatchProduceResult result = kafkaService.produceMessages(null, "bench", records);
+        batchProducer.clear();
+        return result;
+    }
+
+    /**
+     * Shared like the producer of a {@code DefaultKafkaProducerFactory}: the template closes its producer after
+     * every send, which the real factory's wrapper ignores. {@code clear()} after every invocation keeps the send
+     * history from growing.
+     */
+    private static MockProducer<String, String> mockProducer() {
+        return new MockProducer<>(true, null, new StringSerializer(), new StringSerializer()) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.dto.KafkaMessage;
+import com.elzakaria.kafkamcpsbai.service.RecordProjection;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a poll's worth of raw records (500) into {@link KafkaMessage}s under different projections:
+ * UTF-8 decoding of keys and values and construction of the header map. Run with {@code -prof gc} to see the
+ * allocation per batch ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecordProjectionBenchmark {
+
+    @Param({"100", "1024", "16384"})
+    public int valueSize;
+
+    /** Headers per record; the first is always traceId. */
+    @Param({"0", "8"})
+    public int headerCount;
+
+    private List<ConsumerRecord<byte[], byte[]>> records;
+    private final RecordProjection all = RecordProjection.ALL;
+    private final RecordProjection offsetTimestamp = RecordProjection.parse("offset,timestamp");
+    private final RecordProjection keyAndTraceId = RecordProjection.parse("offset,timestamp,key,headers=traceId");
+
+    @Setup
+    public void setUp() {
+        byte[] value = "v".repeat(valueSize).getBytes(StandardCharsets.UTF_8);
+        records = new ArrayList<>(500);
+        for (int i = 0; i < 500; i++) {
+            RecordHeaders headers = new RecordHeaders();
+            if (headerCount > 0) {
+                headers.add("traceId", ("trace-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int h = 1; h < headerCount; h++) {
+                headers.add("header-" + h, ("value-" + h).getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] key = ("order-" + i).getBytes(StandardCharsets.UTF_8);
+            records.add(new ConsumerRecord<>("bench", 0, i, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                    key.length, value.length, key, value, headers, Optional.empty()));
+        }
+    }
+
+    @Benchmark
+    public List<KafkaMessage> allFields() {
+        return map(all);
+    }
+
+    @Benchmark
+    public List<KafkaMessage> offsetAndTimestamp() {
+        return map(offsetTimestamp);
+    }
+
+    @Benchmark
+    public List<KafkaMessage> keyAndOneHeader() {
+        return map(keyAndTraceId);
+    }
+
+    private List<KafkaMessage> map(RecordProjection projection) {
+        List<KafkaMessage> messages = new ArrayList<>(records.size());
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            messages.add(projection.map(record));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,78 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.KafkaMessage;
+import com.elzakaria.kafkamcpsbai.tool.ResponseRenderer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering a consume result the way {@code KafkaToolProvider.toJson} does, against the pretty-printing
+ * {@link ObjectMapper} it used before {@link ResponseRenderer}. {@code budgeted} uses the default limits (256 KB,
+ * 4096-character values), so large results are truncated; {@code unbounded} renders everything compact.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResponseRendererBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int messageCount;
+
+    @Param({"100", "4096"})
+    public int valueSize;
+
+    private Map<String, Object> result;
+    private ResponseRenderer budgeted;
+    private ResponseRenderer unbounded;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() {
+        List<KafkaMessage> messages = new ArrayList<>(messageCount);
+        String value = "{\"payload\":\"" + "x".repeat(Math.max(0, valueSize - 14)) + "\"}";
+        for (int i = 0; i < messageCount; i++) {
+            messages.add(KafkaMessage.builder()
+                    .topic("bench")
+                    .partition(i % 6)
+                    .offset((long) i)
+                    .key("order-" + i)
+                    .value(value)
+                    .timestamp(1_700_000_000_000L + i)
+                    .headers(Map.of("traceId", "trace-" + i, "source", "bench"))
+                    .build());
+        }
+        result = Map.of("topic", "bench", "messagesReturned", messages.size(), "messages", messages);
+
+        budgeted = new ResponseRenderer(new KafkaMcpProperties(), new SimpleMeterRegistry());
+        KafkaMcpProperties unlimited = new KafkaMcpProperties();
+        unlimited.getResponse().setMaxBytes(DataSize.ofGigabytes(1));
+        unlimited.getResponse().setMaxValueLength(Integer.MAX_VALUE);
+        unbounded = new ResponseRenderer(unlimited, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String budgeted() {
+        return budgeted.render(result);
+    }
+
+    @Benchmark
+    public String unbounded() {
+        return unbounded.render(result);
+    }
+
+    @Benchmark
+    public String prettyObjectMapper() throws JsonProcessingException {
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+    }
+}
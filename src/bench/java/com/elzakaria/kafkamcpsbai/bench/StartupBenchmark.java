@@ -0,0 +1,179 @@
+package com.elzakaria.kafkamcpsbai.bench;
+
+import com.elzakaria.kafkamcpsbai.tool.ResponseRenderer;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the packaged server, measured the way a client sees it: the time from launching a fresh JVM to the
+ * first successful response of a tool that talks to Kafka ({@code listTopics} by default, so the admin client is
+ * created and connected within the measurement). Every run starts a new server process against one embedded KRaft
+ * broker, opens an MCP session ({@code transport}, as in {@link McpLoadTest}) as soon as the port accepts it and
+ * stops the process after the response.
+ * <p>
+ * Modes, each run {@code runs} times: {@code jar} runs the executable jar as built; {@code extracted} runs the
+ * unpacked layout in {@code aotDir}; {@code aot} runs that layout with Spring AOT and the JVM AOT cache written by
+ * {@code -Paot}. Options are {@code key=value} arguments; arguments starting with {@code --} are passed to the
+ * server. See docs/benchmarks.md.
+ */
+public class StartupBenchmark {
+
+    private static final Duration CONNECT_RETRY = Duration.ofMillis(10);
+
+    private final Map<String, String> options;
+    private final List<String> appArgs;
+    private final Path jar;
+    private final Path aotDir;
+    private final String transport;
+    private final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    StartupBenchmark(Map<String, String> options, List<String> appArgs) {
+        this.options = options;
+        this.appArgs = appArgs;
+        this.jar = Path.of(option("jar", "target/kafka-mcp-sbai-0.0.1-SNAPSHOT.jar")).toAbsolutePath();
+        this.aotDir = Path.of(option("aotDir", "target/application")).toAbsolutePath();
+        this.transport = option("transport", "streamable");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (!arg.isBlank()) {
+                throw new IllegalArgumentException("Expected key=value or --app.property=value: " + arg);
+            }
+        }
+        new StartupBenchmark(options, appArgs).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("No jar at " + jar + "; build it with ./mvnw package (or -Paot package)");
+        }
+        boolean aotBuilt = Files.isRegularFile(aotDir.resolve("application.aot"));
+        List<String> modes = Arrays.stream(option("modes", aotBuilt ? "jar,extracted,aot" : "jar").split(","))
+                .map(String::trim)
+                .toList();
+        int runs = Integer.parseInt(option("runs", "5"));
+        String tool = option("tool", "listTopics");
+        Duration timeout = DurationStyle.detectAndParse(option("timeout", "120s"));
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, 1, "startup");
+        broker.afterPropertiesSet();
+        try {
+            System.out.printf("%s to first successful %s, %d runs per mode%n%n", jar.getFileName(), tool, runs);
+            System.out.printf("%-10s %9s %9s %9s%n", "mode", "min ms", "p50 ms", "max ms");
+            for (String mode : modes) {
+                long[] millis = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    millis[i] = startOnce(mode, broker.getBrokersAsString(), tool, timeout);
+                }
+                Arrays.sort(millis);
+                System.out.printf("%-10s %9d %9d %9d%n", mode, millis[0], millis[runs / 2], millis[runs - 1]);
+            }
+        } finally {
+            broker.destroy();
+        }
+    }
+
+    /**
+     * Launches one server process and returns the milliseconds until {@code tool} first answered successfully.
+     */
+    private long startOnce(String mode, String bootstrapServers, String tool, Duration timeout) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(java));
+        switch (mode) {
+            case "jar" -> command.addAll(List.of("-jar", jar.toString()));
+            case "extracted" -> command.addAll(List.of("-jar", aotDir.resolve(jar.getFileName()).toString()));
+            case "aot" -> command.addAll(List.of(
+                    "-XX:AOTCache=" + aotDir.resolve("application.aot"),
+                    "-Dspring.aot.enabled=true",
+                    "-jar", aotDir.resolve(jar.getFileName()).toString()));
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + "; expected jar, extracted or aot");
+        }
+        command.addAll(List.of(
+                "--server.port=" + port,
+                "--spring.ai.mcp.server.protocol=" + ("sse".equals(transport) ? "SSE" : "STREAMABLE"),
+                "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                "--spring.docker.compose.enabled=false",
+                "--logging.level.root=WARN"));
+        command.addAll(appArgs);
+
+        Path log = Files.createTempFile("kafka-mcp-startup-" + mode + "-", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long end = start + timeout.toNanos();
+            while (System.nanoTime() - end < 0) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Server exited with " + process.exitValue() + ", see " + log);
+                }
+                if (firstCallSucceeded("http://localhost:" + port, transport, tool)) {
+                    Files.deleteIfExists(log);
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+                Thread.sleep(CONNECT_RETRY);
+            }
+            throw new IllegalStateException("No successful " + tool + " within " + timeout + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * One attempt to open a session and call the tool; {@code false} while the server is not listening yet.
+     */
+    private static boolean firstCallSucceeded(String baseUrl, String transport, String tool) {
+        McpSyncClient client = McpClient.sync(McpLoadTest.clientTransport(baseUrl, transport))
+                .requestTimeout(Duration.ofSeconds(60))
+                .clientInfo(new McpSchema.Implementation("mcp-startup-benchmark", "1.0.0"))
+                .build();
+        McpSchema.CallToolResult result;
+        try {
+            client.initialize();
+            result = client.callTool(new McpSchema.CallToolRequest(tool, Map.of()));
+        } catch (RuntimeException e) {
+            // Not listening yet
+            return false;
+        } finally {
+            client.closeGracefully();
+        }
+        if (result.content().getFirst() instanceof McpSchema.TextContent text
+                && text.text().startsWith(ResponseRenderer.ERROR_PREFIX)) {
+            throw new IllegalStateException(tool + " failed: " + text.text());
+        }
+        return true;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private String option(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+}
@@ -1,14 +1,24 @@
 package com.elzakaria.kafkamcpsbai;
 
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
 import com.elzakaria.kafkamcpsbai.service.KafkaService;
+import com.elzakaria.kafkamcpsbai.tool.FirstToolResponse;
+import com.elzakaria.kafkamcpsbai.tool.GuardedToolCallback;
 import com.elzakaria.kafkamcpsbai.tool.KafkaToolProvider;
+import com.elzakaria.kafkamcpsbai.tool.MeteredToolCallback;
+import com.elzakaria.kafkamcpsbai.tool.ResponseRenderer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class KafkaMcpSbaiApplication {
 
     public static void main(String[] args) {
@@ -16,7 +26,16 @@ public class KafkaMcpSbaiApplication {
     }
 
     @Bean
-    public ToolCallbackProvider kafkaTools(KafkaToolProvider kafkaToolProvider) {
-        return MethodToolCallbackProvider.builder().toolObjects(kafkaToolProvider).build();
+    public ToolCallbackProvider kafkaTools(KafkaToolProvider kafkaToolProvider, KafkaMcpProperties properties,
+                                           ResponseRenderer responseRenderer, MeterRegistry meterRegistry) {
+        FirstToolResponse firstResponse = new FirstToolResponse(meterRegistry);
+        return ToolCallbackProvider.from(Arrays.stream(MethodToolCallbackProvider.builder()
+                        .toolObjects(kafkaToolProvider)
+                        .build()
+                        .getToolCallbacks())
+                .map(callback -> new MeteredToolCallback(
+                        new GuardedToolCallback(callback, properties.getTools(), responseRenderer, meterRegistry),
+                        firstResponse, meterRegistry))
+                .toList());
     }
 }
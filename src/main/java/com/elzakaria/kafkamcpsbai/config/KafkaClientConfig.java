@@ -0,0 +1,111 @@
+package com.elzakaria.kafkamcpsbai.config;
+
+import com.elzakaria.kafkamcpsbai.service.AdminClientManager;
+import com.elzakaria.kafkamcpsbai.service.BatchProducer;
+import com.elzakaria.kafkamcpsbai.service.ConsumerPool;
+import com.elzakaria.kafkamcpsbai.service.KafkaCluster;
+import com.elzakaria.kafkamcpsbai.service.KafkaClusters;
+import com.elzakaria.kafkamcpsbai.service.KeyIndexes;
+import com.elzakaria.kafkamcpsbai.service.MetadataCache;
+import com.elzakaria.kafkamcpsbai.service.PartitionScanner;
+import com.elzakaria.kafkamcpsbai.service.PayloadDecoder;
+import com.elzakaria.kafkamcpsbai.service.ReadMetrics;
+import com.elzakaria.kafkamcpsbai.service.TopicProfiler;
+import com.elzakaria.kafkamcpsbai.service.TopicTails;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.kafka.autoconfigure.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+@Configuration
+@EnableConfigurationProperties(KafkaMcpProperties.class)
+public class KafkaClientConfig {
+
+    @Bean
+    public AdminClientManager adminClientManager(KafkaAdmin kafkaAdmin, KafkaMcpProperties properties,
+                                                 MeterRegistry meterRegistry) {
+        return new AdminClientManager(kafkaAdmin.getConfigurationProperties(), properties.getAdmin(), meterRegistry);
+    }
+
+    @Bean
+    public ConsumerPool consumerPool(KafkaAdmin kafkaAdmin, KafkaMcpProperties properties,
+                                     MeterRegistry meterRegistry) {
+        return new ConsumerPool(kafkaAdmin.getConfigurationProperties(), properties.getConsumer(), meterRegistry);
+    }
+
+    @Bean
+    public TopicTails topicTails(KafkaAdmin kafkaAdmin, KafkaMcpProperties properties, PayloadDecoder payloadDecoder,
+                                 ReadMetrics readMetrics, MeterRegistry meterRegistry) {
+        return new TopicTails(kafkaAdmin.getConfigurationProperties(), properties.getTail(), payloadDecoder,
+                readMetrics, meterRegistry);
+    }
+
+    @Bean
+    public KeyIndexes keyIndexes(KafkaAdmin kafkaAdmin, KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        return new KeyIndexes(properties.getDefaultCluster(), properties.getKeyIndex().getTopics(),
+                kafkaAdmin.getConfigurationProperties(), properties.getKeyIndex(), meterRegistry);
+    }
+
+    /**
+     * Lazy, like every Kafka client behind it: the producers connect on their first send, and the factories and
+     * their configuration are only built for the first call that produces.
+     */
+    @Bean
+    @Lazy
+    public BatchProducer batchProducer(KafkaProperties kafkaProperties, KafkaMcpProperties properties,
+                                       MeterRegistry meterRegistry) {
+        return new BatchProducer(kafkaProperties.buildProducerProperties(), properties.getProducer(), meterRegistry);
+    }
+
+    /**
+     * The default cluster is served by the beans above; clusters under {@code kafka.mcp.clusters} are connected
+     * on demand.
+     */
+    @Bean
+    public KafkaClusters kafkaClusters(KafkaTemplate<String, String> kafkaTemplate,
+                                       AdminClientManager adminClientManager, ConsumerPool consumerPool,
+                                       @Lazy BatchProducer batchProducer, MetadataCache metadataCache,
+                                       PartitionScanner partitionScanner, TopicProfiler topicProfiler,
+                                       TopicTails topicTails, KeyIndexes keyIndexes,
+                                       KafkaMcpProperties properties,
+                                       PayloadDecoder payloadDecoder, ReadMetrics readMetrics,
+                                       MeterRegistry meterRegistry) {
+        KafkaCluster defaultCluster = new KafkaCluster(properties.getDefaultCluster(), kafkaTemplate,
+                adminClientManager, consumerPool, batchProducer, metadataCache, partitionScanner, topicProfiler,
+                topicTails, keyIndexes);
+        return new KafkaClusters(defaultCluster, properties, payloadDecoder, readMetrics, meterRegistry);
+    }
+
+    /**
+     * Tags the default cluster's client meters with {@code cluster} like those of named clusters, so every meter
+     * name keeps one set of tag keys (which Prometheus requires).
+     */
+    @Bean
+    public MeterFilter defaultClusterTag(KafkaMcpProperties properties) {
+        List<String> prefixes = List.of("kafka.mcp.admin.", "kafka.mcp.consumer.", "kafka.mcp.tail.",
+                "kafka.mcp.key.index.", "kafka.admin.", "kafka.consumer.", "kafka.producer.");
+        Set<String> caches = Set.of("kafka-mcp-topic-names", "kafka-mcp-topics", "kafka-mcp-cluster");
+        Tag tag = Tag.of("cluster", properties.getDefaultCluster());
+        return new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                if (id.getTag("cluster") != null) {
+                    return id;
+                }
+                boolean perCluster = prefixes.stream().anyMatch(id.getName()::startsWith)
+                        || id.getName().startsWith("cache.") && caches.contains(id.getTag("cache"));
+                return perCluster ? id.withTag(tag) : id;
+            }
+        };
+    }
+}
@@ -0,0 +1,241 @@
+package com.elzakaria.kafkamcpsbai.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning knobs for the Kafka clients managed by the MCP server ({@code kafka.mcp.*}).
+ */
+@Data
+@ConfigurationProperties(prefix = "kafka.mcp")
+public class KafkaMcpProperties {
+
+    private Admin admin = new Admin();
+    private Consumer consumer = new Consumer();
+    private Cache cache = new Cache();
+    private Producer producer = new Producer();
+    private Scan scan = new Scan();
+    private Response response = new Response();
+    private SchemaRegistry schemaRegistry = new SchemaRegistry();
+    private Tail tail = new Tail();
+    private RecordCache recordCache = new RecordCache();
+    private Coalescing coalescing = new Coalescing();
+    private Tools tools = new Tools();
+    private Transfer transfer = new Transfer();
+    private KeyIndex keyIndex = new KeyIndex();
+    /** Name under which the cluster of {@code spring.kafka.*} is addressed by tools. */
+    private String defaultCluster = "default";
+    /** Further clusters tools can address by name; their clients are created on first use. */
+    private Map<String, Cluster> clusters = new LinkedHashMap<>();
+    /** Clients of a named cluster are closed after it has not been used for this long. */
+    private Duration clusterIdleTimeout = Duration.ofMinutes(10);
+
+    @Data
+    public static class Admin {
+        /** Upper bound for a single admin round trip before the call fails. */
+        private Duration requestTimeout = Duration.ofSeconds(15);
+        /** How often the shared admin client is probed with a describeCluster call. */
+        private Duration healthCheckInterval = Duration.ofSeconds(30);
+        /** How long to wait for in-flight admin requests on shutdown. */
+        private Duration closeTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Consumer {
+        /** Maximum number of pooled consumers, i.e. concurrent consume/peek calls. */
+        private int poolSize = 8;
+        /** How long a call waits for a free consumer when the pool is exhausted. */
+        private Duration borrowTimeout = Duration.ofSeconds(10);
+        /** Idle consumers older than this are closed. */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Producer {
+        /** Producer batch.size used by the batch produce path. */
+        private DataSize batchSize = DataSize.ofKilobytes(256);
+        /** Producer linger.ms used by the batch produce path. */
+        private Duration linger = Duration.ofMillis(20);
+        /** Producer compression.type used by the batch produce path. */
+        private String compressionType = "lz4";
+        /** Producer enable.idempotence used by the batch produce path. */
+        private boolean idempotence = true;
+        /** Producer acks used by the batch produce path. */
+        private String acks = "all";
+        /** How long a batch produce call waits for all acknowledgements. */
+        private Duration sendTimeout = Duration.ofSeconds(30);
+        /** Maximum number of records accepted by a single batch produce call. */
+        private int maxBatchRecords = 10_000;
+    }
+
+    @Data
+    public static class Scan {
+        /** Partitions read concurrently by one scan; also bounded by the consumer pool size. */
+        private int parallelism = 4;
+        /** Default cap on records examined by one scan. */
+        private long maxRecords = 1_000_000;
+        /** Default cap on key+value bytes examined by one scan. */
+        private DataSize maxBytes = DataSize.ofMegabytes(256);
+        /** Default wall-clock limit for one scan. */
+        private Duration maxTime = Duration.ofSeconds(30);
+        /** Default cap on records returned by one scan. */
+        private int maxResults = 100;
+    }
+
+    @Data
+    public static class Response {
+        /** Budget for one tool response; list elements beyond it are dropped and reported. */
+        private DataSize maxBytes = DataSize.ofKilobytes(256);
+        /** String values longer than this many characters are cut and marked as truncated. */
+        private int maxValueLength = 4096;
+        /** Indent responses for humans instead of writing compact JSON. */
+        private boolean pretty = false;
+        /** How keys and values that are neither decodable nor UTF-8 text are returned: base64 or hex. */
+        private String binaryEncoding = "base64";
+    }
+
+    @Data
+    public static class SchemaRegistry {
+        /** Base URL of a Confluent-compatible schema registry; wire-format records are not decoded when unset. */
+        private String url;
+        /** Maximum number of schemas kept in memory, keyed by schema id. */
+        private long cacheSize = 1_000;
+        /** Timeout for a single schema lookup. */
+        private Duration requestTimeout = Duration.ofSeconds(5);
+        /** How long a failed lookup is remembered before the registry is asked again. */
+        private Duration failureTtl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Tail {
+        /** Records kept per tailed topic for subscribers to read; older ones are dropped or held back. */
+        private int bufferSize = 10_000;
+        /** Key+value bytes kept per tailed topic; the oldest records are dropped beyond it. */
+        private DataSize bufferBytes = DataSize.ofMegabytes(64);
+        /**
+         * What happens when the slowest subscriber falls a full buffer behind: {@code drop} overwrites the oldest
+         * records (the subscriber is told how many it missed), {@code pause} stops fetching until it catches up.
+         */
+        private String overflow = "drop";
+        /** Maximum number of topics tailed at once, i.e. shared tail consumers. */
+        private int maxTopics = 32;
+        /** Maximum number of open subscriptions across all topics. */
+        private int maxSubscriptions = 256;
+        /** Subscriptions not polled for this long are closed. */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+        /** Upper bound on how long one poll waits for new records. */
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Cache {
+        /** Serve listTopics/describeTopic/describeCluster from the metadata cache. */
+        private boolean enabled = true;
+        private CacheSpec topicNames = new CacheSpec(Duration.ofSeconds(30), 1);
+        private CacheSpec topics = new CacheSpec(Duration.ofSeconds(60), 10_000);
+        private CacheSpec cluster = new CacheSpec(Duration.ofSeconds(60), 1);
+    }
+
+    @Data
+    public static class Coalescing {
+        /** Let concurrent identical admin reads and peeks share one in-flight Kafka request. */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Transfer {
+        /** Directory exportTopic writes to and importTopic reads from; file names cannot leave it. */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "kafka-mcp-transfer");
+        /** Read/write buffer of export and import files. */
+        private DataSize bufferSize = DataSize.ofKilobytes(256);
+        /** Maximum records written by one export. */
+        private long maxRecords = 10_000_000;
+        /** Maximum key and value bytes read by one export. */
+        private DataSize maxBytes = DataSize.ofGigabytes(10);
+        /** Default time limit of an export or import; the tool deadline still applies. */
+        private Duration maxTime = Duration.ofMinutes(10);
+        /** Default records per second sent by an import; 0 sends as fast as the producer accepts them. */
+        private int importRate = 0;
+    }
+
+    @Data
+    public static class KeyIndex {
+        /** Topics of the default cluster, usually compacted, to keep a latest-value-per-key index of. */
+        private List<String> topics = new ArrayList<>();
+        /** Directory of the index files, one sub-directory per cluster and topic; keep it across restarts. */
+        private Path directory = Path.of(System.getProperty("user.home"), ".kafka-mcp", "key-index");
+        /** Slots a new index starts with (rounded up to a power of two); the table doubles when 70% full. */
+        private int initialCapacity = 1 << 16;
+        /** How often indexes are flushed together with the offsets they cover, i.e. what a restart re-reads. */
+        private Duration checkpointInterval = Duration.ofSeconds(10);
+        /** Maximum keys a single lookupKey call may ask for. */
+        private int maxKeysPerLookup = 1000;
+    }
+
+    @Data
+    public static class Cluster {
+        /** Bootstrap servers of the cluster. */
+        private String bootstrapServers;
+        /** Further client configs shared by its admin, producer and consumers, e.g. security.protocol or sasl.*. */
+        private Map<String, String> properties = new HashMap<>();
+        /** Topics of this cluster to keep a key index of, like kafka.mcp.key-index.topics for the default one. */
+        private List<String> keyIndexTopics = new ArrayList<>();
+    }
+
+    @Data
+    public static class Tools {
+        /** Calls of one tool allowed to run at the same time. */
+        private int maxConcurrent = 16;
+        /** Per-tool overrides of max-concurrent, keyed by tool name. */
+        private Map<String, Integer> maxConcurrentPerTool = new HashMap<>();
+        /** How long a call waits for a free slot before it is rejected as saturated. */
+        private Duration queueTimeout = Duration.ofMillis(100);
+        /** Time a tool call may take in total; every Kafka wait underneath is capped to what is left. */
+        private Duration deadline = Duration.ofSeconds(60);
+        /** Per-tool overrides of deadline, keyed by tool name. */
+        private Map<String, Duration> deadlinePerTool = new HashMap<>();
+        /**
+         * Also send consumeMessages records to the client batch by batch while the call runs, ahead of its result.
+         * Off by default: every record then travels twice, once in a notification and once in the result.
+         */
+        private boolean partialResults = false;
+    }
+
+    @Data
+    public static class RecordCache {
+        /** Serve peekMessages/consumeMessages from recently fetched records where possible. */
+        private boolean enabled = true;
+        /** Key, value and header bytes kept before the least recently used records are evicted. */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        /** Records are dropped this long after they were fetched. */
+        private Duration ttl = Duration.ofMinutes(10);
+        /** Keep record values in direct buffers outside the Java heap. */
+        private boolean offHeap = false;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class CacheSpec {
+        /** Entries are dropped this long after they were loaded. */
+        private Duration ttl;
+        /** Maximum number of entries before least-recently-used ones are evicted. */
+        private long maxSize;
+        /** When set, entries older than this are reloaded in the background on the next read. */
+        private Duration refreshAfter;
+
+        public CacheSpec(Duration ttl, long maxSize) {
+            this.ttl = ttl;
+            this.maxSize = maxSize;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatchProduceResult {
+    private String topic;
+    private int recordCount;
+    private int successCount;
+    private int failureCount;
+    private long elapsedMs;
+    private double recordsPerSecond;
+    private List<ProduceResult> results;
+}
@@ -0,0 +1,15 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ClusterSummary {
+    private String name;
+    /** Not reported for the default cluster, which is configured with spring.kafka.*. */
+    private String bootstrapServers;
+    private boolean defaultCluster;
+    /** Whether the server currently holds open clients for the cluster; they are created on first use. */
+    private boolean connected;
+}
@@ -0,0 +1,35 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ConsumerGroupLag {
+    private String groupId;
+    private long totalLag;
+    /** Partitions whose end offset could not be listed; their lag is unknown and not part of the totals. */
+    private int unknownLagPartitions;
+    private List<TopicLag> topics;
+
+    @Data
+    @Builder
+    public static class TopicLag {
+        private String topic;
+        private long totalLag;
+        private List<PartitionLag> partitions;
+    }
+
+    @Data
+    @Builder
+    public static class PartitionLag {
+        private int partition;
+        private long committedOffset;
+        /** {@code null} when the end offset could not be listed. */
+        private Long logEndOffset;
+        /** {@code null} (unknown) when the end offset could not be listed. */
+        private Long lag;
+    }
+}
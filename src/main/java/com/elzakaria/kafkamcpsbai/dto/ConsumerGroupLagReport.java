@@ -0,0 +1,19 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class ConsumerGroupLagReport {
+    private int groupCount;
+    private int groupsReturned;
+    private long totalLag;
+    private long elapsedMs;
+    private List<ConsumerGroupLag> groups;
+    /** Groups, by id, and partitions, as {@code topic-partition}, whose offsets could not be listed. */
+    private Map<String, String> errors;
+}
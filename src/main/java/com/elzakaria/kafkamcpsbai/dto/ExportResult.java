@@ -0,0 +1,23 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ExportResult {
+    private String topic;
+    private String file;
+    private String format;
+    private String compression;
+    private long recordsWritten;
+    private long bytesRead;
+    private long bytesWritten;
+    private long elapsedMs;
+    private double recordsPerSecond;
+    private double bytesPerSecond;
+    private String stopReason;
+    private List<ScanStats.PartitionProgress> partitions;
+}
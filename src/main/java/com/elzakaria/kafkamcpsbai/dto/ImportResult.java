@@ -0,0 +1,21 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ImportResult {
+    private String topic;
+    private String file;
+    private long recordsRead;
+    private long recordsSent;
+    private long failureCount;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String firstError;
+    private long elapsedMs;
+    private double recordsPerSecond;
+    private double bytesPerSecond;
+    private String stopReason;
+}
@@ -1,18 +1,29 @@
 package com.elzakaria.kafkamcpsbai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
 import java.util.Map;
 
+/**
+ * A consumed record. Fields left out by the caller's projection are {@code null} and not serialized.
+ */
 @Data
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class KafkaMessage {
     private String topic;
-    private int partition;
-    private long offset;
+    private Integer partition;
+    private Long offset;
     private String key;
     private String value;
-    private long timestamp;
+    private Long timestamp;
     private Map<String, String> headers;
+    /** How key/value were decoded when not plain UTF-8 text: avro, json, base64 or hex. */
+    private String keyFormat;
+    private String valueFormat;
+    /** Schema registry ids of wire-format keys/values. */
+    private Integer keySchemaId;
+    private Integer valueSchemaId;
 }
@@ -0,0 +1,39 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class KeyLookupResult {
+    private String topic;
+    private int keysFound;
+    /** Keys held by the index, including deleted ones. */
+    private long indexedKeys;
+    /** Records the index has yet to apply; absent while unknown, e.g. during the first catch-up. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long indexLag;
+    private List<KeyLookup> results;
+
+    /**
+     * The latest record of one key. Record fields are absent when the key was not found.
+     */
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class KeyLookup {
+        private String key;
+        private boolean found;
+        /** The latest record was a tombstone. */
+        private Boolean deleted;
+        private Integer partition;
+        private Long offset;
+        private Long timestamp;
+        private String value;
+        private String valueFormat;
+        private Integer valueSchemaId;
+    }
+}
@@ -0,0 +1,20 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProduceRecord {
+    private String key;
+    private String value;
+    private Map<String, String> headers;
+    private Integer partition;
+    private Long timestamp;
+}
@@ -0,0 +1,32 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ScanStats {
+    private long recordsScanned;
+    private long bytesScanned;
+    private long elapsedMs;
+    private String stopReason;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<PartitionProgress> partitions;
+
+    @Data
+    @Builder
+    public static class PartitionProgress {
+        private int partition;
+        private long startOffset;
+        private long endOffset;
+        private long nextOffset;
+        private long recordsScanned;
+        private long matches;
+        private boolean completed;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String error;
+    }
+}
@@ -0,0 +1,15 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class SearchResult {
+    private String topic;
+    private int matchCount;
+    private List<KafkaMessage> matches;
+    private ScanStats stats;
+}
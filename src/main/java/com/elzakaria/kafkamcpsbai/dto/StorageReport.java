@@ -0,0 +1,77 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How much data topics hold and where. Sizes are bytes on disk: {@code sizeBytes} counts one copy of each partition
+ * (its leader's), {@code replicatedSizeBytes} every replica. Record counts are offset ranges, so they overstate
+ * compacted topics and topics written transactionally.
+ */
+@Data
+@Builder
+public class StorageReport {
+    private int topicCount;
+    private int partitionCount;
+    private long records;
+    private long sizeBytes;
+    private long replicatedSizeBytes;
+    private long elapsedMs;
+    private List<TopicStorage> topics;
+    /** Every replica on each broker, including topics that were not selected. */
+    private List<BrokerStorage> brokers;
+    private Map<String, String> errors;
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class TopicStorage {
+        private String name;
+        private int partitionCount;
+        private long records;
+        private long sizeBytes;
+        private long replicatedSizeBytes;
+        private Double avgRecordBytes;
+        /** Largest partition relative to the mean partition, by bytes and by records; 1.0 is perfectly even. */
+        private Double sizeSkew;
+        private Double recordSkew;
+        private Integer largestPartition;
+        private Long oldestTimestamp;
+        private Long oldestRecordAgeMs;
+        private Long latestTimestamp;
+        /** Topic overrides; absent when the broker default applies. */
+        private String retentionMs;
+        private String retentionBytes;
+        private String cleanupPolicy;
+        private List<PartitionStorage> partitions;
+    }
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class PartitionStorage {
+        private int partition;
+        private int leader;
+        private Long earliestOffset;
+        private Long latestOffset;
+        private Long records;
+        private Long sizeBytes;
+        private Long replicatedSizeBytes;
+        private Long oldestTimestamp;
+        private Long latestTimestamp;
+        private Long latestTimestampOffset;
+    }
+
+    @Data
+    @Builder
+    public static class BrokerStorage {
+        private int brokerId;
+        private int logDirs;
+        private int replicas;
+        private long sizeBytes;
+    }
+}
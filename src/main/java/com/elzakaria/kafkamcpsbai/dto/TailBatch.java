@@ -0,0 +1,23 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class TailBatch {
+    private String subscriptionId;
+    private String topic;
+    private int messagesReturned;
+    /** Buffered records this poll moved past, matching the subscription's filter or not. */
+    private long recordsRead;
+    /** Records overwritten before this subscription read them because it fell a full buffer behind. */
+    private long droppedRecords;
+    /** Records passed over because the filter or the projection failed on them, e.g. undecodable payloads. */
+    private long skippedRecords;
+    /** Buffered records still waiting for this subscription. */
+    private long pendingRecords;
+    private List<KafkaMessage> messages;
+}
@@ -0,0 +1,15 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TailSubscription {
+    private String subscriptionId;
+    private String topic;
+    /** Open subscriptions on the topic, including this one; all of them share one consumer. */
+    private int topicSubscribers;
+    /** Already buffered records the first poll starts with. */
+    private long replayedRecords;
+}
@@ -0,0 +1,18 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class TimeWindowResult {
+    private String topic;
+    private long startTime;
+    private long endTime;
+    private int messagesReturned;
+    private boolean truncated;
+    private List<KafkaMessage> messages;
+    private ScanStats stats;
+}
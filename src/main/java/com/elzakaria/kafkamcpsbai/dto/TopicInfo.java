@@ -1,5 +1,6 @@
 package com.elzakaria.kafkamcpsbai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -7,7 +8,7 @@ import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class TopicInfo {
     private String name;
     private int partitionCount;
@@ -15,11 +16,17 @@ public class TopicInfo {
     private Map<String, String> configs;
 
     @Data
-    @Builder
+    @Builder(toBuilder = true)
     public static class PartitionInfo {
         private int partition;
         private int leader;
         private List<Integer> replicas;
         private List<Integer> inSyncReplicas;
+        private boolean underReplicated;
+        private boolean offline;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long earliestOffset;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long latestOffset;
     }
 }
@@ -0,0 +1,87 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shape of a topic computed from a sample of its records. Sizes, distinct keys and key counts are estimates.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TopicProfile {
+    private String topic;
+    /** Profiled time window, or {@code null} when the tail of each partition was sampled. */
+    private Long startTime;
+    private Long endTime;
+    private Integer samplePerPartition;
+    private long recordsSampled;
+    private long bytesSampled;
+    private long nullKeys;
+    private long tombstones;
+    private SizeStats keySize;
+    private SizeStats valueSize;
+    private long distinctKeys;
+    private List<KeyCount> topKeys;
+    /** Occurrences of each header key; keys beyond the first 100 seen are counted under "(other)". */
+    private Map<String, Long> headerKeys;
+    private Skew skew;
+    private List<PartitionProfile> partitions;
+    private ScanStats stats;
+
+    @Data
+    @Builder
+    public static class SizeStats {
+        private long min;
+        private long p50;
+        private long p90;
+        private long p99;
+        private long max;
+        private double mean;
+    }
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class KeyCount {
+        private String key;
+        private String keyFormat;
+        private long count;
+        private double share;
+    }
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class PartitionProfile {
+        private int partition;
+        /** Records between the range's start and end offsets: the whole log, or the time window. */
+        private long recordsInRange;
+        private long recordsSampled;
+        private long bytesSampled;
+        private Long firstTimestamp;
+        private Long lastTimestamp;
+        /** Sampled records over the span of their timestamps. */
+        private Double recordsPerSecond;
+        private boolean completed;
+        /** Why the partition's offsets could not be resolved; it was not sampled. */
+        private String error;
+    }
+
+    /**
+     * Partition imbalance as the ratio of the largest partition to the mean; 1.0 is perfectly even.
+     */
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Skew {
+        private double records;
+        private Double rate;
+        private int largestPartition;
+        private Integer fastestPartition;
+    }
+}
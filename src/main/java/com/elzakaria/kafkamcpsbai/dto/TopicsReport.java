@@ -0,0 +1,19 @@
+package com.elzakaria.kafkamcpsbai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class TopicsReport {
+    private int topicCount;
+    private int partitionCount;
+    private int underReplicatedPartitions;
+    private int offlinePartitions;
+    private long elapsedMs;
+    private List<TopicInfo> topics;
+    private Map<String, String> errors;
+}
@@ -4,21 +4,34 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 
 /**
  * Change the 200 to ACCEPTED as spring boot ai doesnt support claude sse format yet.
+ * <p>
+ * Only needed by the legacy SSE transport ({@code spring.ai.mcp.server.protocol=SSE}); Streamable HTTP answers
+ * with the status codes the specification asks for, so the filter is not registered then.
  */
 @Component
+@ConditionalOnProperty(name = "spring.ai.mcp.server.protocol", havingValue = "SSE")
 public class McpMessageStatusFilter implements Filter {
 
+    private final String messageEndpoint;
+
+    public McpMessageStatusFilter(
+            @Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        this.messageEndpoint = messageEndpoint;
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
-        if ("POST".equals(httpRequest.getMethod()) && "/mcp/message".equals(httpRequest.getRequestURI())) {
+        if ("POST".equals(httpRequest.getMethod()) && messageEndpoint.equals(httpRequest.getRequestURI())) {
             chain.doFilter(request, new HttpServletResponseWrapper((HttpServletResponse) response) {
                 @Override
                 public void setStatus(int sc) {
@@ -0,0 +1,198 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Owns a single, long-lived {@link Admin} client shared by every tool call.
+ * <p>
+ * The client is created on first use, every round trip is bounded by the configured request timeout,
+ * and a client that fails its periodic health probe is closed and rebuilt on the next call. A single request that
+ * times out only fails its own caller: the client is shared, and closing it would abort every other tool call's
+ * requests with it.
+ * Round trips are timed as {@code kafka.mcp.admin.requests} by outcome, and the client's own metrics are bound
+ * to the meter registry while it is open.
+ */
+@Slf4j
+public class AdminClientManager implements HealthIndicator, AutoCloseable {
+
+    private final Map<String, Object> config;
+    private final KafkaMcpProperties.Admin properties;
+    private final MeterRegistry meterRegistry;
+    private final Timer success;
+    private final Timer error;
+    private final Timer timeout;
+    private final Object lock = new Object();
+
+    private volatile Admin admin;
+    private KafkaClientMetrics adminMetrics;
+    private volatile boolean closed;
+    private volatile Health lastHealth = Health.unknown().withDetail("reason", "not connected yet").build();
+
+    public AdminClientManager(Map<String, Object> config, KafkaMcpProperties.Admin properties,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.success = requestTimer("success");
+        this.error = requestTimer("error");
+        this.timeout = requestTimer("timeout");
+        this.config = new HashMap<>(config);
+        String timeoutMs = String.valueOf(properties.getRequestTimeout().toMillis());
+        this.config.putIfAbsent(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, timeoutMs);
+        this.config.putIfAbsent(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, timeoutMs);
+    }
+
+    private Timer requestTimer(String outcome) {
+        return Timer.builder("kafka.mcp.admin.requests")
+                .description("Admin client round trips awaited by tool calls")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the shared client, creating it if needed.
+     */
+    public Admin get() {
+        Admin current = admin;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Admin client manager has been closed");
+            }
+            if (admin == null) {
+                admin = Admin.create(config);
+                if (admin instanceof AdminClient client) {
+                    adminMetrics = new KafkaClientMetrics(client);
+                    adminMetrics.bindTo(meterRegistry);
+                }
+                log.info("Created shared Kafka admin client for {}", config.get(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG));
+            }
+            return admin;
+        }
+    }
+
+    /**
+     * Runs one admin round trip against the shared client and waits for it at most the configured request timeout.
+     */
+    public <T> T call(Function<Admin, KafkaFuture<T>> operation) throws ExecutionException, InterruptedException {
+        Admin client = get();
+        return await(client, operation.apply(client));
+    }
+
+    /**
+     * Waits for a future obtained from {@code client} (normally {@link #get()}) at most the configured request
+     * timeout, or until the calling tool's {@link Deadline}, whichever comes first. Use this when several requests
+     * are issued on the client before waiting for all of them at once.
+     */
+    public <T> T await(Admin client, KafkaFuture<T> future) throws ExecutionException, InterruptedException {
+        Duration limit = properties.getRequestTimeout();
+        boolean deadlineFirst = Deadline.caps(limit);
+        Duration wait = Deadline.cap(limit);
+        long start = System.nanoTime();
+        Timer outcome = error;
+        try {
+            T result = future.get(wait.toNanos(), TimeUnit.NANOSECONDS);
+            outcome = success;
+            return result;
+        } catch (java.util.concurrent.TimeoutException e) {
+            outcome = timeout;
+            if (deadlineFirst) {
+                // The caller ran out of time, which says nothing about the client
+                throw Deadline.exceeded();
+            }
+            // One slow request does not make the client unhealthy; the health probe decides that
+            throw new TimeoutException("Admin request did not complete within " + limit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                outcome = timeout;
+            }
+            throw e;
+        } finally {
+            outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.mcp.admin.health-check-interval:30s}")
+    public void checkHealth() {
+        Admin client = admin;
+        if (client == null || closed) {
+            return;
+        }
+        try {
+            String clusterId = client.describeCluster().clusterId()
+                    .get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            lastHealth = Health.up().withDetail("clusterId", clusterId).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastHealth = Health.down(e).build();
+            recycle(client, "health check failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Health health() {
+        return lastHealth;
+    }
+
+    private void recycle(Admin failed, String reason) {
+        KafkaClientMetrics metrics;
+        synchronized (lock) {
+            if (admin != failed) {
+                return;
+            }
+            admin = null;
+            metrics = adminMetrics;
+            adminMetrics = null;
+        }
+        closeMetrics(metrics);
+        log.warn("Recycling shared Kafka admin client: {}", reason);
+        // New calls already get a new client; requests in flight on the old one get the close timeout to finish
+        failed.close(properties.getCloseTimeout());
+    }
+
+    @Override
+    public void close() {
+        Admin current;
+        KafkaClientMetrics metrics;
+        synchronized (lock) {
+            closed = true;
+            current = admin;
+            admin = null;
+            metrics = adminMetrics;
+            adminMetrics = null;
+        }
+        closeMetrics(metrics);
+        if (current != null) {
+            log.info("Closing shared Kafka admin client");
+            current.close(properties.getCloseTimeout());
+        }
+    }
+
+    private static void closeMetrics(KafkaClientMetrics metrics) {
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+}
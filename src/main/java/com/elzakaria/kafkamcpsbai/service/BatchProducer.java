@@ -0,0 +1,117 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Producer dedicated to multi-record produce calls, tuned for throughput ({@code kafka.mcp.producer.*})
+ * independently of the single-record {@link KafkaTemplate}. A second producer with the same tuning sends raw
+ * {@code byte[]} records for imports; it is only created on the first such send. The producers' client metrics
+ * are bound to the meter registry.
+ */
+public class BatchProducer implements AutoCloseable {
+
+    private final ProducerFactory<String, String> producerFactory;
+    private final KafkaTemplate<String, String> template;
+    private final ProducerFactory<byte[], byte[]> rawProducerFactory;
+    private final KafkaTemplate<byte[], byte[]> rawTemplate;
+
+    public BatchProducer(Map<String, Object> producerConfig, KafkaMcpProperties.Producer properties,
+                         MeterRegistry meterRegistry) {
+        this(producerFactory(producerConfig, properties, meterRegistry, "kafka-mcp-batch",
+                        StringSerializer.class),
+                producerFactory(producerConfig, properties, meterRegistry, "kafka-mcp-import",
+                        ByteArraySerializer.class));
+    }
+
+    /**
+     * Sends through the given factory's producers, e.g. a {@code MockProducerFactory} in benchmarks.
+     */
+    public BatchProducer(ProducerFactory<String, String> producerFactory) {
+        this(producerFactory, null);
+    }
+
+    private BatchProducer(ProducerFactory<String, String> producerFactory,
+                          ProducerFactory<byte[], byte[]> rawProducerFactory) {
+        this.producerFactory = producerFactory;
+        this.template = new KafkaTemplate<>(producerFactory);
+        this.rawProducerFactory = rawProducerFactory;
+        this.rawTemplate = rawProducerFactory != null ? new KafkaTemplate<>(rawProducerFactory) : null;
+    }
+
+    private static <T> ProducerFactory<T, T> producerFactory(Map<String, Object> producerConfig,
+                                                             KafkaMcpProperties.Producer properties,
+                                                             MeterRegistry meterRegistry, String clientId,
+                                                             Class<? extends Serializer<T>> serializer) {
+        Map<String, Object> props = new HashMap<>(producerConfig);
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, serializer);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, serializer);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, (int) properties.getBatchSize().toBytes());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, (int) properties.getLinger().toMillis());
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getCompressionType());
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, properties.isIdempotence());
+        props.put(ProducerConfig.ACKS_CONFIG, properties.getAcks());
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, properties.getSendTimeout().toMillis());
+        DefaultKafkaProducerFactory<T, T> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Hands the record to the producer's accumulator without waiting for the broker.
+     */
+    public CompletableFuture<SendResult<String, String>> send(ProducerRecord<String, String> record) {
+        return template.send(record);
+    }
+
+    /**
+     * Hands a raw record to the import producer's accumulator without waiting for the broker.
+     */
+    public CompletableFuture<SendResult<byte[], byte[]>> sendRaw(ProducerRecord<byte[], byte[]> record) {
+        if (rawTemplate == null) {
+            throw new IllegalStateException("Raw records cannot be sent through this producer");
+        }
+        return rawTemplate.send(record);
+    }
+
+    /**
+     * Sends everything still lingering in the accumulator instead of waiting for {@code linger.ms}.
+     */
+    public void flush() {
+        template.flush();
+    }
+
+    /**
+     * Like {@link #flush()}, for records sent with {@link #sendRaw}.
+     */
+    public void flushRaw() {
+        if (rawTemplate != null) {
+            rawTemplate.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (producerFactory instanceof DefaultKafkaProducerFactory<String, String> factory) {
+            factory.destroy();
+        }
+        if (rawProducerFactory instanceof DefaultKafkaProducerFactory<byte[], byte[]> factory) {
+            factory.destroy();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of reusable consumers without a {@code group.id}.
+ * <p>
+ * Callers borrow a consumer for the duration of one tool call, position it with {@code assign()} + {@code seek()},
+ * and return it by closing the {@link Lease}. Because no group is involved there is no join/rebalance per call
+ * and nothing is left behind in {@code __consumer_offsets}. Keys and values are handed out as raw bytes and decoded
+ * by the caller, only as far as it needs them.
+ * <p>
+ * {@code kafka.mcp.consumer.borrow} times each checkout, tagged {@code reused} or {@code created} so that cold
+ * consumers stand out; pooled consumers' client metrics are bound while they are open.
+ */
+@Slf4j
+public class ConsumerPool implements AutoCloseable {
+
+    private final Map<String, Object> config;
+    private final KafkaMcpProperties.Consumer properties;
+    private final Semaphore permits;
+    private final Deque<PooledConsumer> idle = new ArrayDeque<>();
+    private final AtomicInteger clientIds = new AtomicInteger();
+    private final MicrometerConsumerListener<byte[], byte[]> metricsListener;
+    private final Map<Consumer<byte[], byte[]>, String> clientIdsByConsumer = new ConcurrentHashMap<>();
+    private final Timer borrowReused;
+    private final Timer borrowCreated;
+
+    private volatile boolean closed;
+
+    public ConsumerPool(Map<String, Object> config, KafkaMcpProperties.Consumer properties,
+                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.permits = new Semaphore(properties.getPoolSize(), true);
+        this.config = readerConfig(config);
+        this.metricsListener = new MicrometerConsumerListener<>(meterRegistry);
+        this.borrowReused = borrowTimer(meterRegistry, "reused");
+        this.borrowCreated = borrowTimer(meterRegistry, "created");
+        Gauge.builder("kafka.mcp.consumer.pool.idle", this, ConsumerPool::idleCount)
+                .description("Pooled consumers waiting to be borrowed")
+                .register(meterRegistry);
+        Gauge.builder("kafka.mcp.consumer.pool.active", permits,
+                        p -> properties.getPoolSize() - p.availablePermits())
+                .description("Pooled consumers currently borrowed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copy of the client config for a consumer that reads raw bytes without a group and never commits.
+     */
+    static Map<String, Object> readerConfig(Map<String, Object> config) {
+        Map<String, Object> readerConfig = new HashMap<>(config);
+        readerConfig.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        readerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        readerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        readerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        return readerConfig;
+    }
+
+    private static Timer borrowTimer(MeterRegistry meterRegistry, String consumer) {
+        return Timer.builder("kafka.mcp.consumer.borrow")
+                .description("Time to check out a pooled consumer, including waiting for one")
+                .tag("consumer", consumer)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Checks out a consumer, waiting up to the configured borrow timeout (or the call's {@link Deadline}) when all
+     * of them are in use.
+     */
+    public Lease borrow() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Consumer pool has been closed");
+        }
+        long start = System.nanoTime();
+        Duration timeout = properties.getBorrowTimeout();
+        if (!permits.tryAcquire(Deadline.cap(timeout).toNanos(), TimeUnit.NANOSECONDS)) {
+            if (Deadline.expired()) {
+                throw Deadline.exceeded();
+            }
+            throw new IllegalStateException("No pooled consumer became available within " + timeout
+                    + " (pool size " + properties.getPoolSize() + ")");
+        }
+        try {
+            PooledConsumer pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            Lease lease = new Lease(pooled != null ? pooled.consumer() : create());
+            (pooled != null ? borrowReused : borrowCreated).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return lease;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.mcp.consumer.idle-timeout:5m}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - properties.getIdleTimeout().toNanos();
+        List<PooledConsumer> expired = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledConsumer> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConsumer pooled = it.next();
+                if (pooled.lastUsed() - cutoff > 0) {
+                    break;
+                }
+                it.remove();
+                expired.add(pooled);
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.debug("Evicting {} idle pooled consumer(s)", expired.size());
+            expired.forEach(pooled -> closeQuietly(pooled.consumer()));
+        }
+    }
+
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    private Consumer<byte[], byte[]> create() {
+        Map<String, Object> props = new HashMap<>(config);
+        String clientId = "kafka-mcp-pool-" + clientIds.incrementAndGet();
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props);
+        clientIdsByConsumer.put(consumer, clientId);
+        metricsListener.consumerAdded(clientId, consumer);
+        return consumer;
+    }
+
+    private void release(Consumer<byte[], byte[]> consumer, boolean reusable) {
+        try {
+            if (reusable && !closed) {
+                try {
+                    consumer.unsubscribe();
+                } catch (RuntimeException e) {
+                    log.warn("Discarding pooled consumer that failed to reset: {}", e.getMessage());
+                    closeQuietly(consumer);
+                    return;
+                }
+                synchronized (idle) {
+                    idle.addFirst(new PooledConsumer(consumer, System.nanoTime()));
+                }
+            } else {
+                closeQuietly(consumer);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void closeQuietly(Consumer<byte[], byte[]> consumer) {
+        String clientId = clientIdsByConsumer.remove(consumer);
+        if (clientId != null) {
+            metricsListener.consumerRemoved(clientId, consumer);
+        }
+        try {
+            consumer.close(Duration.ofSeconds(1));
+        } catch (RuntimeException e) {
+            log.debug("Error closing pooled consumer", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        List<PooledConsumer> remaining;
+        synchronized (idle) {
+            remaining = new ArrayList<>(idle);
+            idle.clear();
+        }
+        remaining.forEach(pooled -> closeQuietly(pooled.consumer()));
+    }
+
+    private record PooledConsumer(Consumer<byte[], byte[]> consumer, long lastUsed) {
+    }
+
+    /**
+     * A borrowed consumer. Closing the lease unassigns the consumer and returns it to the pool,
+     * unless {@link #invalidate()} was called, in which case it is closed instead.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Consumer<byte[], byte[]> consumer;
+        private boolean reusable = true;
+        private boolean released;
+
+        private Lease(Consumer<byte[], byte[]> consumer) {
+            this.consumer = consumer;
+        }
+
+        public Consumer<byte[], byte[]> consumer() {
+            return consumer;
+        }
+
+        public void invalidate() {
+            reusable = false;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(consumer, reusable);
+            }
+        }
+    }
+}
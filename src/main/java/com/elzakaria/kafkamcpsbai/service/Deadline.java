@@ -0,0 +1,80 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.apache.kafka.common.errors.TimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Wall-clock deadline of the tool call running on the current thread.
+ * <p>
+ * Tool calls run inside {@link #within(Duration, Callable)}; every Kafka wait underneath (admin futures, producer
+ * acknowledgements, consumer borrows, polls and scans) bounds itself with {@link #cap(Duration)}, so a slow broker
+ * fails the call when its deadline passes instead of holding the thread for the sum of all timeouts. Outside a tool
+ * call there is no deadline and {@code cap} returns its argument.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Runs {@code call} with a deadline {@code timeout} from now, or the enclosing deadline if that is earlier.
+     */
+    public static <T> T within(Duration timeout, Callable<T> call) throws Exception {
+        Long previous = CURRENT.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CURRENT.set(previous != null && previous - deadline < 0 ? previous : deadline);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds left before the deadline, never negative; {@link Long#MAX_VALUE} when there is none.
+     */
+    public static long remainingNanos() {
+        Long deadline = CURRENT.get();
+        return deadline != null ? Math.max(0, deadline - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * The shorter of {@code limit} and the time left before the deadline.
+     */
+    public static Duration cap(Duration limit) {
+        long remaining = remainingNanos();
+        return remaining < limit.toNanos() ? Duration.ofNanos(remaining) : limit;
+    }
+
+    /**
+     * Whether {@code limit} was shortened by the deadline, i.e. a wait of {@code limit} would outlive the call.
+     */
+    public static boolean caps(Duration limit) {
+        return remainingNanos() < limit.toNanos();
+    }
+
+    public static boolean expired() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * Fails with a Kafka {@link TimeoutException} once the deadline has passed.
+     */
+    public static void check() {
+        if (expired()) {
+            throw exceeded();
+        }
+    }
+
+    public static TimeoutException exceeded() {
+        return new TimeoutException("Tool call deadline exceeded");
+    }
+}
@@ -0,0 +1,101 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Most frequent keys in bounded memory: a count-min sketch (4 x 4096 counters, 64 KB) estimates every key's
+ * count, and only the keys whose estimate ranks among the current top {@code capacity} are kept. Estimates can
+ * overcount, never undercount. Not thread-safe; merge per-thread instances instead.
+ */
+final class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+
+    private final int[] counters = new int[DEPTH * WIDTH];
+    private final int capacity;
+    private final Map<ByteBuffer, Integer> candidates = new HashMap<>();
+    // Smallest candidate estimate after the last eviction
+    private int threshold;
+
+    /**
+     * A key and its estimated count.
+     */
+    record Estimate(byte[] key, long count) {
+    }
+
+    HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param hash the key's {@link HyperLogLog#hash(byte[])}
+     */
+    void add(byte[] key, long hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int slot = row * WIDTH + bucket(hash, row);
+            estimate = Math.min(estimate, ++counters[slot]);
+        }
+        if (candidates.size() < capacity || estimate > threshold) {
+            candidates.put(ByteBuffer.wrap(key), estimate);
+            if (candidates.size() > capacity) {
+                evictSmallest();
+            }
+        }
+    }
+
+    void merge(HeavyHitters other) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        // Estimates are recomputed from the merged counters in top()
+        candidates.putAll(other.candidates);
+    }
+
+    List<Estimate> top(int n) {
+        List<Estimate> result = new ArrayList<>(candidates.size());
+        for (ByteBuffer key : candidates.keySet()) {
+            result.add(new Estimate(key.array(), estimate(HyperLogLog.hash(key.array()))));
+        }
+        result.sort(Comparator.comparingLong(Estimate::count).reversed());
+        return result.size() > n ? result.subList(0, n) : result;
+    }
+
+    private long estimate(long hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[row * WIDTH + bucket(hash, row)]);
+        }
+        return estimate;
+    }
+
+    private void evictSmallest() {
+        ByteBuffer smallest = null;
+        int smallestCount = Integer.MAX_VALUE;
+        int secondCount = Integer.MAX_VALUE;
+        for (Map.Entry<ByteBuffer, Integer> entry : candidates.entrySet()) {
+            int count = entry.getValue();
+            if (count < smallestCount) {
+                secondCount = smallestCount;
+                smallestCount = count;
+                smallest = entry.getKey();
+            } else if (count < secondCount) {
+                secondCount = count;
+            }
+        }
+        candidates.remove(smallest);
+        threshold = secondCount;
+    }
+
+    private static int bucket(long hash, int row) {
+        // Kirsch-Mitzenmacher: derive the row hashes from the two halves of one 64-bit hash
+        int combined = (int) hash + row * (int) (hash >>> 32);
+        return combined & (WIDTH - 1);
+    }
+}
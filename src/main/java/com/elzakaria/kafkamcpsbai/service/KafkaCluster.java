@@ -0,0 +1,38 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * The clients and per-cluster state used to serve tool calls against one Kafka cluster.
+ * <p>
+ * The default cluster's instance is assembled from the application's beans; the others are built by
+ * {@link KafkaClusters} on first use and closed with {@link #close()} when they go idle.
+ */
+public record KafkaCluster(String name,
+                           KafkaTemplate<String, String> kafkaTemplate,
+                           AdminClientManager adminClientManager,
+                           ConsumerPool consumerPool,
+                           BatchProducer batchProducer,
+                           MetadataCache metadataCache,
+                           PartitionScanner partitionScanner,
+                           TopicProfiler topicProfiler,
+                           TopicTails topicTails,
+                           KeyIndexes keyIndexes) implements AutoCloseable {
+
+    /**
+     * Closes every client of the cluster. Only called for clusters built by {@link KafkaClusters}; the default
+     * cluster's beans are closed by the application context.
+     */
+    @Override
+    public void close() {
+        keyIndexes.close();
+        topicTails.close();
+        consumerPool.close();
+        batchProducer.close();
+        if (kafkaTemplate.getProducerFactory() instanceof DefaultKafkaProducerFactory<String, String> factory) {
+            factory.destroy();
+        }
+        adminClientManager.close();
+    }
+}
@@ -0,0 +1,249 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ClusterSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Kafka clusters tools can address by name.
+ * <p>
+ * The default cluster ({@code kafka.mcp.default-cluster}) is the one configured with {@code spring.kafka.*} and is
+ * served by the application's beans. Every cluster under {@code kafka.mcp.clusters.<name>} gets its own admin
+ * client, producers, consumer pool, metadata cache and tails, created on its first tool call and closed again once
+ * it has gone unused for {@code kafka.mcp.cluster-idle-timeout} without open tails or key indexes, so a cluster
+ * nobody queries costs neither connections nor memory. Tool calls run inside {@link #leasing(Callable)}, which holds
+ * every cluster the call gets until it returns; a leased cluster is never closed, however long the call takes.
+ * Meters of a named cluster's clients carry a {@code cluster} tag; the number of named clusters with open clients is published as {@code kafka.mcp.clusters.connected}.
+ */
+@Slf4j
+public class KafkaClusters implements AutoCloseable {
+
+    private final KafkaCluster defaultCluster;
+    private final KafkaMcpProperties properties;
+    private final PayloadDecoder payloadDecoder;
+    private final ReadMetrics readMetrics;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Connected> connected = new ConcurrentHashMap<>();
+
+    /** Clusters leased by the tool call running on the current thread. */
+    private static final ThreadLocal<Set<Connected>> LEASES = new ThreadLocal<>();
+
+    private volatile boolean closed;
+
+    public KafkaClusters(KafkaCluster defaultCluster, KafkaMcpProperties properties, PayloadDecoder payloadDecoder,
+                         ReadMetrics readMetrics, MeterRegistry meterRegistry) {
+        if (properties.getClusters().containsKey(properties.getDefaultCluster())) {
+            throw new IllegalArgumentException("kafka.mcp.clusters must not redefine the default cluster '"
+                    + properties.getDefaultCluster() + "'");
+        }
+        properties.getClusters().forEach((name, cluster) -> {
+            if (cluster.getBootstrapServers() == null || cluster.getBootstrapServers().isBlank()) {
+                throw new IllegalArgumentException("kafka.mcp.clusters." + name + ".bootstrap-servers is not set");
+            }
+        });
+        this.defaultCluster = defaultCluster;
+        this.properties = properties;
+        this.payloadDecoder = payloadDecoder;
+        this.readMetrics = readMetrics;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("kafka.mcp.clusters.connected", connected, Map::size)
+                .description("Named clusters whose clients are currently open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} as one tool call: every named cluster it gets stays leased, and therefore open, until it
+     * returns. Nested calls share the outermost lease.
+     */
+    public static <T> T leasing(Callable<T> call) throws Exception {
+        if (LEASES.get() != null) {
+            return call.call();
+        }
+        Set<Connected> leases = new HashSet<>();
+        LEASES.set(leases);
+        try {
+            return call.call();
+        } finally {
+            LEASES.remove();
+            long now = System.nanoTime();
+            for (Connected cluster : leases) {
+                // Idle time counts from the end of the call, not from its start
+                cluster.lastUsed = now;
+                cluster.leases.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the clients of a cluster, connecting to it first if needed. A {@code null} or blank name selects
+     * the default cluster. Inside {@link #leasing(Callable)} the cluster is leased until the call returns.
+     */
+    public KafkaCluster get(String name) {
+        if (name == null || name.isBlank() || name.equals(properties.getDefaultCluster())) {
+            return defaultCluster;
+        }
+        KafkaMcpProperties.Cluster spec = properties.getClusters().get(name);
+        if (spec == null) {
+            throw new IllegalArgumentException("Unknown cluster '" + name + "'; known clusters: " + names());
+        }
+        if (closed) {
+            throw new IllegalStateException("Kafka clusters have been closed");
+        }
+        Set<Connected> leases = LEASES.get();
+        // Atomic with evictIdle's removal, so a cluster being closed is never handed out
+        Connected cluster = connected.compute(name, (n, current) -> {
+            Connected leased = current != null ? current : connect(n, spec);
+            leased.lastUsed = System.nanoTime();
+            if (leases != null && leases.add(leased)) {
+                leased.leases.incrementAndGet();
+            }
+            return leased;
+        });
+        return cluster.clients;
+    }
+
+    /**
+     * Every cluster that can be addressed, the default one first.
+     */
+    public List<ClusterSummary> list() {
+        List<ClusterSummary> clusters = new ArrayList<>();
+        clusters.add(ClusterSummary.builder()
+                .name(properties.getDefaultCluster())
+                .defaultCluster(true)
+                .connected(true)
+                .build());
+        properties.getClusters().forEach((name, spec) -> clusters.add(ClusterSummary.builder()
+                .name(name)
+                .bootstrapServers(spec.getBootstrapServers())
+                .connected(connected.containsKey(name))
+                .build()));
+        return clusters;
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        names.add(properties.getDefaultCluster());
+        names.addAll(properties.getClusters().keySet());
+        return names;
+    }
+
+    /**
+     * Runs the housekeeping the application's schedulers do for the default cluster's beans, and closes named
+     * clusters that have been idle for {@code kafka.mcp.cluster-idle-timeout}, are leased by no tool call and have
+     * no open tails or key indexes.
+     */
+    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - properties.getClusterIdleTimeout().toNanos();
+        connected.forEach((name, cluster) -> {
+            cluster.clients.topicTails().expireIdle();
+            cluster.clients.consumerPool().evictIdle();
+            if (removeIfIdle(name, cluster, cutoff)) {
+                log.info("Closing clients of cluster '{}' after {} without use", name,
+                        properties.getClusterIdleTimeout());
+                closeQuietly(cluster);
+            }
+        });
+    }
+
+    /**
+     * Checks and removes in one step, under the same map lock {@link #get} leases with.
+     */
+    private boolean removeIfIdle(String name, Connected cluster, long cutoff) {
+        AtomicBoolean removed = new AtomicBoolean();
+        connected.computeIfPresent(name, (n, current) -> {
+            if (current == cluster && cluster.leases.get() == 0 && cluster.lastUsed - cutoff < 0
+                    && cluster.clients.topicTails().tailCount() == 0
+                    && cluster.clients.keyIndexes().indexCount() == 0) {
+                removed.set(true);
+                return null;
+            }
+            return current;
+        });
+        return removed.get();
+    }
+
+    private Connected connect(String name, KafkaMcpProperties.Cluster spec) {
+        log.info("Connecting to cluster '{}' at {}", name, spec.getBootstrapServers());
+        Map<String, Object> config = new HashMap<>(spec.getProperties());
+        config.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, spec.getBootstrapServers());
+
+        CompositeMeterRegistry registry = new CompositeMeterRegistry();
+        registry.config().commonTags("cluster", name);
+        registry.add(meterRegistry);
+
+        AdminClientManager adminClientManager = new AdminClientManager(config, properties.getAdmin(), registry);
+        ConsumerPool consumerPool = new ConsumerPool(config, properties.getConsumer(), registry);
+        PartitionScanner partitionScanner = new PartitionScanner(adminClientManager, consumerPool, properties);
+        return new Connected(registry, new KafkaCluster(name,
+                kafkaTemplate(config, registry),
+                adminClientManager,
+                consumerPool,
+                new BatchProducer(config, properties.getProducer(), registry),
+                new MetadataCache(properties, registry),
+                partitionScanner,
+                new TopicProfiler(partitionScanner, payloadDecoder, properties),
+                new TopicTails(config, properties.getTail(), payloadDecoder, readMetrics, registry),
+                new KeyIndexes(name, spec.getKeyIndexTopics(), config, properties.getKeyIndex(), registry)));
+    }
+
+    private static KafkaTemplate<String, String> kafkaTemplate(Map<String, Object> config, MeterRegistry registry) {
+        Map<String, Object> props = new HashMap<>(config);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        DefaultKafkaProducerFactory<String, String> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.addListener(new MicrometerProducerListener<>(registry));
+        return new KafkaTemplate<>(factory);
+    }
+
+    private static void closeQuietly(Connected cluster) {
+        try {
+            cluster.clients.close();
+        } catch (RuntimeException e) {
+            log.warn("Error closing clients of cluster '{}'", cluster.clients.name(), e);
+        }
+        // Drop the closed clients' meters; they are registered again if the cluster is used later
+        List.copyOf(cluster.registry.getMeters()).forEach(cluster.registry::remove);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        connected.values().forEach(KafkaClusters::closeQuietly);
+        connected.clear();
+    }
+
+    private static final class Connected {
+        private final CompositeMeterRegistry registry;
+        private final KafkaCluster clients;
+        private final AtomicInteger leases = new AtomicInteger();
+        private volatile long lastUsed = System.nanoTime();
+
+        private Connected(CompositeMeterRegistry registry, KafkaCluster clients) {
+            this.registry = registry;
+            this.clients = clients;
+        }
+    }
+}
@@ -1,27 +1,38 @@
 package com.elzakaria.kafkamcpsbai.service;
 
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
 import com.elzakaria.kafkamcpsbai.dto.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.*;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.ConfigResource;
-import org.apache.kafka.common.header.Header;
-import org.springframework.kafka.core.KafkaAdmin;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,75 +40,483 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class KafkaService {
 
-    private final KafkaAdmin kafkaAdmin;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaClusters clusters;
+    private final PayloadDecoder payloadDecoder;
+    private final RecentRecordCache recordCache;
+    private final RequestCoalescer coalescer;
+    private final ReadMetrics readMetrics;
+    private final TopicTransfer topicTransfer;
+    private final KafkaMcpProperties properties;
 
-    private AdminClient getAdminClient() {
-        return AdminClient.create(kafkaAdmin.getConfigurationProperties());
+    public List<ClusterSummary> listClusters() {
+        return clusters.list();
     }
 
-    public List<String> listTopics() throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            return new ArrayList<>(adminClient.listTopics().names().get());
+    public List<String> listTopics(String cluster) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("listTopics", () -> kafka.metadataCache().topicNames(() -> fetchTopicNames(kafka)),
+                kafka.name());
+    }
+
+    public TopicInfo describeTopic(String cluster, String topicName) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        TopicInfo topicInfo = coalescer.execute("describeTopic",
+                () -> kafka.metadataCache().topic(topicName, () -> fetchTopic(kafka, topicName)),
+                kafka.name(), topicName);
+        if (topicInfo == null) {
+            throw new ExecutionException(new UnknownTopicOrPartitionException(
+                    "Topic '" + topicName + "' does not exist"));
         }
+        return topicInfo;
     }
 
-    public TopicInfo describeTopic(String topicName) throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            // Get topic description
-            TopicDescription description = adminClient.describeTopics(List.of(topicName))
-                    .topicNameValues()
-                    .get(topicName)
-                    .get();
+    private List<String> fetchTopicNames(KafkaCluster kafka) throws ExecutionException, InterruptedException {
+        return List.copyOf(kafka.adminClientManager().call(admin -> admin.listTopics().names()));
+    }
 
-            // Get topic configs
-            ConfigResource configResource = new ConfigResource(ConfigResource.Type.TOPIC, topicName);
-            Config config = adminClient.describeConfigs(List.of(configResource))
-                    .values()
-                    .get(configResource)
-                    .get();
+    /**
+     * Describes many topics at once: the given names, or every topic fully matching {@code topicPattern}
+     * (all topics when both are absent). Descriptions come from the metadata cache; misses are fetched with one
+     * {@code describeTopics} and one {@code describeConfigs} request issued together. Offsets are never cached
+     * and are looked up with two concurrent batched {@code listOffsets} requests when asked for.
+     */
+    public TopicsReport describeTopics(String cluster, List<String> topicNames, String topicPattern,
+                                       boolean includeOffsets) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("describeTopics",
+                () -> doDescribeTopics(kafka, topicNames, topicPattern, includeOffsets),
+                kafka.name(), topicNames, topicPattern, includeOffsets);
+    }
 
-            Map<String, String> configMap = config.entries().stream()
-                    .filter(entry -> !entry.isDefault())
-                    .collect(Collectors.toMap(ConfigEntry::name, ConfigEntry::value));
+    private TopicsReport doDescribeTopics(KafkaCluster kafka, List<String> topicNames, String topicPattern,
+                                          boolean includeOffsets) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        Set<String> names = resolveTopicNames(kafka, topicNames, topicPattern);
 
-            List<TopicInfo.PartitionInfo> partitions = description.partitions().stream()
-                    .map(p -> TopicInfo.PartitionInfo.builder()
-                            .partition(p.partition())
-                            .leader(p.leader() != null ? p.leader().id() : -1)
-                            .replicas(p.replicas().stream().map(Node::id).toList())
-                            .inSyncReplicas(p.isr().stream().map(Node::id).toList())
-                            .build())
-                    .toList();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Map<String, TopicInfo> found = names.isEmpty()
+                ? Map.of()
+                : kafka.metadataCache().topics(names, missing -> fetchTopics(kafka, missing, failures),
+                        name -> () -> fetchTopic(kafka, name));
+        List<TopicInfo> topics = names.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+        if (includeOffsets) {
+            topics = withOffsets(kafka, topics);
+        }
 
-            return TopicInfo.builder()
-                    .name(description.name())
-                    .partitionCount(description.partitions().size())
-                    .partitions(partitions)
-                    .configs(configMap)
-                    .build();
+        List<TopicInfo.PartitionInfo> partitions = topics.stream()
+                .flatMap(topic -> topic.getPartitions().stream())
+                .toList();
+        Map<String, String> errors = new TreeMap<>();
+        failures.forEach((name, failure) -> errors.put(name, failure.getMessage()));
+
+        return TopicsReport.builder()
+                .topicCount(topics.size())
+                .partitionCount(partitions.size())
+                .underReplicatedPartitions((int) partitions.stream().filter(TopicInfo.PartitionInfo::isUnderReplicated).count())
+                .offlinePartitions((int) partitions.stream().filter(TopicInfo.PartitionInfo::isOffline).count())
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .topics(topics)
+                .errors(errors)
+                .build();
+    }
+
+    /**
+     * The given names, or every topic fully matching {@code topicPattern} (all topics when both are absent).
+     */
+    private Set<String> resolveTopicNames(KafkaCluster kafka, List<String> topicNames, String topicPattern)
+            throws ExecutionException, InterruptedException {
+        if (topicNames != null && !topicNames.isEmpty()) {
+            return new TreeSet<>(topicNames);
+        }
+        Pattern pattern = topicPattern != null && !topicPattern.isBlank() ? Pattern.compile(topicPattern) : null;
+        return listTopics(kafka.name()).stream()
+                .filter(name -> pattern == null || pattern.matcher(name).matches())
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Describes one topic; {@code null} when it does not exist, so a cached description of a deleted topic is dropped
+     * on refresh.
+     */
+    private TopicInfo fetchTopic(KafkaCluster kafka, String topicName) throws ExecutionException, InterruptedException {
+        Map<String, Throwable> failures = new HashMap<>();
+        TopicInfo topicInfo = fetchTopics(kafka, Set.of(topicName), failures).get(topicName);
+        if (topicInfo == null && !(failures.get(topicName) instanceof UnknownTopicOrPartitionException)) {
+            throw new ExecutionException(failures.get(topicName));
         }
+        return topicInfo;
     }
 
-    public String createTopic(String topicName, int partitions, short replicationFactor)
+    /**
+     * Describes the topics and their configs in two requests sent together. Topics that fail are recorded in
+     * {@code failures} and left out of the result.
+     */
+    private Map<String, TopicInfo> fetchTopics(KafkaCluster kafka, Set<String> topicNames,
+                                               Map<String, Throwable> failures)
             throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            NewTopic newTopic = new NewTopic(topicName, partitions, replicationFactor);
-            adminClient.createTopics(List.of(newTopic)).all().get();
-            return "Topic '" + topicName + "' created successfully with " + partitions +
-                   " partition(s) and replication factor " + replicationFactor;
+        Map<String, ConfigResource> resources = topicNames.stream()
+                .collect(Collectors.toMap(name -> name, name -> new ConfigResource(ConfigResource.Type.TOPIC, name)));
+
+        Admin admin = kafka.adminClientManager().get();
+        Map<String, KafkaFuture<TopicDescription>> descriptions = admin.describeTopics(topicNames).topicNameValues();
+        Map<ConfigResource, KafkaFuture<Config>> configs = admin.describeConfigs(resources.values()).values();
+        List<KafkaFuture<?>> pending = new ArrayList<>(descriptions.values());
+        pending.addAll(configs.values());
+        try {
+            kafka.adminClientManager().await(admin, KafkaFuture.allOf(pending.toArray(KafkaFuture[]::new)));
+        } catch (ExecutionException e) {
+            // Per-topic failures are collected below
+        }
+
+        Map<String, TopicInfo> result = new HashMap<>();
+        for (String name : topicNames) {
+            try {
+                result.put(name, toTopicInfo(descriptions.get(name).get(), configs.get(resources.get(name)).get()));
+            } catch (ExecutionException e) {
+                failures.put(name, e.getCause());
+            }
+        }
+        return result;
+    }
+
+    private TopicInfo toTopicInfo(TopicDescription description, Config config) {
+        Map<String, String> configMap = config.entries().stream()
+                .filter(entry -> !entry.isDefault())
+                .collect(Collectors.toMap(ConfigEntry::name, ConfigEntry::value));
+
+        List<TopicInfo.PartitionInfo> partitions = description.partitions().stream()
+                .map(p -> TopicInfo.PartitionInfo.builder()
+                        .partition(p.partition())
+                        .leader(p.leader() != null ? p.leader().id() : -1)
+                        .replicas(p.replicas().stream().map(Node::id).toList())
+                        .inSyncReplicas(p.isr().stream().map(Node::id).toList())
+                        .underReplicated(p.isr().size() < p.replicas().size())
+                        .offline(p.leader() == null || p.leader().isEmpty())
+                        .build())
+                .toList();
+
+        return TopicInfo.builder()
+                .name(description.name())
+                .partitionCount(description.partitions().size())
+                .partitions(partitions)
+                .configs(configMap)
+                .build();
+    }
+
+    /**
+     * Returns copies of the topics with earliest and latest offsets filled in; the inputs may be cached and are
+     * left untouched. Offline partitions and partitions whose lookup failed keep {@code null} offsets.
+     */
+    private List<TopicInfo> withOffsets(KafkaCluster kafka, List<TopicInfo> topics)
+            throws ExecutionException, InterruptedException {
+        Map<TopicPartition, OffsetSpec> earliestRequest = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> latestRequest = new HashMap<>();
+        for (TopicInfo topic : topics) {
+            for (TopicInfo.PartitionInfo partition : topic.getPartitions()) {
+                if (!partition.isOffline()) {
+                    TopicPartition tp = new TopicPartition(topic.getName(), partition.getPartition());
+                    earliestRequest.put(tp, OffsetSpec.earliest());
+                    latestRequest.put(tp, OffsetSpec.latest());
+                }
+            }
+        }
+        if (earliestRequest.isEmpty()) {
+            return topics;
+        }
+
+        Admin admin = kafka.adminClientManager().get();
+        ListOffsetsResult earliest = admin.listOffsets(earliestRequest);
+        ListOffsetsResult latest = admin.listOffsets(latestRequest);
+        try {
+            kafka.adminClientManager().await(admin, KafkaFuture.allOf(earliest.all(), latest.all()));
+        } catch (ExecutionException e) {
+            log.warn("Offsets could not be listed for every partition: {}", e.getCause().getMessage());
+        }
+
+        return topics.stream()
+                .map(topic -> topic.toBuilder()
+                        .partitions(topic.getPartitions().stream()
+                                .map(partition -> {
+                                    if (partition.isOffline()) {
+                                        return partition;
+                                    }
+                                    TopicPartition tp = new TopicPartition(topic.getName(), partition.getPartition());
+                                    return partition.toBuilder()
+                                            .earliestOffset(offsetOrNull(earliest, tp))
+                                            .latestOffset(offsetOrNull(latest, tp))
+                                            .build();
+                                })
+                                .toList())
+                        .build())
+                .toList();
+    }
+
+    private static Long offsetOrNull(ListOffsetsResult result, TopicPartition tp) {
+        ListOffsetsResult.ListOffsetsResultInfo info = infoOrNull(result, tp);
+        return info != null ? info.offset() : null;
+    }
+
+    private static ListOffsetsResult.ListOffsetsResultInfo infoOrNull(ListOffsetsResult result, TopicPartition tp) {
+        return result != null ? doneOrNull(result.partitionResult(tp)) : null;
+    }
+
+    private static <T> T doneOrNull(KafkaFuture<T> future) {
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Summarizes how much data the selected topics hold (all topics when neither names nor a pattern are given):
+     * per-partition offsets, record counts, oldest and newest record timestamps and size on disk, rolled up per
+     * topic and per broker. Topic metadata comes from the metadata cache; everything else from four batched
+     * {@code listOffsets} requests and one {@code describeLogDirs} request, all sent together, however many topics
+     * are covered.
+     */
+    public StorageReport describeStorage(String cluster, List<String> topicNames, String topicPattern,
+                                         boolean includePartitions) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("describeStorage",
+                () -> doDescribeStorage(kafka, topicNames, topicPattern, includePartitions),
+                kafka.name(), topicNames, topicPattern, includePartitions);
+    }
+
+    private StorageReport doDescribeStorage(KafkaCluster kafka, List<String> topicNames, String topicPattern,
+                                            boolean includePartitions)
+            throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        Set<String> names = resolveTopicNames(kafka, topicNames, topicPattern);
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Map<String, TopicInfo> found = names.isEmpty()
+                ? Map.of()
+                : kafka.metadataCache().topics(names, missing -> fetchTopics(kafka, missing, failures),
+                        name -> () -> fetchTopic(kafka, name));
+        List<TopicInfo> topics = names.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+        List<Integer> brokerIds = describeCluster(kafka.name()).getBrokers().stream()
+                .map(ClusterInfo.BrokerInfo::getId)
+                .toList();
+
+        Map<TopicPartition, OffsetSpec> earliestRequest = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> latestRequest = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> oldestRequest = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> newestRequest = new HashMap<>();
+        for (TopicInfo topic : topics) {
+            for (TopicInfo.PartitionInfo partition : topic.getPartitions()) {
+                if (!partition.isOffline()) {
+                    TopicPartition tp = new TopicPartition(topic.getName(), partition.getPartition());
+                    earliestRequest.put(tp, OffsetSpec.earliest());
+                    latestRequest.put(tp, OffsetSpec.latest());
+                    // The first record with a timestamp at or after the epoch, i.e. the oldest one
+                    oldestRequest.put(tp, OffsetSpec.forTimestamp(0));
+                    newestRequest.put(tp, OffsetSpec.maxTimestamp());
+                }
+            }
+        }
+
+        Admin admin = kafka.adminClientManager().get();
+        List<KafkaFuture<?>> pending = new ArrayList<>();
+        ListOffsetsResult earliest = null;
+        ListOffsetsResult latest = null;
+        ListOffsetsResult oldest = null;
+        ListOffsetsResult newest = null;
+        if (!earliestRequest.isEmpty()) {
+            earliest = admin.listOffsets(earliestRequest);
+            latest = admin.listOffsets(latestRequest);
+            oldest = admin.listOffsets(oldestRequest);
+            newest = admin.listOffsets(newestRequest);
+            pending.addAll(List.of(earliest.all(), latest.all(), oldest.all(), newest.all()));
+        }
+        DescribeLogDirsResult logDirs = admin.describeLogDirs(brokerIds);
+        pending.addAll(logDirs.descriptions().values());
+        try {
+            kafka.adminClientManager().await(admin, KafkaFuture.allOf(pending.toArray(KafkaFuture[]::new)));
+        } catch (ExecutionException e) {
+            log.warn("Storage could not be described completely: {}", e.getCause().getMessage());
+        }
+
+        Map<String, String> errors = new TreeMap<>();
+        failures.forEach((name, failure) -> errors.put(name, failure.getMessage()));
+        Map<TopicPartition, Map<Integer, Long>> replicaSizes = new HashMap<>();
+        List<StorageReport.BrokerStorage> brokers = new ArrayList<>();
+        for (Map.Entry<Integer, KafkaFuture<Map<String, LogDirDescription>>> broker
+                : new TreeMap<>(logDirs.descriptions()).entrySet()) {
+            Map<String, LogDirDescription> dirs = doneOrNull(broker.getValue());
+            if (dirs == null) {
+                errors.put("broker " + broker.getKey(), "log dirs could not be described");
+                continue;
+            }
+            int dirCount = 0;
+            int replicas = 0;
+            long size = 0;
+            for (Map.Entry<String, LogDirDescription> dir : dirs.entrySet()) {
+                if (dir.getValue().error() != null) {
+                    errors.put("broker " + broker.getKey() + " " + dir.getKey(), dir.getValue().error().getMessage());
+                    continue;
+                }
+                dirCount++;
+                for (Map.Entry<TopicPartition, ReplicaInfo> replica : dir.getValue().replicaInfos().entrySet()) {
+                    // A future replica is a copy being moved between log dirs; the current one is counted
+                    if (replica.getValue().isFuture()) {
+                        continue;
+                    }
+                    replicas++;
+                    size += replica.getValue().size();
+                    replicaSizes.computeIfAbsent(replica.getKey(), tp -> new HashMap<>())
+                            .put(broker.getKey(), replica.getValue().size());
+                }
+            }
+            brokers.add(StorageReport.BrokerStorage.builder()
+                    .brokerId(broker.getKey())
+                    .logDirs(dirCount)
+                    .replicas(replicas)
+                    .sizeBytes(size)
+                    .build());
+        }
+
+        long now = System.currentTimeMillis();
+        List<StorageReport.TopicStorage> summaries = new ArrayList<>(topics.size());
+        for (TopicInfo topic : topics) {
+            List<StorageReport.PartitionStorage> partitions = new ArrayList<>(topic.getPartitions().size());
+            for (TopicInfo.PartitionInfo partition : topic.getPartitions()) {
+                TopicPartition tp = new TopicPartition(topic.getName(), partition.getPartition());
+                partitions.add(partitionStorage(partition, replicaSizes.getOrDefault(tp, Map.of()),
+                        offsetOrNull(earliest, tp), offsetOrNull(latest, tp), infoOrNull(oldest, tp),
+                        infoOrNull(newest, tp)));
+            }
+            summaries.add(topicStorage(topic, partitions, includePartitions, now));
         }
+        summaries.sort(Comparator.comparingLong(StorageReport.TopicStorage::getSizeBytes).reversed());
+
+        return StorageReport.builder()
+                .topicCount(summaries.size())
+                .partitionCount(summaries.stream().mapToInt(StorageReport.TopicStorage::getPartitionCount).sum())
+                .records(summaries.stream().mapToLong(StorageReport.TopicStorage::getRecords).sum())
+                .sizeBytes(summaries.stream().mapToLong(StorageReport.TopicStorage::getSizeBytes).sum())
+                .replicatedSizeBytes(summaries.stream()
+                        .mapToLong(StorageReport.TopicStorage::getReplicatedSizeBytes).sum())
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .topics(summaries)
+                .brokers(brokers)
+                .errors(errors)
+                .build();
     }
 
-    public String deleteTopic(String topicName) throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            adminClient.deleteTopics(List.of(topicName)).all().get();
-            return "Topic '" + topicName + "' deleted successfully";
+    private static StorageReport.PartitionStorage partitionStorage(TopicInfo.PartitionInfo partition,
+                                                                   Map<Integer, Long> replicaSizes,
+                                                                   Long earliestOffset, Long latestOffset,
+                                                                   ListOffsetsResult.ListOffsetsResultInfo oldest,
+                                                                   ListOffsetsResult.ListOffsetsResultInfo newest) {
+        // Without a leader, the largest replica stands in for it
+        Long size = replicaSizes.get(partition.getLeader());
+        if (size == null && !replicaSizes.isEmpty()) {
+            size = Collections.max(replicaSizes.values());
         }
+        boolean hasNewest = newest != null && newest.offset() >= 0 && newest.timestamp() >= 0;
+        return StorageReport.PartitionStorage.builder()
+                .partition(partition.getPartition())
+                .leader(partition.getLeader())
+                .earliestOffset(earliestOffset)
+                .latestOffset(latestOffset)
+                .records(earliestOffset != null && latestOffset != null ? latestOffset - earliestOffset : null)
+                .sizeBytes(size)
+                .replicatedSizeBytes(replicaSizes.isEmpty() ? null
+                        : replicaSizes.values().stream().mapToLong(Long::longValue).sum())
+                .oldestTimestamp(oldest != null && oldest.offset() >= 0 && oldest.timestamp() >= 0
+                        ? oldest.timestamp() : null)
+                .latestTimestamp(hasNewest ? newest.timestamp() : null)
+                .latestTimestampOffset(hasNewest ? newest.offset() : null)
+                .build();
     }
 
-    public ProduceResult produceMessage(String topic, String key, String value, Map<String, String> headers) {
+    private static StorageReport.TopicStorage topicStorage(TopicInfo topic,
+                                                           List<StorageReport.PartitionStorage> partitions,
+                                                           boolean includePartitions, long now) {
+        long records = 0;
+        long size = 0;
+        long replicated = 0;
+        Long oldest = null;
+        Long newest = null;
+        StorageReport.PartitionStorage largest = null;
+        long maxRecords = 0;
+        for (StorageReport.PartitionStorage partition : partitions) {
+            long partitionSize = partition.getSizeBytes() != null ? partition.getSizeBytes() : 0;
+            records += partition.getRecords() != null ? partition.getRecords() : 0;
+            size += partitionSize;
+            replicated += partition.getReplicatedSizeBytes() != null ? partition.getReplicatedSizeBytes() : 0;
+            maxRecords = Math.max(maxRecords, partition.getRecords() != null ? partition.getRecords() : 0);
+            if (largest == null || partitionSize > (largest.getSizeBytes() != null ? largest.getSizeBytes() : 0)) {
+                largest = partition;
+            }
+            if (partition.getOldestTimestamp() != null
+                    && (oldest == null || partition.getOldestTimestamp() < oldest)) {
+                oldest = partition.getOldestTimestamp();
+            }
+            if (partition.getLatestTimestamp() != null
+                    && (newest == null || partition.getLatestTimestamp() > newest)) {
+                newest = partition.getLatestTimestamp();
+            }
+        }
+        double meanSize = partitions.isEmpty() ? 0 : (double) size / partitions.size();
+        double meanRecords = partitions.isEmpty() ? 0 : (double) records / partitions.size();
+        return StorageReport.TopicStorage.builder()
+                .name(topic.getName())
+                .partitionCount(partitions.size())
+                .records(records)
+                .sizeBytes(size)
+                .replicatedSizeBytes(replicated)
+                .avgRecordBytes(records > 0 ? round((double) size / records) : null)
+                .sizeSkew(meanSize > 0 ? round(largest.getSizeBytes() / meanSize) : null)
+                .recordSkew(meanRecords > 0 ? round(maxRecords / meanRecords) : null)
+                .largestPartition(largest != null && meanSize > 0 ? largest.getPartition() : null)
+                .oldestTimestamp(oldest)
+                .oldestRecordAgeMs(oldest != null ? Math.max(0, now - oldest) : null)
+                .latestTimestamp(newest)
+                .retentionMs(topic.getConfigs().get("retention.ms"))
+                .retentionBytes(topic.getConfigs().get("retention.bytes"))
+                .cleanupPolicy(topic.getConfigs().get("cleanup.policy"))
+                .partitions(includePartitions ? partitions : null)
+                .build();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    public String createTopic(String cluster, String topicName, int partitions, short replicationFactor)
+            throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        NewTopic newTopic = new NewTopic(topicName, partitions, replicationFactor);
+        kafka.adminClientManager().call(admin -> admin.createTopics(List.of(newTopic)).all());
+        kafka.metadataCache().invalidateTopic(topicName);
+        recordCache.invalidateTopic(kafka.name(), topicName);
+        return "Topic '" + topicName + "' created successfully with " + partitions +
+               " partition(s) and replication factor " + replicationFactor;
+    }
+
+    public String deleteTopic(String cluster, String topicName) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        kafka.adminClientManager().call(admin -> admin.deleteTopics(List.of(topicName)).all());
+        kafka.metadataCache().invalidateTopic(topicName);
+        recordCache.invalidateTopic(kafka.name(), topicName);
+        kafka.topicTails().topicDeleted(topicName);
+        return "Topic '" + topicName + "' deleted successfully";
+    }
+
+    public ProduceResult produceMessage(String cluster, String topic, String key, String value,
+                                        Map<String, String> headers) {
         try {
+            KafkaCluster kafka = clusters.get(cluster);
             ProducerRecord<String, String> record = new ProducerRecord<>(topic, key, value);
 
             if (headers != null) {
@@ -105,7 +524,10 @@ public class KafkaService {
                     record.headers().add(k, v.getBytes(StandardCharsets.UTF_8)));
             }
 
-            RecordMetadata metadata = kafkaTemplate.send(record).get().getRecordMetadata();
+            Duration sendTimeout = Deadline.cap(properties.getProducer().getSendTimeout());
+            RecordMetadata metadata = kafka.kafkaTemplate().send(record)
+                    .get(sendTimeout.toNanos(), TimeUnit.NANOSECONDS)
+                    .getRecordMetadata();
 
             return ProduceResult.builder()
                     .topic(metadata.topic())
@@ -124,179 +546,623 @@ public class KafkaService {
         }
     }
 
-    public List<KafkaMessage> consumeMessages(String topic, int maxMessages, boolean fromBeginning,
-                                               Duration timeout) {
-        Properties props = new Properties();
-        props.putAll(kafkaAdmin.getConfigurationProperties());
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "kafka-mcp-consumer-" + UUID.randomUUID());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, fromBeginning ? "earliest" : "latest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
-                  "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                  "org.apache.kafka.common.serialization.StringDeserializer");
+    public BatchProduceResult produceMessages(String cluster, String topic, List<ProduceRecord> records)
+            throws InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        if (records.size() > properties.getProducer().getMaxBatchRecords()) {
+            throw new IllegalArgumentException("At most " + properties.getProducer().getMaxBatchRecords()
+                    + " records can be produced in one call, got " + records.size());
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>(records.size());
+        for (ProduceRecord produceRecord : records) {
+            try {
+                futures.add(kafka.batchProducer().send(toProducerRecord(topic, produceRecord)));
+            } catch (RuntimeException e) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        kafka.batchProducer().flush();
+
+        Duration sendTimeout = Deadline.cap(properties.getProducer().getSendTimeout());
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(sendTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Per-record outcomes are reported below
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        List<ProduceResult> results = futures.stream()
+                .map(future -> toProduceResult(topic, future, sendTimeout))
+                .toList();
+        int successCount = (int) results.stream().filter(ProduceResult::isSuccess).count();
+
+        return BatchProduceResult.builder()
+                .topic(topic)
+                .recordCount(records.size())
+                .successCount(successCount)
+                .failureCount(records.size() - successCount)
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .recordsPerSecond(elapsedNanos > 0 ? successCount * 1e9 / elapsedNanos : 0)
+                .results(results)
+                .build();
+    }
+
+    private ProducerRecord<String, String> toProducerRecord(String topic, ProduceRecord produceRecord) {
+        RecordHeaders headers = new RecordHeaders();
+        if (produceRecord.getHeaders() != null) {
+            produceRecord.getHeaders().forEach((k, v) -> headers.add(k, v.getBytes(StandardCharsets.UTF_8)));
+        }
+        return new ProducerRecord<>(topic, produceRecord.getPartition(), produceRecord.getTimestamp(),
+                produceRecord.getKey(), produceRecord.getValue(), headers);
+    }
+
+    private ProduceResult toProduceResult(String topic, CompletableFuture<SendResult<String, String>> future,
+                                          Duration sendTimeout) {
+        if (!future.isDone()) {
+            return ProduceResult.builder()
+                    .topic(topic)
+                    .success(false)
+                    .errorMessage("No acknowledgement within " + sendTimeout)
+                    .build();
+        }
+        if (future.isCompletedExceptionally()) {
+            Throwable cause = NestedExceptionUtils.getMostSpecificCause(future.exceptionNow());
+            return ProduceResult.builder()
+                    .topic(topic)
+                    .success(false)
+                    .errorMessage(cause.getMessage())
+                    .build();
+        }
+        RecordMetadata metadata = future.resultNow().getRecordMetadata();
+        return ProduceResult.builder()
+                .topic(metadata.topic())
+                .partition(metadata.partition())
+                .offset(metadata.offset())
+                .timestamp(metadata.timestamp())
+                .success(true)
+                .build();
+    }
 
+    /**
+     * Reads up to {@code maxMessages} records across all partitions. Each partition's range is served from the
+     * recent-records cache as far as it goes; only the rest is fetched, and what is fetched is cached.
+     *
+     * @param onBatch receives the messages of every cache read and poll as they are added, before the full list
+     *                is returned
+     */
+    public List<KafkaMessage> consumeMessages(String cluster, String topic, int maxMessages, boolean fromBeginning,
+                                               Duration timeout, RecordProjection projection,
+                                               java.util.function.Consumer<List<KafkaMessage>> onBatch)
+            throws InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        timeout = Deadline.cap(timeout);
         List<KafkaMessage> messages = new ArrayList<>();
+        Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> fetched = new HashMap<>();
+        long records = 0;
+        long bytes = 0;
 
-        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
-            consumer.subscribe(List.of(topic));
+        try (ConsumerPool.Lease lease = kafka.consumerPool().borrow()) {
+            Consumer<byte[], byte[]> consumer = lease.consumer();
+
+            List<TopicPartition> partitions = consumer.partitionsFor(topic, timeout).stream()
+                    .map(p -> new TopicPartition(topic, p.partition()))
+                    .toList();
+            if (partitions.isEmpty()) {
+                throw new IllegalArgumentException("Topic '" + topic + "' does not exist");
+            }
+
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> startOffsets = fromBeginning
+                    ? consumer.beginningOffsets(partitions, timeout)
+                    : consumer.endOffsets(partitions, timeout);
+            startOffsets.forEach((tp, offset) -> consumer.seek(tp, recordCache.read(kafka.name(), tp, offset,
+                    maxMessages - messages.size(), record -> messages.add(projection.map(record, payloadDecoder)))));
+            if (!messages.isEmpty()) {
+                onBatch.accept(List.copyOf(messages));
+            }
 
             long endTime = System.currentTimeMillis() + timeout.toMillis();
 
             while (messages.size() < maxMessages && System.currentTimeMillis() < endTime) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
+                ConsumerRecords<byte[], byte[]> batch = consumer.poll(Duration.ofMillis(100));
+                int batchStart = messages.size();
 
-                for (ConsumerRecord<String, String> record : records) {
+                for (ConsumerRecord<byte[], byte[]> record : batch) {
                     if (messages.size() >= maxMessages) break;
-
-                    Map<String, String> headerMap = new HashMap<>();
-                    for (Header header : record.headers()) {
-                        headerMap.put(header.key(), new String(header.value(), StandardCharsets.UTF_8));
-                    }
-
-                    messages.add(KafkaMessage.builder()
-                            .topic(record.topic())
-                            .partition(record.partition())
-                            .offset(record.offset())
-                            .key(record.key())
-                            .value(record.value())
-                            .timestamp(record.timestamp())
-                            .headers(headerMap)
-                            .build());
+                    messages.add(projection.map(record, payloadDecoder));
+                    fetched.computeIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                            tp -> new ArrayList<>()).add(record);
+                    records++;
+                    bytes += ReadMetrics.sizeOf(record);
+                }
+                if (messages.size() > batchStart) {
+                    onBatch.accept(List.copyOf(messages.subList(batchStart, messages.size())));
                 }
             }
         }
 
+        fetched.values().forEach(run -> recordCache.put(kafka.name(), run));
+        readMetrics.record("consume", records, bytes, messages.size());
         return messages;
     }
 
-    public List<KafkaMessage> peekMessages(String topic, int partition, long offset, int count) {
-        Properties props = new Properties();
-        props.putAll(kafkaAdmin.getConfigurationProperties());
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "kafka-mcp-peek-" + UUID.randomUUID());
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
-                  "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                  "org.apache.kafka.common.serialization.StringDeserializer");
-
+    /**
+     * Reads {@code count} records of one partition from {@code offset}, from the recent-records cache as far as it
+     * goes; the broker is only asked for the rest, and what it returns is cached.
+     */
+    public List<KafkaMessage> peekMessages(String cluster, String topic, int partition, long offset, int count,
+                                           RecordProjection projection)
+            throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
         List<KafkaMessage> messages = new ArrayList<>();
         TopicPartition tp = new TopicPartition(topic, partition);
 
-        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
+        long next = recordCache.read(kafka.name(), tp, offset, count,
+                record -> messages.add(projection.map(record, payloadDecoder)));
+        List<ConsumerRecord<byte[], byte[]>> fetched = new ArrayList<>();
+        while (messages.size() < count) {
+            // Raw records are shared by identical concurrent peeks; each caller applies its own projection
+            int remaining = count - messages.size();
+            long from = next;
+            PartitionFetch fetch = coalescer.execute("peek", () -> fetchPartition(kafka, tp, from, remaining),
+                    kafka.name(), tp, from, remaining);
+            fetch.records().forEach(record -> messages.add(projection.map(record, payloadDecoder)));
+            fetched.addAll(fetch.records());
+            if (!fetch.records().isEmpty()) {
+                next = fetch.records().getLast().offset() + 1;
+            }
+            // A fetch cut short by the leading call's deadline is continued by joined calls that have time left
+            if (fetch.complete() || Deadline.expired()) {
+                break;
+            }
+        }
+
+        readMetrics.record("peek", fetched.size(), fetched.stream().mapToLong(ReadMetrics::sizeOf).sum(),
+                messages.size());
+        return messages;
+    }
+
+    /**
+     * Records read by {@link #fetchPartition}; {@code complete} is {@code false} when the fetching call's deadline
+     * stopped it before it had {@code count} records or reached the end of the partition.
+     */
+    private record PartitionFetch(List<ConsumerRecord<byte[], byte[]>> records, boolean complete) {
+    }
+
+    /**
+     * Fetches up to {@code count} records of a partition from {@code offset} and caches them.
+     */
+    private PartitionFetch fetchPartition(KafkaCluster kafka, TopicPartition tp, long offset, int count)
+            throws InterruptedException {
+        List<ConsumerRecord<byte[], byte[]>> fetched = new ArrayList<>(count);
+        try (ConsumerPool.Lease lease = kafka.consumerPool().borrow()) {
+            Consumer<byte[], byte[]> consumer = lease.consumer();
             consumer.assign(List.of(tp));
             consumer.seek(tp, offset);
 
-            while (messages.size() < count) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
+            while (fetched.size() < count && !Deadline.expired()) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(Deadline.cap(Duration.ofSeconds(5)));
                 if (records.isEmpty()) break;
 
-                for (ConsumerRecord<String, String> record : records) {
-                    if (messages.size() >= count) break;
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    if (fetched.size() >= count) break;
+                    fetched.add(record);
+                }
+            }
+        }
+        recordCache.put(kafka.name(), fetched);
+        return new PartitionFetch(List.copyOf(fetched), fetched.size() >= count || !Deadline.expired());
+    }
 
-                    Map<String, String> headerMap = new HashMap<>();
-                    for (Header header : record.headers()) {
-                        headerMap.put(header.key(), new String(header.value(), StandardCharsets.UTF_8));
-                    }
+    public SearchResult searchMessages(String cluster, String topic, MessageFilter filter,
+                                       PartitionScanner.Bounds bounds, int maxResults, long maxRecords,
+                                       Duration maxTime) throws ExecutionException, InterruptedException {
+        PartitionScanner scanner = clusters.get(cluster).partitionScanner();
+        long start = System.nanoTime();
+        List<PartitionScanner.PartitionRange> ranges = scanner.resolveRanges(topic, bounds);
+        ScanBudget budget = new ScanBudget(maxRecords, properties.getScan().getMaxBytes().toBytes(),
+                Deadline.cap(maxTime));
 
-                    messages.add(KafkaMessage.builder()
-                            .topic(record.topic())
-                            .partition(record.partition())
-                            .offset(record.offset())
-                            .key(record.key())
-                            .value(record.value())
-                            .timestamp(record.timestamp())
-                            .headers(headerMap)
-                            .build());
+        Queue<KafkaMessage> matches = new ConcurrentLinkedQueue<>();
+        AtomicInteger matchCount = new AtomicInteger();
+        List<ScanStats.PartitionProgress> progress = scanner.scan(ranges, budget, maxResults, record -> {
+            if (!filter.test(record)) {
+                return false;
+            }
+            if (matchCount.incrementAndGet() > maxResults) {
+                budget.stop(ScanBudget.MAX_RESULTS);
+                return false;
+            }
+            matches.add(RecordProjection.ALL.map(record, payloadDecoder));
+            return true;
+        });
+
+        List<KafkaMessage> sorted = matches.stream()
+                .sorted(Comparator.comparingInt(KafkaMessage::getPartition).thenComparingLong(KafkaMessage::getOffset))
+                .toList();
+        readMetrics.record("search", budget.records(), budget.bytes(), sorted.size());
+
+        return SearchResult.builder()
+                .topic(topic)
+                .matchCount(sorted.size())
+                .matches(sorted)
+                .stats(ScanStats.builder()
+                        .recordsScanned(budget.records())
+                        .bytesScanned(budget.bytes())
+                        .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                        .stopReason(budget.stopReason())
+                        .partitions(progress)
+                        .build())
+                .build();
+    }
+
+    public TopicProfile profileTopic(String cluster, String topic, Long startTime, Long endTime,
+                                     int samplePerPartition, int topKeys, Duration maxTime)
+            throws ExecutionException, InterruptedException {
+        if (startTime != null && endTime <= startTime) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+        KafkaCluster kafka = clusters.get(cluster);
+        TopicProfile profile = kafka.topicProfiler().profile(topic, startTime, endTime, samplePerPartition, topKeys,
+                Deadline.cap(maxTime));
+        readMetrics.record("profile", profile.getStats().getRecordsScanned(), profile.getStats().getBytesScanned(), 0);
+        return profile;
+    }
+
+    public TimeWindowResult consumeTimeWindow(String cluster, String topic, Integer partition, long startTime,
+                                              long endTime, int maxMessages, Duration maxTime)
+            throws ExecutionException, InterruptedException {
+        if (endTime <= startTime) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+        PartitionScanner scanner = clusters.get(cluster).partitionScanner();
+        long start = System.nanoTime();
+        List<PartitionScanner.PartitionRange> ranges = scanner.resolveRanges(topic,
+                new PartitionScanner.Bounds(partition, null, null, startTime, endTime));
+        ScanBudget budget = new ScanBudget(properties.getScan().getMaxRecords(),
+                properties.getScan().getMaxBytes().toBytes(), Deadline.cap(maxTime));
+
+        // Each partition contributes at most maxMessages records, enough for the earliest maxMessages overall
+        Queue<KafkaMessage> collected = new ConcurrentLinkedQueue<>();
+        List<ScanStats.PartitionProgress> progress = scanner.scan(ranges, budget, maxMessages, record -> {
+            if (record.timestamp() < startTime || record.timestamp() >= endTime) {
+                return false;
+            }
+            collected.add(RecordProjection.ALL.map(record, payloadDecoder));
+            return true;
+        });
+
+        List<KafkaMessage> messages = collected.stream()
+                .sorted(Comparator.comparingLong(KafkaMessage::getTimestamp)
+                        .thenComparingInt(KafkaMessage::getPartition)
+                        .thenComparingLong(KafkaMessage::getOffset))
+                .limit(maxMessages)
+                .toList();
+        readMetrics.record("timeWindow", budget.records(), budget.bytes(), messages.size());
+
+        return TimeWindowResult.builder()
+                .topic(topic)
+                .startTime(startTime)
+                .endTime(endTime)
+                .messagesReturned(messages.size())
+                .truncated(collected.size() > messages.size()
+                        || progress.stream().anyMatch(p -> !p.isCompleted()))
+                .messages(messages)
+                .stats(ScanStats.builder()
+                        .recordsScanned(budget.records())
+                        .bytesScanned(budget.bytes())
+                        .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                        .stopReason(budget.stopReason())
+                        .partitions(progress)
+                        .build())
+                .build();
+    }
+
+    public ExportResult exportTopic(String cluster, String topic, PartitionScanner.Bounds bounds, String fileName,
+                                    String format, String compression, Duration maxTime)
+            throws IOException, ExecutionException, InterruptedException {
+        ExportResult result = topicTransfer.export(clusters.get(cluster), topic, bounds, fileName, format,
+                compression, Deadline.cap(maxTime));
+        readMetrics.record("export", result.getRecordsWritten(), result.getBytesRead(), 0);
+        return result;
+    }
+
+    public ImportResult importTopic(String cluster, String fileName, String topic, int ratePerSecond,
+                                    boolean preservePartitions, boolean preserveTimestamps, Duration maxTime)
+            throws IOException {
+        return topicTransfer.importFile(clusters.get(cluster), fileName, topic, ratePerSecond, preservePartitions,
+                preserveTimestamps, Deadline.cap(maxTime));
+    }
+
+    public TailSubscription subscribeTopic(String cluster, String topic, MessageFilter filter,
+                                           RecordProjection projection, int replay) {
+        return clusters.get(cluster).topicTails().subscribe(topic, filter, projection, replay);
+    }
+
+    public TailBatch pollSubscription(String cluster, String subscriptionId, int maxMessages, Duration wait)
+            throws InterruptedException {
+        return clusters.get(cluster).topicTails().poll(subscriptionId, maxMessages, wait);
+    }
+
+    public boolean unsubscribeTopic(String cluster, String subscriptionId) {
+        return clusters.get(cluster).topicTails().unsubscribe(subscriptionId);
+    }
+
+    /**
+     * Looks keys up in the topic's key index. Keys are matched as UTF-8 bytes.
+     */
+    public KeyLookupResult lookupKeys(String cluster, String topic, List<String> keys) throws IOException {
+        int max = properties.getKeyIndex().getMaxKeysPerLookup();
+        if (keys.isEmpty() || keys.size() > max) {
+            throw new IllegalArgumentException("Between 1 and " + max + " keys can be looked up at once, got "
+                    + keys.size());
+        }
+        KeyIndexes keyIndexes = clusters.get(cluster).keyIndexes();
+        List<KeyIndexFile.Entry> entries = keyIndexes.lookup(topic,
+                keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toList());
+
+        List<KeyLookupResult.KeyLookup> results = new ArrayList<>(keys.size());
+        int found = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            KeyIndexFile.Entry entry = entries.get(i);
+            KeyLookupResult.KeyLookup.KeyLookupBuilder result = KeyLookupResult.KeyLookup.builder()
+                    .key(keys.get(i))
+                    .found(entry != null);
+            if (entry != null) {
+                found++;
+                result.deleted(entry.deleted() ? Boolean.TRUE : null)
+                        .partition(entry.partition())
+                        .offset(entry.offset())
+                        .timestamp(entry.timestamp());
+                PayloadDecoder.Decoded value = payloadDecoder.decode(entry.value());
+                if (value != null) {
+                    result.value(value.text()).valueFormat(value.format()).valueSchemaId(value.schemaId());
                 }
             }
+            results.add(result.build());
         }
+        return KeyLookupResult.builder()
+                .topic(topic)
+                .keysFound(found)
+                .indexedKeys(keyIndexes.keyCount(topic))
+                .indexLag(keyIndexes.lag(topic))
+                .results(results)
+                .build();
+    }
 
-        return messages;
+    public List<String> listConsumerGroups(String cluster) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("listConsumerGroups", () -> fetchConsumerGroups(kafka), kafka.name());
     }
 
     @SuppressWarnings("removal")
-    public List<String> listConsumerGroups() throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            // Using deprecated API - will migrate when Kafka provides stable replacement
-            return adminClient.listConsumerGroups().all().get().stream()
-                    .map(ConsumerGroupListing::groupId)
-                    .toList();
-        }
+    private List<String> fetchConsumerGroups(KafkaCluster kafka) throws ExecutionException, InterruptedException {
+        // Using deprecated API - will migrate when Kafka provides stable replacement
+        return kafka.adminClientManager().call(admin -> admin.listConsumerGroups().all()).stream()
+                .map(ConsumerGroupListing::groupId)
+                .toList();
+    }
+
+    public ConsumerGroupInfo describeConsumerGroup(String cluster, String groupId)
+            throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("describeConsumerGroup", () -> fetchConsumerGroup(kafka, groupId),
+                kafka.name(), groupId);
+    }
+
+    private ConsumerGroupInfo fetchConsumerGroup(KafkaCluster kafka, String groupId)
+            throws ExecutionException, InterruptedException {
+        ConsumerGroupDescription description = kafka.adminClientManager().call(admin -> admin.describeConsumerGroups(List.of(groupId))
+                .describedGroups()
+                .get(groupId));
+
+        List<ConsumerGroupInfo.MemberInfo> members = description.members().stream()
+                .map(member -> {
+                    Map<String, List<Integer>> assignmentsByTopic = new HashMap<>();
+                    member.assignment().topicPartitions().forEach(tp -> {
+                        assignmentsByTopic.computeIfAbsent(tp.topic(), k -> new ArrayList<>())
+                                .add(tp.partition());
+                    });
+
+                    List<ConsumerGroupInfo.TopicPartitionAssignment> assignments = assignmentsByTopic.entrySet()
+                            .stream()
+                            .map(e -> ConsumerGroupInfo.TopicPartitionAssignment.builder()
+                                    .topic(e.getKey())
+                                    .partitions(e.getValue())
+                                    .build())
+                            .toList();
+
+                    return ConsumerGroupInfo.MemberInfo.builder()
+                            .memberId(member.consumerId())
+                            .clientId(member.clientId())
+                            .host(member.host())
+                            .assignments(assignments)
+                            .build();
+                })
+                .toList();
+
+        return ConsumerGroupInfo.builder()
+                .groupId(description.groupId())
+                .state(description.state().toString())
+                .coordinator(description.coordinator() != null ?
+                             description.coordinator().host() + ":" + description.coordinator().port() : null)
+                .partitionAssignor(description.partitionAssignor())
+                .members(members)
+                .build();
+    }
+
+    /**
+     * Computes lag for one group, or for every group whose id matches the pattern (all groups when both are null),
+     * with one batched listConsumerGroupOffsets call and one listOffsets call for all committed partitions. Groups
+     * and partitions whose offsets could not be listed are reported in {@code errors} instead of failing the call.
+     */
+    public ConsumerGroupLagReport consumerGroupLag(String cluster, String groupId, String groupPattern, int maxGroups)
+            throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("consumerGroupLag", () -> computeGroupLag(kafka, groupId, groupPattern, maxGroups),
+                kafka.name(), groupId, groupPattern, maxGroups);
     }
 
-    public ConsumerGroupInfo describeConsumerGroup(String groupId) throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            ConsumerGroupDescription description = adminClient.describeConsumerGroups(List.of(groupId))
-                    .describedGroups()
-                    .get(groupId)
-                    .get();
-
-            List<ConsumerGroupInfo.MemberInfo> members = description.members().stream()
-                    .map(member -> {
-                        Map<String, List<Integer>> assignmentsByTopic = new HashMap<>();
-                        member.assignment().topicPartitions().forEach(tp -> {
-                            assignmentsByTopic.computeIfAbsent(tp.topic(), k -> new ArrayList<>())
-                                    .add(tp.partition());
-                        });
-
-                        List<ConsumerGroupInfo.TopicPartitionAssignment> assignments = assignmentsByTopic.entrySet()
-                                .stream()
-                                .map(e -> ConsumerGroupInfo.TopicPartitionAssignment.builder()
-                                        .topic(e.getKey())
-                                        .partitions(e.getValue())
-                                        .build())
-                                .toList();
-
-                        return ConsumerGroupInfo.MemberInfo.builder()
-                                .memberId(member.consumerId())
-                                .clientId(member.clientId())
-                                .host(member.host())
-                                .assignments(assignments)
-                                .build();
-                    })
+    private ConsumerGroupLagReport computeGroupLag(KafkaCluster kafka, String groupId, String groupPattern,
+                                                   int maxGroups) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        List<String> groupIds;
+        if (groupId != null && !groupId.isBlank()) {
+            groupIds = List.of(groupId);
+        } else {
+            Pattern pattern = groupPattern != null && !groupPattern.isBlank() ? Pattern.compile(groupPattern) : null;
+            groupIds = listConsumerGroups(kafka.name()).stream()
+                    .filter(id -> pattern == null || pattern.matcher(id).matches())
                     .toList();
+        }
+        if (groupIds.isEmpty()) {
+            return ConsumerGroupLagReport.builder().groups(List.of()).build();
+        }
 
-            return ConsumerGroupInfo.builder()
-                    .groupId(description.groupId())
-                    .state(description.state().toString())
-                    .coordinator(description.coordinator() != null ?
-                                 description.coordinator().host() + ":" + description.coordinator().port() : null)
-                    .partitionAssignor(description.partitionAssignor())
-                    .members(members)
-                    .build();
+        Map<String, ListConsumerGroupOffsetsSpec> specs = groupIds.stream()
+                .collect(Collectors.toMap(id -> id, id -> new ListConsumerGroupOffsetsSpec()));
+        Admin admin = kafka.adminClientManager().get();
+        ListConsumerGroupOffsetsResult offsetsResult = admin.listConsumerGroupOffsets(specs);
+        try {
+            kafka.adminClientManager().await(admin, offsetsResult.all());
+        } catch (ExecutionException e) {
+            // Per-group failures are collected below
         }
+        Map<String, String> errors = new TreeMap<>();
+        Map<String, Map<TopicPartition, OffsetAndMetadata>> committed = new HashMap<>();
+        for (String id : groupIds) {
+            try {
+                committed.put(id, offsetsResult.partitionsToOffsetAndMetadata(id).get());
+            } catch (ExecutionException e) {
+                errors.put(id, e.getCause().getMessage());
+            }
+        }
+
+        Map<TopicPartition, OffsetSpec> endOffsetRequest = new HashMap<>();
+        committed.values().forEach(offsets -> offsets.keySet()
+                .forEach(tp -> endOffsetRequest.put(tp, OffsetSpec.latest())));
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        if (!endOffsetRequest.isEmpty()) {
+            ListOffsetsResult endResult = admin.listOffsets(endOffsetRequest);
+            try {
+                kafka.adminClientManager().await(admin, endResult.all());
+            } catch (ExecutionException e) {
+                // Per-partition failures are collected below
+            }
+            for (TopicPartition tp : endOffsetRequest.keySet()) {
+                try {
+                    endOffsets.put(tp, endResult.partitionResult(tp).get().offset());
+                } catch (ExecutionException e) {
+                    errors.put(tp.toString(), e.getCause().getMessage());
+                }
+            }
+        }
+
+        List<ConsumerGroupLag> groups = committed.entrySet().stream()
+                .map(e -> toGroupLag(e.getKey(), e.getValue(), endOffsets))
+                .sorted(Comparator.comparingLong(ConsumerGroupLag::getTotalLag).reversed()
+                        .thenComparing(ConsumerGroupLag::getGroupId))
+                .toList();
+
+        return ConsumerGroupLagReport.builder()
+                .groupCount(groups.size())
+                .groupsReturned(Math.min(groups.size(), maxGroups))
+                .totalLag(groups.stream().mapToLong(ConsumerGroupLag::getTotalLag).sum())
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .groups(groups.stream().limit(maxGroups).toList())
+                .errors(errors)
+                .build();
     }
 
-    public ClusterInfo describeCluster() throws ExecutionException, InterruptedException {
-        try (AdminClient adminClient = getAdminClient()) {
-            DescribeClusterResult clusterResult = adminClient.describeCluster();
+    /**
+     * A partition whose end offset is missing from {@code endOffsets} is kept with an unknown ({@code null}) lag
+     * and left out of the totals; the reason is in the report's errors.
+     */
+    private ConsumerGroupLag toGroupLag(String groupId, Map<TopicPartition, OffsetAndMetadata> committed,
+                                        Map<TopicPartition, Long> endOffsets) {
+        Map<String, List<ConsumerGroupLag.PartitionLag>> partitionsByTopic = new HashMap<>();
+        committed.forEach((tp, offset) -> {
+            if (offset == null) {
+                return;
+            }
+            Long end = endOffsets.get(tp);
+            partitionsByTopic.computeIfAbsent(tp.topic(), k -> new ArrayList<>())
+                    .add(ConsumerGroupLag.PartitionLag.builder()
+                            .partition(tp.partition())
+                            .committedOffset(offset.offset())
+                            .logEndOffset(end)
+                            .lag(end != null ? Math.max(0, end - offset.offset()) : null)
+                            .build());
+        });
 
-            String clusterId = clusterResult.clusterId().get();
-            Node controller = clusterResult.controller().get();
-            Collection<Node> nodes = clusterResult.nodes().get();
+        Comparator<ConsumerGroupLag.PartitionLag> worstFirst = Comparator
+                .comparingLong((ConsumerGroupLag.PartitionLag p) -> p.getLag() != null ? p.getLag() : -1)
+                .reversed()
+                .thenComparingInt(ConsumerGroupLag.PartitionLag::getPartition);
+        List<ConsumerGroupLag.TopicLag> topics = partitionsByTopic.entrySet().stream()
+                .map(e -> ConsumerGroupLag.TopicLag.builder()
+                        .topic(e.getKey())
+                        .totalLag(e.getValue().stream()
+                                .map(ConsumerGroupLag.PartitionLag::getLag)
+                                .filter(Objects::nonNull)
+                                .mapToLong(Long::longValue)
+                                .sum())
+                        .partitions(e.getValue().stream().sorted(worstFirst).toList())
+                        .build())
+                .sorted(Comparator.comparingLong(ConsumerGroupLag.TopicLag::getTotalLag).reversed()
+                        .thenComparing(ConsumerGroupLag.TopicLag::getTopic))
+                .toList();
 
-            ClusterInfo.BrokerInfo controllerInfo = ClusterInfo.BrokerInfo.builder()
-                    .id(controller.id())
-                    .host(controller.host())
-                    .port(controller.port())
-                    .rack(controller.rack())
-                    .build();
+        return ConsumerGroupLag.builder()
+                .groupId(groupId)
+                .totalLag(topics.stream().mapToLong(ConsumerGroupLag.TopicLag::getTotalLag).sum())
+                .unknownLagPartitions((int) topics.stream()
+                        .flatMap(topic -> topic.getPartitions().stream())
+                        .filter(partition -> partition.getLag() == null)
+                        .count())
+                .topics(topics)
+                .build();
+    }
 
-            List<ClusterInfo.BrokerInfo> brokers = nodes.stream()
-                    .map(node -> ClusterInfo.BrokerInfo.builder()
-                            .id(node.id())
-                            .host(node.host())
-                            .port(node.port())
-                            .rack(node.rack())
-                            .build())
-                    .toList();
+    public ClusterInfo describeCluster(String cluster) throws ExecutionException, InterruptedException {
+        KafkaCluster kafka = clusters.get(cluster);
+        return coalescer.execute("describeCluster", () -> kafka.metadataCache().cluster(() -> fetchCluster(kafka)),
+                kafka.name());
+    }
 
-            return ClusterInfo.builder()
-                    .clusterId(clusterId)
-                    .controller(controllerInfo)
-                    .brokers(brokers)
-                    .build();
-        }
+    private ClusterInfo fetchCluster(KafkaCluster kafka) throws ExecutionException, InterruptedException {
+        DescribeClusterResult clusterResult = kafka.adminClientManager().call(admin -> {
+            DescribeClusterResult result = admin.describeCluster();
+            return KafkaFuture.allOf(result.clusterId(), result.controller(), result.nodes()).thenApply(v -> result);
+        });
+
+        String clusterId = clusterResult.clusterId().get();
+        Node controller = clusterResult.controller().get();
+        Collection<Node> nodes = clusterResult.nodes().get();
+
+        ClusterInfo.BrokerInfo controllerInfo = ClusterInfo.BrokerInfo.builder()
+                .id(controller.id())
+                .host(controller.host())
+                .port(controller.port())
+                .rack(controller.rack())
+                .build();
+
+        List<ClusterInfo.BrokerInfo> brokers = nodes.stream()
+                .map(node -> ClusterInfo.BrokerInfo.builder()
+                        .id(node.id())
+                        .host(node.host())
+                        .port(node.port())
+                        .rack(node.rack())
+                        .build())
+                .toList();
+
+        return ClusterInfo.builder()
+                .clusterId(clusterId)
+                .controller(controllerInfo)
+                .brokers(brokers)
+                .build();
     }
 }
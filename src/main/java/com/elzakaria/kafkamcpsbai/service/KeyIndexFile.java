@@ -0,0 +1,480 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * The files behind one topic's key index: an open-addressing hash table of {@code (key hash, entry position)}
+ * slots in a memory-mapped file, and an append-only log of entries (partition, offset, timestamp, key, value) the
+ * slots point into. Only the table is mapped; values stay on disk until a lookup reads its entry, so an index of
+ * tens of millions of keys costs page cache rather than heap.
+ * <p>
+ * One writer thread calls {@link #put}, {@link #advance} and {@link #checkpoint}; {@link #get} may run on any
+ * thread at the same time. A slot is published with release/acquire ordering only after its entry is in the log,
+ * so a lookup sees either the previous or the new entry of a key, never a partial one. When the table is
+ * {@value #MAX_LOAD} full, or the log holds more superseded entries than live ones, the writer copies the live
+ * entries into a new generation of both files and swaps it in. The checkpoint file names the current generation
+ * and the next offset of every partition, so a reopened index resumes reading where its last checkpoint was taken.
+ */
+final class KeyIndexFile implements AutoCloseable {
+
+    private static final int SLOT_BYTES = 16;
+    private static final int ENTRY_HEADER_BYTES = 28;
+    private static final int SPECULATIVE_READ = 512;
+    private static final double MAX_LOAD = 0.7;
+    private static final long MIN_GARBAGE_BYTES = 64L << 20;
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final String CHECKPOINT = "checkpoint";
+    private static final VarHandle LONG = ValueLayout.JAVA_LONG.varHandle();
+
+    /**
+     * The latest record of a key; {@code deleted} when it was a tombstone. {@code size} is the entry's size in the
+     * log, also when it was read without its value.
+     */
+    record Entry(int partition, long offset, long timestamp, byte[] key, byte[] value, boolean deleted, int size) {
+
+        Entry(int partition, long offset, long timestamp, byte[] key, byte[] value) {
+            this(partition, offset, timestamp, key, value, value == null,
+                    ENTRY_HEADER_BYTES + key.length + (value != null ? value.length : 0));
+        }
+    }
+
+    private final Path directory;
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Map<Integer, Long> nextOffsets = new HashMap<>();
+
+    private Generation current;
+    private volatile long count;
+    private long liveBytes;
+    private long garbageBytes;
+
+    /**
+     * Opens the index in {@code directory} at its last checkpoint, or starts an empty one with
+     * {@code initialCapacity} slots (rounded up to a power of two) if there is none.
+     */
+    KeyIndexFile(Path directory, int initialCapacity) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        Generation opened = null;
+        if (Files.exists(checkpoint)) {
+            opened = restore(checkpoint);
+        }
+        if (opened == null) {
+            deleteGenerationsExcept(-1);
+            Files.deleteIfExists(checkpoint);
+            nextOffsets.clear();
+            liveBytes = 0;
+            garbageBytes = 0;
+            opened = Generation.create(directory, 1, Math.max(2, Integer.highestOneBit(initialCapacity - 1) << 1));
+        }
+        this.current = opened;
+        this.count = countSlots(opened);
+    }
+
+    private Generation restore(Path checkpoint) throws IOException {
+        long generation;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+            if (in.readInt() != CHECKPOINT_VERSION) {
+                return null;
+            }
+            generation = in.readLong();
+            liveBytes = in.readLong();
+            garbageBytes = in.readLong();
+            int partitions = in.readInt();
+            for (int i = 0; i < partitions; i++) {
+                nextOffsets.put(in.readInt(), in.readLong());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        Generation opened = Generation.open(directory, generation);
+        if (opened != null) {
+            // Files of a rebuild that never got checkpointed
+            deleteGenerationsExcept(generation);
+        }
+        return opened;
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * The offset every partition has been read up to, as recorded by {@link #advance}.
+     */
+    Map<Integer, Long> nextOffsets() {
+        return Map.copyOf(nextOffsets);
+    }
+
+    /**
+     * Makes {@code key} point at this record, unless it already points at a later record of the same partition
+     * (records re-read after a restart). A {@code null} value records a deletion.
+     */
+    void put(int partition, long offset, long timestamp, byte[] key, byte[] value) throws IOException {
+        Generation g = current;
+        long hash = hash(key);
+        Entry entry = new Entry(partition, offset, timestamp, key, value);
+        for (long slot = hash & g.mask; ; slot = (slot + 1) & g.mask) {
+            long at = slot * SLOT_BYTES;
+            long slotHash = (long) LONG.get(g.slots, at);
+            if (slotHash == 0) {
+                LONG.set(g.slots, at + 8, g.append(entry));
+                LONG.setRelease(g.slots, at, hash);
+                count++;
+                liveBytes += entry.size();
+                break;
+            }
+            if (slotHash == hash) {
+                Entry existing = g.read((long) LONG.get(g.slots, at + 8), false);
+                if (Arrays.equals(existing.key(), key)) {
+                    if (existing.partition() == partition && existing.offset() >= offset) {
+                        advance(partition, offset + 1);
+                        return;
+                    }
+                    LONG.setRelease(g.slots, at + 8, g.append(entry));
+                    liveBytes += entry.size() - existing.size();
+                    garbageBytes += existing.size();
+                    break;
+                }
+            }
+        }
+        advance(partition, offset + 1);
+
+        if (count > g.capacity * MAX_LOAD) {
+            rebuild(g.capacity * 2);
+        } else if (garbageBytes > MIN_GARBAGE_BYTES && garbageBytes > liveBytes) {
+            rebuild(g.capacity);
+        }
+    }
+
+    /**
+     * Records that {@code partition} has been read up to {@code nextOffset}, e.g. past records without a key.
+     */
+    void advance(int partition, long nextOffset) {
+        nextOffsets.merge(partition, nextOffset, Math::max);
+    }
+
+    /**
+     * Returns the latest entry of {@code key}, or {@code null} if the key was never seen.
+     */
+    Entry get(byte[] key) throws IOException {
+        long hash = hash(key);
+        swapLock.readLock().lock();
+        try {
+            Generation g = current;
+            if (g == null) {
+                throw new IllegalStateException("Key index has been closed");
+            }
+            long slot = hash & g.mask;
+            for (long probes = 0; probes < g.capacity; probes++, slot = (slot + 1) & g.mask) {
+                long at = slot * SLOT_BYTES;
+                long slotHash = (long) LONG.getAcquire(g.slots, at);
+                if (slotHash == 0) {
+                    return null;
+                }
+                if (slotHash == hash) {
+                    Entry entry = g.read((long) LONG.getAcquire(g.slots, at + 8), true);
+                    if (Arrays.equals(entry.key(), key)) {
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces both files to disk and records the current generation and offsets, the point a reopened index
+     * resumes from.
+     */
+    void checkpoint() throws IOException {
+        current.force();
+        Path tmp = directory.resolve(CHECKPOINT + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(current.number);
+            out.writeLong(liveBytes);
+            out.writeLong(garbageBytes);
+            out.writeInt(nextOffsets.size());
+            for (Map.Entry<Integer, Long> partition : nextOffsets.entrySet()) {
+                out.writeInt(partition.getKey());
+                out.writeLong(partition.getValue());
+            }
+        }
+        Files.move(tmp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies every live entry into a new generation with {@code capacity} slots, swaps it in and drops the old one.
+     * Lookups keep using the old generation until the swap.
+     */
+    private void rebuild(long capacity) throws IOException {
+        Generation old = current;
+        Generation fresh = Generation.create(directory, old.number + 1, capacity);
+        long live = 0;
+        try {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(fresh.values), 1 << 20);
+            for (long slot = 0; slot < old.capacity; slot++) {
+                long hash = (long) LONG.get(old.slots, slot * SLOT_BYTES);
+                if (hash == 0) {
+                    continue;
+                }
+                Entry entry = old.read((long) LONG.get(old.slots, slot * SLOT_BYTES + 8), true);
+                long target = hash & fresh.mask;
+                while ((long) LONG.get(fresh.slots, target * SLOT_BYTES) != 0) {
+                    target = (target + 1) & fresh.mask;
+                }
+                LONG.set(fresh.slots, target * SLOT_BYTES, hash);
+                LONG.set(fresh.slots, target * SLOT_BYTES + 8, live);
+                out.write(encode(entry).array());
+                live += entry.size();
+            }
+            out.flush();
+            fresh.valuesEnd = live;
+        } catch (IOException | RuntimeException e) {
+            fresh.close();
+            fresh.delete();
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            current = fresh;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        liveBytes = live;
+        garbageBytes = 0;
+        checkpoint();
+        old.close();
+        old.delete();
+    }
+
+    private long countSlots(Generation g) {
+        long used = 0;
+        for (long slot = 0; slot < g.capacity; slot++) {
+            if ((long) LONG.get(g.slots, slot * SLOT_BYTES) != 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    private void deleteGenerationsExcept(long generation) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if ((name.startsWith("index-") || name.startsWith("values-"))
+                        && !name.equals(Generation.indexName(generation))
+                        && !name.equals(Generation.valuesName(generation))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        swapLock.writeLock().lock();
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.size());
+        buffer.putInt(entry.key().length)
+                .putInt(entry.value() != null ? entry.value().length : -1)
+                .putInt(entry.partition())
+                .putLong(entry.offset())
+                .putLong(entry.timestamp())
+                .put(entry.key());
+        if (entry.value() != null) {
+            buffer.put(entry.value());
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur3 finalizer; 0 marks an empty slot and is never returned.
+     */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * One generation of the slot table and entry log.
+     */
+    private static final class Generation {
+
+        private final long number;
+        private final Path indexFile;
+        private final Path valuesFile;
+        private final Arena arena;
+        private final MemorySegment slots;
+        private final long capacity;
+        private final long mask;
+        private final FileChannel values;
+        private long valuesEnd;
+
+        private Generation(long number, Path directory, long capacity, boolean create) throws IOException {
+            this.number = number;
+            this.indexFile = directory.resolve(indexName(number));
+            this.valuesFile = directory.resolve(valuesName(number));
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.arena = Arena.ofShared();
+            try (FileChannel index = create
+                    ? FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Mapping past the end of a new file extends it with zeros, i.e. empty slots
+                this.slots = index.map(FileChannel.MapMode.READ_WRITE, 0, capacity * SLOT_BYTES, arena);
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+            this.values = create
+                    ? FileChannel.open(valuesFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(valuesFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Entries appended after the last checkpoint are kept; slots may already point at them
+            this.valuesEnd = values.size();
+        }
+
+        static Generation create(Path directory, long number, long capacity) throws IOException {
+            return new Generation(number, directory, capacity, true);
+        }
+
+        /**
+         * Opens an existing generation, or returns {@code null} if its files are missing or malformed.
+         */
+        static Generation open(Path directory, long number) throws IOException {
+            Path index = directory.resolve(indexName(number));
+            if (!Files.exists(index) || !Files.exists(directory.resolve(valuesName(number)))) {
+                return null;
+            }
+            long capacity = Files.size(index) / SLOT_BYTES;
+            if (capacity < 2 || Long.bitCount(capacity) != 1 || Files.size(index) % SLOT_BYTES != 0) {
+                return null;
+            }
+            return new Generation(number, directory, capacity, false);
+        }
+
+        static String indexName(long number) {
+            return "index-" + number + ".bin";
+        }
+
+        static String valuesName(long number) {
+            return "values-" + number + ".bin";
+        }
+
+        long append(Entry entry) throws IOException {
+            ByteBuffer buffer = encode(entry);
+            long position = valuesEnd;
+            while (buffer.hasRemaining()) {
+                valuesEnd += values.write(buffer, valuesEnd);
+            }
+            return position;
+        }
+
+        Entry read(long position, boolean withValue) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SPECULATIVE_READ);
+            readFully(buffer, position, ENTRY_HEADER_BYTES);
+            int keyLength = buffer.getInt(0);
+            int valueLength = buffer.getInt(4);
+            int needed = ENTRY_HEADER_BYTES + keyLength + (withValue ? Math.max(0, valueLength) : 0);
+            if (needed > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(buffer.flip());
+                buffer = larger;
+            }
+            readFully(buffer, position, needed);
+            buffer.flip();
+
+            buffer.position(8);
+            int partition = buffer.getInt();
+            long offset = buffer.getLong();
+            long timestamp = buffer.getLong();
+            byte[] key = new byte[keyLength];
+            buffer.get(key);
+            byte[] value = null;
+            if (withValue && valueLength >= 0) {
+                value = new byte[valueLength];
+                buffer.get(value);
+            }
+            return new Entry(partition, offset, timestamp, key, value, valueLength < 0,
+                    ENTRY_HEADER_BYTES + keyLength + Math.max(0, valueLength));
+        }
+
+        /**
+         * Reads from {@code position} until the buffer holds at least {@code minimum} bytes.
+         */
+        private void readFully(ByteBuffer buffer, long position, int minimum) throws IOException {
+            while (buffer.position() < minimum) {
+                int read = values.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Key index entry at " + position + " is truncated");
+                }
+            }
+        }
+
+        void force() throws IOException {
+            slots.force();
+            values.force(false);
+        }
+
+        void close() {
+            arena.close();
+            try {
+                values.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(indexFile);
+            Files.deleteIfExists(valuesFile);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest-value-per-key indexes of opted-in topics ({@code kafka.mcp.key-index.topics}, or
+ * {@code key-index-topics} of a named cluster), meant for compacted topics holding the current state of entities.
+ * <p>
+ * Each index is a {@link KeyIndexFile} under {@code kafka.mcp.key-index.directory}, kept current by its own
+ * group-less consumer on a virtual thread that reads every partition from the index's last checkpoint and applies
+ * each record as it arrives: a key points at its latest record, a tombstone marks it deleted. Indexes survive
+ * restarts and serve lookups straight from disk while their reader catches up; a lookup reports how far behind
+ * the index is. A reader that fails (topic missing, broker unreachable) retries until the indexes are closed.
+ * <p>
+ * Indexed keys and consumer lag are published as {@code kafka.mcp.key.index.keys} and
+ * {@code kafka.mcp.key.index.lag}, lookups are timed as {@code kafka.mcp.key.index.lookup}.
+ */
+@Slf4j
+public class KeyIndexes implements AutoCloseable {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration METADATA_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+    private static final long PARTITION_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Map<String, Object> config;
+    private final KafkaMcpProperties.KeyIndex properties;
+    private final MicrometerConsumerListener<byte[], byte[]> metricsListener;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+
+    /**
+     * Opens the index of every topic and starts its reader.
+     *
+     * @param cluster name of the cluster, which keeps its indexes in a directory of that name
+     */
+    public KeyIndexes(String cluster, List<String> topics, Map<String, Object> config,
+                      KafkaMcpProperties.KeyIndex properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.config = ConsumerPool.readerConfig(config);
+        this.config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        this.metricsListener = new MicrometerConsumerListener<>(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        Path directory = properties.getDirectory().resolve(cluster);
+        try {
+            for (String topic : topics) {
+                indexes.put(topic, new Index(topic, directory.resolve(topic)));
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Could not open key index in " + directory, e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        indexes.values().forEach(Index::start);
+    }
+
+    /**
+     * Looks up the latest entry of every key, in order; an element is {@code null} if its key was never seen.
+     */
+    public List<KeyIndexFile.Entry> lookup(String topic, List<byte[]> keys) throws IOException {
+        Index index = index(topic);
+        List<KeyIndexFile.Entry> entries = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            long start = System.nanoTime();
+            entries.add(index.file.get(key));
+            index.lookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return entries;
+    }
+
+    /**
+     * How many keys the topic's index holds.
+     */
+    public long keyCount(String topic) {
+        return index(topic).file.count();
+    }
+
+    /**
+     * Records the topic's reader has yet to apply, or {@code null} while that is unknown (the reader has not
+     * caught up with every partition's end once, or is failing).
+     */
+    public Long lag(String topic) {
+        long lag = index(topic).lag;
+        return lag >= 0 ? lag : null;
+    }
+
+    public int indexCount() {
+        return indexes.size();
+    }
+
+    private Index index(String topic) {
+        Index index = indexes.get(topic);
+        if (index == null) {
+            throw new IllegalArgumentException("Topic '" + topic + "' has no key index; indexed topics: "
+                    + indexes.keySet());
+        }
+        return index;
+    }
+
+    @Override
+    public void close() {
+        indexes.values().forEach(Index::stop);
+        for (Index index : indexes.values()) {
+            try {
+                index.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * One topic's index file and the consumer that keeps it current. Only the reader thread writes to the file.
+     */
+    private final class Index {
+
+        private final String topic;
+        private final String clientId;
+        private final KeyIndexFile file;
+        private final Timer lookups;
+        private volatile boolean running = true;
+        private volatile long lag = -1;
+        private volatile KafkaConsumer<byte[], byte[]> consumer;
+        private Thread thread;
+
+        Index(String topic, Path directory) throws IOException {
+            this.topic = topic;
+            this.clientId = "kafka-mcp-key-index-" + topic;
+            this.file = new KeyIndexFile(directory, properties.getInitialCapacity());
+            this.lookups = Timer.builder("kafka.mcp.key.index.lookup")
+                    .description("Time to look up one key in a key index")
+                    .tag("topic", topic)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("kafka.mcp.key.index.keys", file, KeyIndexFile::count)
+                    .description("Keys held by a key index, including deleted ones")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            Gauge.builder("kafka.mcp.key.index.lag", this, index -> index.lag)
+                    .description("Records a key index has yet to apply; -1 while unknown")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+
+        void start() {
+            thread = Thread.ofVirtual().name(clientId).start(this::run);
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    try {
+                        follow();
+                    } catch (WakeupException e) {
+                        // stop() woke the consumer up
+                    } catch (IOException | RuntimeException e) {
+                        lag = -1;
+                        if (running) {
+                            log.warn("Key index of topic {} stopped reading, retrying in {}: {}", topic, RETRY_DELAY,
+                                    e.getMessage());
+                            pause();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    file.checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not checkpoint key index of topic {}", topic, e);
+                }
+                file.close();
+            }
+        }
+
+        /**
+         * Waits out the retry delay, or less if the index is stopped meanwhile. Not interruptible on purpose: an
+         * interrupt would close the file channels under the writer.
+         */
+        private void pause() throws InterruptedException {
+            long until = System.nanoTime() + RETRY_DELAY.toNanos();
+            while (running && System.nanoTime() - until < 0) {
+                Thread.sleep(POLL_TIMEOUT);
+            }
+        }
+
+        private void follow() throws IOException {
+            Map<String, Object> props = new HashMap<>(config);
+            props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+            try (KafkaConsumer<byte[], byte[]> kafkaConsumer = new KafkaConsumer<>(props)) {
+                consumer = kafkaConsumer;
+                if (!running) {
+                    return;
+                }
+                metricsListener.consumerAdded(clientId, kafkaConsumer);
+                try {
+                    List<TopicPartition> partitions = partitionsOf(kafkaConsumer);
+                    if (partitions.isEmpty()) {
+                        throw new IllegalStateException("Topic '" + topic + "' does not exist");
+                    }
+                    assign(kafkaConsumer, partitions, Set.of());
+                    long partitionsCheckedAt = System.nanoTime();
+                    long checkpointedAt = System.nanoTime();
+                    while (running) {
+                        if (System.nanoTime() - partitionsCheckedAt > PARTITION_REFRESH_NANOS) {
+                            partitionsCheckedAt = System.nanoTime();
+                            assign(kafkaConsumer, partitionsOf(kafkaConsumer), kafkaConsumer.assignment());
+                        }
+                        for (ConsumerRecord<byte[], byte[]> record : kafkaConsumer.poll(POLL_TIMEOUT)) {
+                            if (record.key() != null) {
+                                file.put(record.partition(), record.offset(), record.timestamp(), record.key(),
+                                        record.value());
+                            }
+                        }
+                        long behind = 0;
+                        for (TopicPartition tp : kafkaConsumer.assignment()) {
+                            // Records without a key and transaction markers move the position too
+                            file.advance(tp.partition(), kafkaConsumer.position(tp));
+                            OptionalLong partitionLag = kafkaConsumer.currentLag(tp);
+                            behind = behind >= 0 && partitionLag.isPresent() ? behind + partitionLag.getAsLong() : -1;
+                        }
+                        lag = behind;
+                        if (System.nanoTime() - checkpointedAt > properties.getCheckpointInterval().toNanos()) {
+                            checkpointedAt = System.nanoTime();
+                            file.checkpoint();
+                        }
+                    }
+                } finally {
+                    metricsListener.consumerRemoved(clientId, kafkaConsumer);
+                }
+            } finally {
+                consumer = null;
+            }
+        }
+
+        private List<TopicPartition> partitionsOf(KafkaConsumer<byte[], byte[]> kafkaConsumer) {
+            return kafkaConsumer.partitionsFor(topic, METADATA_TIMEOUT).stream()
+                    .map(p -> new TopicPartition(topic, p.partition()))
+                    .toList();
+        }
+
+        /**
+         * Assigns the partitions not yet in {@code assigned}, each positioned at its checkpointed offset or at its
+         * beginning when the index has not read it before.
+         */
+        private void assign(KafkaConsumer<byte[], byte[]> kafkaConsumer, List<TopicPartition> partitions,
+                            Set<TopicPartition> assigned) {
+            List<TopicPartition> added = partitions.stream().filter(tp -> !assigned.contains(tp)).toList();
+            if (added.isEmpty()) {
+                return;
+            }
+            Set<TopicPartition> all = new HashSet<>(assigned);
+            all.addAll(added);
+            kafkaConsumer.assign(all);
+            Map<Integer, Long> nextOffsets = file.nextOffsets();
+            for (TopicPartition tp : added) {
+                Long next = nextOffsets.get(tp.partition());
+                if (next != null) {
+                    kafkaConsumer.seek(tp, next);
+                } else {
+                    kafkaConsumer.seekToBeginning(List.of(tp));
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+            KafkaConsumer<byte[], byte[]> current = consumer;
+            if (current != null) {
+                current.wakeup();
+            }
+        }
+
+        void join() throws InterruptedException {
+            if (thread != null) {
+                thread.join(Duration.ofSeconds(5));
+            } else {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import lombok.Builder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Server-side record predicate for message search. Every criterion that is set must match;
+ * a filter with no criteria matches every record.
+ * <p>
+ * Key and value criteria compare the text {@link PayloadDecoder} turns the bytes into, so schema registry payloads
+ * match on their decoded JSON; header values are compared as UTF-8 bytes.
+ */
+public class MessageFilter implements Predicate<ConsumerRecord<byte[], byte[]>> {
+
+    private static final Configuration JSON_PATH_CONFIG = Configuration.defaultConfiguration()
+            .addOptions(Option.SUPPRESS_EXCEPTIONS);
+
+    private final List<Predicate<Candidate>> criteria = new ArrayList<>();
+    private final PayloadDecoder textDecoder;
+
+    /**
+     * @param keyEquals     exact text the decoded key must have
+     * @param headerName    header that must be present
+     * @param headerValue   exact value the header must have; only checked when headerName is set
+     * @param valueContains text the decoded value must contain
+     * @param jsonPath      JSON path evaluated against the value, e.g. {@code $.order.id}
+     * @param jsonValue     expected result of the JSON path; when absent the path only has to exist
+     * @param decoder       decodes keys and values for every key and value criterion; plain UTF-8 when absent
+     */
+    @Builder
+    public MessageFilter(String keyEquals, String keyRegex, String headerName, String headerValue,
+                         String valueContains, String valueRegex, String jsonPath, String jsonValue,
+                         PayloadDecoder decoder) {
+        this.textDecoder = decoder != null ? decoder : PayloadDecoder.PLAIN;
+        if (hasText(keyEquals)) {
+            criteria.add(candidate -> keyEquals.equals(candidate.key()));
+        }
+        if (hasText(keyRegex)) {
+            Pattern pattern = Pattern.compile(keyRegex);
+            criteria.add(candidate -> candidate.key() != null && pattern.matcher(candidate.key()).find());
+        }
+        if (hasText(headerName)) {
+            byte[] expected = hasText(headerValue) ? headerValue.getBytes(StandardCharsets.UTF_8) : null;
+            criteria.add(candidate -> {
+                for (Header header : candidate.record.headers().headers(headerName)) {
+                    if (expected == null || Arrays.equals(expected, header.value())) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+        if (hasText(valueContains)) {
+            criteria.add(candidate -> candidate.value() != null && candidate.value().contains(valueContains));
+        }
+        if (hasText(valueRegex)) {
+            Pattern pattern = Pattern.compile(valueRegex);
+            criteria.add(candidate -> candidate.value() != null && pattern.matcher(candidate.value()).find());
+        }
+        if (hasText(jsonPath)) {
+            JsonPath path = JsonPath.compile(jsonPath);
+            criteria.add(candidate -> {
+                if (candidate.value() == null) {
+                    return false;
+                }
+                Object result;
+                try {
+                    result = JsonPath.using(JSON_PATH_CONFIG).parse(candidate.value()).read(path);
+                } catch (InvalidJsonException e) {
+                    // SUPPRESS_EXCEPTIONS only covers read(); a value that is not JSON does not match
+                    return false;
+                }
+                if (!hasText(jsonValue)) {
+                    return result != null;
+                }
+                return result != null && Objects.equals(jsonValue, String.valueOf(result));
+            });
+        }
+    }
+
+    @Override
+    public boolean test(ConsumerRecord<byte[], byte[]> record) {
+        Candidate candidate = new Candidate(record);
+        for (Predicate<Candidate> criterion : criteria) {
+            if (!criterion.test(candidate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A record being tested; its key and value are decoded on first use and at most once.
+     */
+    private final class Candidate {
+
+        private final ConsumerRecord<byte[], byte[]> record;
+        private String key;
+        private String value;
+
+        Candidate(ConsumerRecord<byte[], byte[]> record) {
+            this.record = record;
+        }
+
+        String key() {
+            if (key == null && record.key() != null) {
+                key = textDecoder.decodeText(record.key());
+            }
+            return key;
+        }
+
+        String value() {
+            if (value == null && record.value() != null) {
+                value = textDecoder.decodeText(record.value());
+            }
+            return value;
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
@@ -0,0 +1,221 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ClusterInfo;
+import com.elzakaria.kafkamcpsbai.dto.TopicInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * TTL cache in front of the broker metadata reads that agents repeat within a conversation:
+ * topic listing, topic descriptions and the cluster description.
+ * <p>
+ * Each kind has its own TTL and size bound ({@code kafka.mcp.cache.*}). Entries remember how they are reloaded,
+ * so an entry of a kind configured with {@code refresh-after} that is read after it went stale is reloaded in the
+ * background while the stale value keeps being served. Hit/miss/eviction counts are published as {@code cache.*}
+ * meters tagged with the cache name.
+ */
+@Slf4j
+@Component
+public class MetadataCache {
+
+    private static final String ALL = "*";
+
+    private final boolean enabled;
+    private final Kind<List<String>> topicNames;
+    private final Kind<TopicInfo> topics;
+    private final Kind<ClusterInfo> cluster;
+
+    public MetadataCache(KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        KafkaMcpProperties.Cache cache = properties.getCache();
+        this.enabled = cache.isEnabled();
+        this.topicNames = new Kind<>("kafka-mcp-topic-names", cache.getTopicNames(), meterRegistry);
+        this.topics = new Kind<>("kafka-mcp-topics", cache.getTopics(), meterRegistry);
+        this.cluster = new Kind<>("kafka-mcp-cluster", cache.getCluster(), meterRegistry);
+    }
+
+    public List<String> topicNames(Loader<List<String>> loader) throws ExecutionException, InterruptedException {
+        return get(topicNames, ALL, loader);
+    }
+
+    /**
+     * Returns the description of a topic, or {@code null} when {@code loader} finds no such topic; that result is
+     * not cached.
+     */
+    public TopicInfo topic(String topicName, Loader<TopicInfo> loader) throws ExecutionException, InterruptedException {
+        return get(topics, topicName, loader);
+    }
+
+    /**
+     * Returns the descriptions of several topics, fetching all misses with a single call to {@code loader}.
+     * Topics the loader leaves out of its result are neither cached nor returned. Cached entries are refreshed one
+     * by one through {@code refresher}, which returns {@code null} once the topic no longer exists.
+     */
+    public Map<String, TopicInfo> topics(Collection<String> topicNames, BulkLoader<TopicInfo> loader,
+                                         Function<String, Loader<TopicInfo>> refresher)
+            throws ExecutionException, InterruptedException {
+        if (!enabled) {
+            return loader.load(Set.copyOf(topicNames));
+        }
+        Map<String, Entry<TopicInfo>> entries;
+        try {
+            entries = topics.cache.getAll(topicNames, missing -> {
+                Map<String, TopicInfo> loaded;
+                try {
+                    loaded = loader.load(Set.copyOf(missing));
+                } catch (ExecutionException | InterruptedException e) {
+                    throw new LoadFailure(e);
+                }
+                Map<String, Entry<TopicInfo>> result = new HashMap<>();
+                loaded.forEach((name, value) -> result.put(name, new Entry<>(value, refresher.apply(name))));
+                return result;
+            });
+        } catch (LoadFailure failure) {
+            throw unwrap(failure);
+        }
+        Map<String, TopicInfo> result = new HashMap<>();
+        entries.forEach((name, entry) -> {
+            topics.refreshIfStale(name, entry);
+            result.put(name, entry.value());
+        });
+        return result;
+    }
+
+    public ClusterInfo cluster(Loader<ClusterInfo> loader) throws ExecutionException, InterruptedException {
+        return get(cluster, ALL, loader);
+    }
+
+    /**
+     * Drops everything cached about a topic that was just created or deleted, including the topic listing.
+     */
+    public void invalidateTopic(String topicName) {
+        topics.cache.invalidate(topicName);
+        topicNames.cache.invalidateAll();
+    }
+
+    private <V> V get(Kind<V> kind, String key, Loader<V> loader) throws ExecutionException, InterruptedException {
+        if (!enabled) {
+            return loader.load();
+        }
+        Entry<V> entry;
+        try {
+            entry = kind.cache.get(key, k -> {
+                try {
+                    V value = loader.load();
+                    // Returning null leaves the key uncached
+                    return value != null ? new Entry<>(value, loader) : null;
+                } catch (ExecutionException | InterruptedException e) {
+                    throw new LoadFailure(e);
+                }
+            });
+        } catch (LoadFailure failure) {
+            throw unwrap(failure);
+        }
+        if (entry == null) {
+            return null;
+        }
+        kind.refreshIfStale(key, entry);
+        return entry.value();
+    }
+
+    private static RuntimeException unwrap(LoadFailure failure) throws ExecutionException, InterruptedException {
+        if (failure.getCause() instanceof InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        throw (ExecutionException) failure.getCause();
+    }
+
+    /**
+     * Fetches a value from the brokers on a cache miss or background refresh; {@code null} when it no longer exists.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws ExecutionException, InterruptedException;
+    }
+
+    /**
+     * Fetches the values for a set of keys in one go; keys that do not exist are left out of the result.
+     */
+    @FunctionalInterface
+    public interface BulkLoader<V> {
+        Map<String, V> load(Set<String> keys) throws ExecutionException, InterruptedException;
+    }
+
+    /**
+     * One kind of metadata: its cache and, with {@code refresh-after}, the background reload of entries read after
+     * they went stale. A reload replaces the entry, drops it when the loader returns {@code null} (e.g. a topic that
+     * was deleted since it was cached) and leaves the stale value in place when it fails.
+     */
+    private static final class Kind<V> {
+
+        private final String name;
+        private final Cache<String, Entry<V>> cache;
+        private final long refreshAfterNanos;
+
+        Kind(String name, KafkaMcpProperties.CacheSpec spec, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.cache = Caffeine.newBuilder()
+                    .expireAfterWrite(spec.getTtl())
+                    .maximumSize(spec.getMaxSize())
+                    .recordStats()
+                    .build();
+            this.refreshAfterNanos = spec.getRefreshAfter() != null ? spec.getRefreshAfter().toNanos() : Long.MAX_VALUE;
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        }
+
+        void refreshIfStale(String key, Entry<V> entry) {
+            if (System.nanoTime() - entry.loadedAt() < refreshAfterNanos
+                    || !entry.refreshing().compareAndSet(false, true)) {
+                return;
+            }
+            CompletableFuture.runAsync(() -> refresh(key, entry));
+        }
+
+        private void refresh(String key, Entry<V> entry) {
+            log.debug("Refreshing cached metadata {} [{}]", name, key);
+            try {
+                V value = entry.loader().load();
+                if (value != null) {
+                    cache.asMap().replace(key, entry, new Entry<>(value, entry.loader()));
+                } else {
+                    cache.asMap().remove(key, entry);
+                }
+            } catch (ExecutionException | RuntimeException e) {
+                // Served stale until the next read retries the refresh or the TTL expires
+                log.debug("Refreshing cached metadata {} [{}] failed: {}", name, key, e.getMessage());
+                entry.refreshing().set(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.refreshing().set(false);
+            }
+        }
+    }
+
+    private record Entry<V>(V value, Loader<V> loader, long loadedAt, AtomicBoolean refreshing) {
+
+        Entry(V value, Loader<V> loader) {
+            this(value, loader, System.nanoTime(), new AtomicBoolean());
+        }
+    }
+
+    private static final class LoadFailure extends RuntimeException {
+        LoadFailure(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ScanStats;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Reads bounded offset ranges of a topic's partitions concurrently.
+ * <p>
+ * Ranges are resolved with batched admin {@code listOffsets} calls. Readers run on virtual threads, each holding
+ * one pooled consumer and working through partitions from a shared queue, so a scan never uses more consumers
+ * than {@code kafka.mcp.scan.parallelism} (capped by the pool size). All readers share one {@link ScanBudget}.
+ */
+@Component
+@RequiredArgsConstructor
+public class PartitionScanner {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+
+    private final AdminClientManager adminClientManager;
+    private final ConsumerPool consumerPool;
+    private final KafkaMcpProperties properties;
+
+    /**
+     * Receives every record inside the scanned ranges. Called concurrently from several readers.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * @return {@code true} if the record matched and should count towards the partition's matches
+         */
+        boolean onRecord(ConsumerRecord<byte[], byte[]> record);
+    }
+
+    /**
+     * Offsets {@code [startOffset, endOffset)} of one partition to read, or the {@code error} that kept them from
+     * being resolved; such a partition is reported by {@link #scan} but not read.
+     */
+    public record PartitionRange(TopicPartition topicPartition, long startOffset, long endOffset, String error) {
+
+        public PartitionRange(TopicPartition topicPartition, long startOffset, long endOffset) {
+            this(topicPartition, startOffset, endOffset, null);
+        }
+
+        static PartitionRange failed(TopicPartition topicPartition, String error) {
+            return new PartitionRange(topicPartition, -1, -1, error);
+        }
+    }
+
+    /**
+     * Optional limits of a scan; any of them may be {@code null}. Offset bounds apply to every selected partition.
+     *
+     * @param partition   only this partition, or all partitions when {@code null}
+     * @param endOffset   exclusive upper offset bound
+     * @param startTime   inclusive lower timestamp bound (epoch millis)
+     * @param endTime     exclusive upper timestamp bound (epoch millis)
+     */
+    public record Bounds(Integer partition, Long startOffset, Long endOffset, Long startTime, Long endTime) {
+
+        public static Bounds none() {
+            return new Bounds(null, null, null, null, null);
+        }
+    }
+
+    /**
+     * Resolves the ranges to read for a topic. Time bounds are translated with {@code listOffsets(forTimestamp)};
+     * all lookups are issued together. A partition whose offsets could not be listed gets a failed range, and the
+     * call only fails when that happened to every partition.
+     */
+    public List<PartitionRange> resolveRanges(String topic, Bounds bounds) throws ExecutionException, InterruptedException {
+        Integer partition = bounds.partition();
+        Long startOffset = bounds.startOffset();
+        Long endOffset = bounds.endOffset();
+        Long startTime = bounds.startTime();
+        Long endTime = bounds.endTime();
+
+        TopicDescription description = adminClientManager.call(admin -> admin.describeTopics(List.of(topic))
+                .topicNameValues()
+                .get(topic));
+        List<TopicPartition> partitions = description.partitions().stream()
+                .filter(p -> partition == null || p.partition() == partition)
+                .map(p -> new TopicPartition(topic, p.partition()))
+                .toList();
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("Topic '" + topic + "' has no partition " + partition);
+        }
+
+        Admin admin = adminClientManager.get();
+        ListOffsetsResult earliest = admin.listOffsets(request(partitions, OffsetSpec.earliest()));
+        ListOffsetsResult latest = admin.listOffsets(request(partitions, OffsetSpec.latest()));
+        ListOffsetsResult fromTime = startTime != null
+                ? admin.listOffsets(request(partitions, OffsetSpec.forTimestamp(startTime))) : null;
+        ListOffsetsResult untilTime = endTime != null
+                ? admin.listOffsets(request(partitions, OffsetSpec.forTimestamp(endTime))) : null;
+        List<KafkaFuture<?>> pending = new ArrayList<>(List.of(earliest.all(), latest.all()));
+        if (fromTime != null) {
+            pending.add(fromTime.all());
+        }
+        if (untilTime != null) {
+            pending.add(untilTime.all());
+        }
+        try {
+            adminClientManager.await(admin, KafkaFuture.allOf(pending.toArray(KafkaFuture[]::new)));
+        } catch (ExecutionException e) {
+            // Per-partition failures are collected below
+        }
+
+        List<PartitionRange> ranges = new ArrayList<>(partitions.size());
+        ExecutionException firstFailure = null;
+        for (TopicPartition tp : partitions) {
+            try {
+                long logStart = offset(earliest, tp);
+                long logEnd = offset(latest, tp);
+                long start = Math.max(logStart, startOffset != null ? startOffset : logStart);
+                long end = Math.min(logEnd, endOffset != null ? endOffset : logEnd);
+                if (fromTime != null) {
+                    // -1: no record at or after startTime
+                    long offset = offset(fromTime, tp);
+                    start = Math.max(start, offset >= 0 ? offset : logEnd);
+                }
+                if (untilTime != null) {
+                    long offset = offset(untilTime, tp);
+                    end = Math.min(end, offset >= 0 ? offset : logEnd);
+                }
+                ranges.add(new PartitionRange(tp, start, Math.max(start, end)));
+            } catch (ExecutionException e) {
+                firstFailure = firstFailure != null ? firstFailure : e;
+                ranges.add(PartitionRange.failed(tp, e.getCause().getMessage()));
+            }
+        }
+        if (firstFailure != null && ranges.stream().allMatch(range -> range.error() != null)) {
+            throw firstFailure;
+        }
+        return ranges;
+    }
+
+    private static Map<TopicPartition, OffsetSpec> request(List<TopicPartition> partitions, OffsetSpec spec) {
+        return partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> spec));
+    }
+
+    /**
+     * The partition's offset from an awaited {@code listOffsets}; fails only for that partition.
+     */
+    private static long offset(ListOffsetsResult result, TopicPartition tp)
+            throws ExecutionException, InterruptedException {
+        return result.partitionResult(tp).get().offset();
+    }
+
+    /**
+     * Reads every range until it is exhausted or the budget runs out, handing each record to the handler.
+     *
+     * @param maxMatchesPerPartition a partition stops being read once this many of its records matched
+     */
+    public List<ScanStats.PartitionProgress> scan(List<PartitionRange> ranges, ScanBudget budget,
+                                                  long maxMatchesPerPartition, RecordHandler handler)
+            throws InterruptedException {
+        Queue<PartitionRange> pending = new ConcurrentLinkedQueue<>();
+        Queue<ScanStats.PartitionProgress> progress = new ConcurrentLinkedQueue<>();
+        for (PartitionRange range : ranges) {
+            if (range.error() != null) {
+                progress.add(progressOf(range, range.startOffset(), 0, 0, false));
+            } else if (range.startOffset() >= range.endOffset()) {
+                // Nothing to read, so no reader has to borrow a consumer for it
+                progress.add(progressOf(range, range.startOffset(), 0, 0, true));
+            } else {
+                pending.add(range);
+            }
+        }
+        if (pending.isEmpty()) {
+            return sorted(progress);
+        }
+        int readers = Math.max(1, Math.min(pending.size(),
+                Math.min(properties.getScan().getParallelism(), properties.getConsumer().getPoolSize())));
+
+        // Reader threads do not inherit the caller's Deadline; each re-enters it with the time left
+        long remaining = Deadline.remainingNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(readers);
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    if (remaining == Long.MAX_VALUE) {
+                        read(pending, progress, budget, maxMatchesPerPartition, handler);
+                        return null;
+                    }
+                    return Deadline.within(Duration.ofNanos(remaining), () -> {
+                        read(pending, progress, budget, maxMatchesPerPartition, handler);
+                        return null;
+                    });
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    budget.stop(ScanBudget.FAILED);
+                    throw new IllegalStateException("Partition reader failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+
+        for (PartitionRange range : pending) {
+            progress.add(progressOf(range, range.startOffset(), 0, 0, false));
+        }
+        return sorted(progress);
+    }
+
+    private static List<ScanStats.PartitionProgress> sorted(Collection<ScanStats.PartitionProgress> progress) {
+        List<ScanStats.PartitionProgress> result = new ArrayList<>(progress);
+        result.sort((a, b) -> Integer.compare(a.getPartition(), b.getPartition()));
+        return result;
+    }
+
+    private void read(Queue<PartitionRange> pending, Queue<ScanStats.PartitionProgress> progress,
+                      ScanBudget budget, long maxMatchesPerPartition, RecordHandler handler)
+            throws InterruptedException {
+        try (ConsumerPool.Lease lease = consumerPool.borrow()) {
+            Consumer<byte[], byte[]> consumer = lease.consumer();
+            PartitionRange range;
+            while (!exhausted(budget) && (range = pending.poll()) != null) {
+                progress.add(readPartition(consumer, range, budget, maxMatchesPerPartition, handler));
+            }
+        }
+    }
+
+    private ScanStats.PartitionProgress readPartition(Consumer<byte[], byte[]> consumer, PartitionRange range,
+                                                      ScanBudget budget, long maxMatchesPerPartition,
+                                                      RecordHandler handler) {
+        TopicPartition tp = range.topicPartition();
+        long next = range.startOffset();
+        long scanned = 0;
+        long matches = 0;
+
+        if (next < range.endOffset()) {
+            consumer.assign(List.of(tp));
+            consumer.seek(tp, next);
+            reading:
+            while (next < range.endOffset() && !exhausted(budget)) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Deadline.cap(POLL_TIMEOUT))) {
+                    if (record.offset() >= range.endOffset()) {
+                        next = range.endOffset();
+                        break reading;
+                    }
+                    long size = Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+                    if (!budget.tryAccount(size)) {
+                        break reading;
+                    }
+                    scanned++;
+                    next = record.offset() + 1;
+                    if (handler.onRecord(record) && ++matches >= maxMatchesPerPartition) {
+                        break reading;
+                    }
+                }
+                next = Math.max(next, consumer.position(tp));
+            }
+        }
+        return progressOf(range, next, scanned, matches, next >= range.endOffset());
+    }
+
+    /**
+     * Whether the budget ran out, stopping it with {@link ScanBudget#TIME_LIMIT} once the tool call's deadline passed.
+     */
+    private static boolean exhausted(ScanBudget budget) {
+        if (Deadline.expired()) {
+            budget.stop(ScanBudget.TIME_LIMIT);
+        }
+        return budget.isExhausted();
+    }
+
+    private static ScanStats.PartitionProgress progressOf(PartitionRange range, long next, long scanned,
+                                                          long matches, boolean completed) {
+        return ScanStats.PartitionProgress.builder()
+                .partition(range.topicPartition().partition())
+                .startOffset(range.startOffset())
+                .endOffset(range.endOffset())
+                .nextOffset(next)
+                .recordsScanned(scanned)
+                .matches(matches)
+                .completed(completed)
+                .error(range.error())
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Turns raw record keys and values into text.
+ * <p>
+ * With {@code kafka.mcp.schema-registry.url} set, payloads in the schema registry wire format (magic byte
+ * {@code 0}, 4-byte schema id, encoded data) are decoded to JSON: Avro through the registered schema, JSON Schema
+ * payloads as-is. Protobuf payloads are not decoded; like any other bytes that are not UTF-8 text they are
+ * returned base64 or hex encoded ({@code kafka.mcp.response.binary-encoding}).
+ */
+@Slf4j
+@Component
+public class PayloadDecoder {
+
+    /**
+     * Decoder without a schema registry: UTF-8 text, otherwise base64.
+     */
+    public static final PayloadDecoder PLAIN = new PayloadDecoder(null, "base64");
+
+    public static final String AVRO = "avro";
+    public static final String JSON = "json";
+    public static final String BASE64 = "base64";
+    public static final String HEX = "hex";
+
+    private static final byte MAGIC_BYTE = 0;
+    private static final int HEADER_LENGTH = 5;
+
+    private final SchemaRegistryClient registry;
+    private final boolean hex;
+
+    @Autowired
+    public PayloadDecoder(KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        this(properties.getSchemaRegistry().getUrl() != null && !properties.getSchemaRegistry().getUrl().isBlank()
+                        ? new SchemaRegistryClient(properties.getSchemaRegistry(), meterRegistry)
+                        : null,
+                properties.getResponse().getBinaryEncoding());
+    }
+
+    PayloadDecoder(SchemaRegistryClient registry, String binaryEncoding) {
+        if (!BASE64.equalsIgnoreCase(binaryEncoding) && !HEX.equalsIgnoreCase(binaryEncoding)) {
+            throw new IllegalArgumentException("kafka.mcp.response.binary-encoding must be base64 or hex, got "
+                    + binaryEncoding);
+        }
+        this.registry = registry;
+        this.hex = HEX.equalsIgnoreCase(binaryEncoding);
+    }
+
+    /**
+     * A decoded key or value.
+     *
+     * @param format   {@code null} for plain UTF-8 text, otherwise avro, json, base64 or hex
+     * @param schemaId the registry schema id for wire-format payloads
+     */
+    public record Decoded(String text, String format, Integer schemaId) {
+    }
+
+    public Decoded decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (registry != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC_BYTE) {
+            int schemaId = ((bytes[1] & 0xff) << 24) | ((bytes[2] & 0xff) << 16)
+                    | ((bytes[3] & 0xff) << 8) | (bytes[4] & 0xff);
+            return decodeWireFormat(bytes, schemaId);
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        // Malformed input decodes to U+FFFD; treat that as binary rather than returning mojibake
+        if (text.indexOf('\uFFFD') < 0) {
+            return new Decoded(text, null, null);
+        }
+        return binary(bytes, null);
+    }
+
+    /**
+     * Decodes to text, ignoring the format. Used by search criteria.
+     */
+    public String decodeText(byte[] bytes) {
+        Decoded decoded = decode(bytes);
+        return decoded != null ? decoded.text() : null;
+    }
+
+    private Decoded decodeWireFormat(byte[] bytes, int schemaId) {
+        SchemaRegistryClient.RegisteredSchema schema = registry.schema(schemaId);
+        if (schema.error() != null) {
+            // Text never starts with a NUL byte, so this is binary with a schema we cannot get
+            return binary(bytes, schemaId);
+        }
+        return switch (schema.type()) {
+            case "AVRO" -> {
+                try {
+                    GenericDatumReader<Object> reader = new GenericDatumReader<>(schema.avroSchema());
+                    BinaryDecoder decoder = DecoderFactory.get()
+                            .binaryDecoder(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, null);
+                    yield new Decoded(GenericData.get().toString(reader.read(null, decoder)), AVRO, schemaId);
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Payload does not decode with Avro schema {}: {}", schemaId, e.getMessage());
+                    yield binary(bytes, schemaId);
+                }
+            }
+            case "JSON" -> new Decoded(new String(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH,
+                    StandardCharsets.UTF_8), JSON, schemaId);
+            default -> binary(bytes, schemaId);
+        };
+    }
+
+    private Decoded binary(byte[] bytes, Integer schemaId) {
+        return hex
+                ? new Decoded(HexFormat.of().formatHex(bytes), HEX, schemaId)
+                : new Decoded(Base64.getEncoder().encodeToString(bytes), BASE64, schemaId);
+    }
+}
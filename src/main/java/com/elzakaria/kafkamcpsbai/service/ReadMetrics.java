@@ -0,0 +1,41 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-call distributions of how much a read operation took from Kafka and how much of it was returned:
+ * {@code kafka.mcp.records.read}, {@code kafka.mcp.bytes.read} and {@code kafka.mcp.records.returned},
+ * tagged with the operation.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public void record(String operation, long recordsRead, long bytesRead, long recordsReturned) {
+        summary("kafka.mcp.records.read", operation, "Records fetched from Kafka per call", null)
+                .record(recordsRead);
+        summary("kafka.mcp.bytes.read", operation, "Key and value bytes fetched from Kafka per call", "bytes")
+                .record(bytesRead);
+        summary("kafka.mcp.records.returned", operation, "Records returned to the caller per call", null)
+                .record(recordsReturned);
+    }
+
+    private DistributionSummary summary(String name, String operation, String description, String baseUnit) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static long sizeOf(ConsumerRecord<?, ?> record) {
+        return Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+    }
+}
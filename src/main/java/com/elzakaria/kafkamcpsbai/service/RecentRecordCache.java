@@ -0,0 +1,163 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Records recently fetched by {@code peekMessages} and {@code consumeMessages}, kept so that an agent re-reading
+ * the same offsets is served from memory instead of the broker.
+ * <p>
+ * Entries are keyed by cluster, topic, partition and offset, and remember the offset of the record that followed them in
+ * the same fetch, so a range can be walked across offset gaps (compaction, transaction markers) without guessing.
+ * A read stops at the first offset that is not cached and the caller fetches the rest. The cache is bounded by
+ * key, value and header bytes ({@code kafka.mcp.record-cache.max-size}) and entries expire after {@code ttl}, which
+ * also bounds how long a record removed by retention or compaction can still be served. With {@code off-heap}
+ * values are held in direct buffers and copied back on every hit. Hit/miss counts are published as
+ * {@code cache.gets{cache=kafka-mcp-records}} (one get per record), the retained bytes as
+ * {@code kafka.mcp.record.cache.size}.
+ */
+@Component
+public class RecentRecordCache {
+
+    /** Rough fixed cost of an entry: key object, record, header array and map node. */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final boolean enabled;
+    private final boolean offHeap;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong offHeapBytes = new AtomicLong();
+
+    public RecentRecordCache(KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        KafkaMcpProperties.RecordCache spec = properties.getRecordCache();
+        this.enabled = spec.isEnabled();
+        this.offHeap = spec.isOffHeap();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(spec.getMaxSize().toBytes())
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(spec.getTtl())
+                .removalListener((Key key, Entry entry, RemovalCause cause) -> {
+                    if (entry != null && entry.offHeapValue() != null) {
+                        offHeapBytes.addAndGet(-entry.offHeapValue().capacity());
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "kafka-mcp-records");
+        Gauge.builder("kafka.mcp.record.cache.size", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Bytes of records held by the recent-records cache")
+                .baseUnit("bytes")
+                .tag("memory", "total")
+                .register(meterRegistry);
+        Gauge.builder("kafka.mcp.record.cache.size", offHeapBytes, AtomicLong::get)
+                .description("Bytes of records held by the recent-records cache")
+                .baseUnit("bytes")
+                .tag("memory", "off-heap")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hands cached records of a partition to {@code sink} in offset order, starting at {@code offset}, until
+     * {@code max} records were handed over or the next one is not cached.
+     *
+     * @return the offset to continue reading from the broker
+     */
+    public long read(String cluster, TopicPartition tp, long offset, int max,
+                     Consumer<ConsumerRecord<byte[], byte[]>> sink) {
+        if (!enabled) {
+            return offset;
+        }
+        long next = offset;
+        for (int i = 0; i < max; i++) {
+            Entry entry = cache.getIfPresent(new Key(cluster, tp.topic(), tp.partition(), next));
+            if (entry == null) {
+                break;
+            }
+            sink.accept(entry.toRecord(tp));
+            next = entry.nextOffset();
+        }
+        return next;
+    }
+
+    /**
+     * Caches records fetched from a cluster in one run from a partition, without a seek in between, in offset order.
+     */
+    public void put(String cluster, List<ConsumerRecord<byte[], byte[]>> run) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < run.size(); i++) {
+            ConsumerRecord<byte[], byte[]> record = run.get(i);
+            // The last record's successor was not fetched; offset + 1 is looked up and fetched if absent
+            long nextOffset = i + 1 < run.size() ? run.get(i + 1).offset() : record.offset() + 1;
+            cache.put(new Key(cluster, record.topic(), record.partition(), record.offset()),
+                    toEntry(record, nextOffset));
+        }
+    }
+
+    /**
+     * Drops every cached record of a topic that was deleted or recreated; offsets of a new topic start over.
+     */
+    public void invalidateTopic(String cluster, String topic) {
+        cache.asMap().keySet().removeIf(key -> key.cluster().equals(cluster) && key.topic().equals(topic));
+    }
+
+    private Entry toEntry(ConsumerRecord<byte[], byte[]> record, long nextOffset) {
+        ByteBuffer offHeapValue = null;
+        byte[] value = record.value();
+        if (offHeap && value != null) {
+            offHeapValue = ByteBuffer.allocateDirect(value.length).put(value).flip();
+            offHeapBytes.addAndGet(value.length);
+            value = null;
+        }
+        return new Entry(record.offset(), record.timestamp(), record.timestampType(), record.serializedKeySize(),
+                record.serializedValueSize(), record.key(), value, offHeapValue, record.headers().toArray(),
+                record.leaderEpoch(), nextOffset);
+    }
+
+    private record Key(String cluster, String topic, int partition, long offset) {
+    }
+
+    private record Entry(long offset, long timestamp, TimestampType timestampType,
+                         int serializedKeySize, int serializedValueSize, byte[] key, byte[] value,
+                         ByteBuffer offHeapValue, Header[] headers, Optional<Integer> leaderEpoch, long nextOffset) {
+
+        ConsumerRecord<byte[], byte[]> toRecord(TopicPartition tp) {
+            byte[] bytes = value;
+            if (offHeapValue != null) {
+                bytes = new byte[offHeapValue.capacity()];
+                offHeapValue.get(0, bytes);
+            }
+            return new ConsumerRecord<>(tp.topic(), tp.partition(), offset, timestamp, timestampType,
+                    serializedKeySize, serializedValueSize, key, bytes, new RecordHeaders(headers), leaderEpoch);
+        }
+
+        int weight() {
+            long weight = ENTRY_OVERHEAD
+                    + (key != null ? key.length : 0)
+                    + (value != null ? value.length : 0)
+                    + (offHeapValue != null ? offHeapValue.capacity() : 0);
+            for (Header header : headers) {
+                weight += header.key().length() + (header.value() != null ? header.value().length : 0);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, weight);
+        }
+    }
+}
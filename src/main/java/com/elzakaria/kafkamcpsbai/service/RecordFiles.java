@@ -0,0 +1,398 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Files of Kafka records written by {@code exportTopic} and read back by {@code importTopic}.
+ * <p>
+ * Two layouts are supported, each optionally gzip or zstd compressed:
+ * <ul>
+ *   <li>{@code ndjson}: one JSON object per line with {@code partition}, {@code offset}, {@code timestamp},
+ *   {@code key}, {@code value} and {@code headers}. Keys, values and header values that are not valid UTF-8 are
+ *   written as {@code keyBase64}/{@code valueBase64} instead, so every record round-trips byte for byte.</li>
+ *   <li>{@code binary}: the magic {@code KMCP} and a version byte, then per record its partition, offset and
+ *   timestamp followed by length-prefixed key, value and headers (length {@code -1} for null).</li>
+ * </ul>
+ * Files are written and read through a file channel and a fixed-size buffer, one record at a time, so memory use
+ * does not depend on the file size. The reader detects compression and layout from the first bytes.
+ */
+public final class RecordFiles {
+
+    public static final String NDJSON = "ndjson";
+    public static final String BINARY = "binary";
+    public static final String GZIP = "gzip";
+    public static final String ZSTD = "zstd";
+    public static final String NONE = "none";
+
+    private static final byte[] BINARY_MAGIC = {'K', 'M', 'C', 'P'};
+    private static final byte BINARY_VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON = MAPPER.getFactory();
+
+    private RecordFiles() {
+    }
+
+    /**
+     * A record read back from a file.
+     */
+    public record FileRecord(int partition, long offset, long timestamp, byte[] key, byte[] value,
+                             List<Header> headers) {
+    }
+
+    /**
+     * Creates {@code file}, which must not exist yet, for records in the given layout and compression.
+     */
+    public static Writer create(Path file, String format, String compression, int bufferSize) throws IOException {
+        String layout = format.toLowerCase(Locale.ROOT);
+        if (!NDJSON.equals(layout) && !BINARY.equals(layout)) {
+            throw new IllegalArgumentException("Format must be ndjson or binary, got " + format);
+        }
+        CountingOutputStream counted = new CountingOutputStream(Channels.newOutputStream(
+                FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        OutputStream out = compress(new BufferedOutputStream(counted, bufferSize), compression, bufferSize);
+        return NDJSON.equals(layout) ? new NdjsonWriter(out, counted) : new BinaryWriter(out, counted);
+    }
+
+    /**
+     * Opens a file written by {@link #create}, whatever its layout and compression.
+     */
+    public static Reader open(Path file, int bufferSize) throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(
+                FileChannel.open(file, StandardOpenOption.READ)), bufferSize);
+        try {
+            in = decompress(in, bufferSize);
+            in.mark(BINARY_MAGIC.length + 1);
+            byte[] head = in.readNBytes(BINARY_MAGIC.length + 1);
+            if (head.length == BINARY_MAGIC.length + 1 && startsWith(head, BINARY_MAGIC)) {
+                if (head[BINARY_MAGIC.length] != BINARY_VERSION) {
+                    throw new IOException("Unsupported binary record file version " + head[BINARY_MAGIC.length]);
+                }
+                return new BinaryReader(new DataInputStream(in));
+            }
+            in.reset();
+            return new NdjsonReader(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static OutputStream compress(OutputStream out, String compression, int bufferSize) throws IOException {
+        return switch (compression.toLowerCase(Locale.ROOT)) {
+            case GZIP -> new GZIPOutputStream(out, bufferSize);
+            case ZSTD -> new ZstdOutputStream(out);
+            case NONE -> out;
+            default -> {
+                out.close();
+                throw new IllegalArgumentException("Compression must be gzip, zstd or none, got " + compression);
+            }
+        };
+    }
+
+    private static InputStream decompress(InputStream in, int bufferSize) throws IOException {
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(in, bufferSize), bufferSize);
+        }
+        if (magic.length == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return new BufferedInputStream(new ZstdInputStream(in), bufferSize);
+        }
+        return in;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends records to a file. {@link #write} may be called from several threads.
+     */
+    public abstract static sealed class Writer implements AutoCloseable permits NdjsonWriter, BinaryWriter {
+
+        private final CountingOutputStream file;
+
+        private Writer(CountingOutputStream file) {
+            this.file = file;
+        }
+
+        public abstract void write(ConsumerRecord<byte[], byte[]> record) throws IOException;
+
+        /**
+         * Bytes written to the file so far, after compression; final once the writer is closed.
+         */
+        public long bytesWritten() {
+            return file.count;
+        }
+
+        @Override
+        public abstract void close() throws IOException;
+    }
+
+    private static final class NdjsonWriter extends Writer {
+
+        private final JsonGenerator generator;
+
+        private NdjsonWriter(OutputStream out, CountingOutputStream file) throws IOException {
+            super(file);
+            this.generator = JSON.createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public synchronized void write(ConsumerRecord<byte[], byte[]> record) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("partition", record.partition());
+            generator.writeNumberField("offset", record.offset());
+            generator.writeNumberField("timestamp", record.timestamp());
+            if (record.key() != null) {
+                writeBytes("key", record.key());
+            }
+            if (record.value() != null) {
+                writeBytes("value", record.value());
+            } else {
+                generator.writeNullField("value");
+            }
+            Header[] headers = record.headers().toArray();
+            if (headers.length > 0) {
+                generator.writeArrayFieldStart("headers");
+                for (Header header : headers) {
+                    generator.writeStartObject();
+                    generator.writeStringField("key", header.key());
+                    if (header.value() != null) {
+                        writeBytes("value", header.value());
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeBytes(String field, byte[] bytes) throws IOException {
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            // Malformed input decodes to U+FFFD and would not round-trip; keep such bytes as base64
+            if (text.indexOf('\uFFFD') < 0) {
+                generator.writeStringField(field, text);
+            } else {
+                generator.writeStringField(field + "Base64", Base64.getEncoder().encodeToString(bytes));
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class BinaryWriter extends Writer {
+
+        private final DataOutputStream out;
+
+        private BinaryWriter(OutputStream out, CountingOutputStream file) throws IOException {
+            super(file);
+            this.out = new DataOutputStream(out);
+            this.out.write(BINARY_MAGIC);
+            this.out.writeByte(BINARY_VERSION);
+        }
+
+        @Override
+        public synchronized void write(ConsumerRecord<byte[], byte[]> record) throws IOException {
+            out.writeInt(record.partition());
+            out.writeLong(record.offset());
+            out.writeLong(record.timestamp());
+            writeBytes(record.key());
+            writeBytes(record.value());
+            Header[] headers = record.headers().toArray();
+            out.writeInt(headers.length);
+            for (Header header : headers) {
+                writeBytes(header.key().getBytes(StandardCharsets.UTF_8));
+                writeBytes(header.value());
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            if (bytes == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads records back one at a time.
+     */
+    public abstract static sealed class Reader implements AutoCloseable permits NdjsonReader, BinaryReader {
+
+        /**
+         * @return the next record, or {@code null} at the end of the file
+         */
+        public abstract FileRecord next() throws IOException;
+
+        @Override
+        public abstract void close() throws IOException;
+    }
+
+    private static final class NdjsonReader extends Reader {
+
+        private final JsonParser parser;
+        private final MappingIterator<JsonNode> records;
+
+        private NdjsonReader(InputStream in) throws IOException {
+            this.parser = JSON.createParser(in);
+            this.records = MAPPER.readValues(parser, JsonNode.class);
+        }
+
+        @Override
+        public FileRecord next() throws IOException {
+            if (!records.hasNextValue()) {
+                return null;
+            }
+            JsonNode node = records.nextValue();
+            List<Header> headers = new ArrayList<>();
+            for (JsonNode header : node.path("headers")) {
+                headers.add(new RecordHeader(header.path("key").asText(), bytes(header, "value")));
+            }
+            return new FileRecord(node.path("partition").asInt(-1), node.path("offset").asLong(-1),
+                    node.path("timestamp").asLong(-1), bytes(node, "key"), bytes(node, "value"), headers);
+        }
+
+        private static byte[] bytes(JsonNode node, String field) {
+            JsonNode text = node.get(field);
+            if (text != null && !text.isNull()) {
+                return text.asText().getBytes(StandardCharsets.UTF_8);
+            }
+            JsonNode base64 = node.get(field + "Base64");
+            return base64 != null && !base64.isNull() ? Base64.getDecoder().decode(base64.asText()) : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private static final class BinaryReader extends Reader {
+
+        private final DataInputStream in;
+
+        private BinaryReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public FileRecord next() throws IOException {
+            int partition;
+            try {
+                partition = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            long offset = in.readLong();
+            long timestamp = in.readLong();
+            byte[] key = readBytes();
+            byte[] value = readBytes();
+            int headerCount = in.readInt();
+            if (headerCount < 0) {
+                throw new IOException("Corrupt record file: negative header count " + headerCount);
+            }
+            // The count is not trusted for the allocation; a damaged file runs out of bytes first
+            List<Header> headers = new ArrayList<>(Math.min(headerCount, 16));
+            for (int i = 0; i < headerCount; i++) {
+                byte[] name = readBytes();
+                if (name == null) {
+                    throw new IOException("Corrupt record file: header without a name");
+                }
+                headers.add(new RecordHeader(new String(name, StandardCharsets.UTF_8), readBytes()));
+            }
+            return new FileRecord(partition, offset, timestamp, key, value, headers);
+        }
+
+        private byte[] readBytes() throws IOException {
+            int length = in.readInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Corrupt record file: negative length " + length);
+            }
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException("Record file ends in the middle of a record");
+            }
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private volatile long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
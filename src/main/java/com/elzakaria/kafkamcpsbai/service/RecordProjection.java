@@ -0,0 +1,141 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.dto.KafkaMessage;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a record a tool returns, e.g. {@code offset,timestamp,key,headers=traceId}.
+ * <p>
+ * Records arrive as raw bytes; {@link #map(ConsumerRecord, PayloadDecoder)} decodes only the projected fields. With
+ * {@code headers=name1|name2} only the named headers are looked up and decoded, and a record's other
+ * headers are never copied into the result.
+ */
+public final class RecordProjection {
+
+    public static final RecordProjection ALL = new RecordProjection(true, true, true, true, true, true, true, null);
+
+    private static final List<String> FIELDS = List.of("topic", "partition", "offset", "timestamp", "key", "value",
+            "headers");
+
+    private final boolean topic;
+    private final boolean partition;
+    private final boolean offset;
+    private final boolean timestamp;
+    private final boolean key;
+    private final boolean value;
+    private final boolean headers;
+    /** Headers to return when only some are wanted; {@code null} means all. */
+    private final List<String> headerNames;
+
+    private RecordProjection(boolean topic, boolean partition, boolean offset, boolean timestamp, boolean key,
+                             boolean value, boolean headers, List<String> headerNames) {
+        this.topic = topic;
+        this.partition = partition;
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.key = key;
+        this.value = value;
+        this.headers = headers;
+        this.headerNames = headerNames;
+    }
+
+    /**
+     * Parses a comma-separated field list. {@code headers} selects all headers, {@code headers=a|b} (or repeated
+     * {@code headers=} entries) selects named ones. A blank spec selects everything.
+     */
+    public static RecordProjection parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return ALL;
+        }
+        boolean topic = false, partition = false, offset = false, timestamp = false, key = false, value = false;
+        boolean allHeaders = false;
+        List<String> headerNames = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String field = part.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (field.startsWith("headers=")) {
+                for (String name : field.substring("headers=".length()).split("\\|")) {
+                    if (!name.isBlank()) {
+                        headerNames.add(name.trim());
+                    }
+                }
+                continue;
+            }
+            switch (field) {
+                case "topic" -> topic = true;
+                case "partition" -> partition = true;
+                case "offset" -> offset = true;
+                case "timestamp" -> timestamp = true;
+                case "key" -> key = true;
+                case "value" -> value = true;
+                case "headers" -> allHeaders = true;
+                default -> throw new IllegalArgumentException("Unknown field '" + field + "' in projection; expected "
+                        + String.join(", ", FIELDS) + " or headers=name1|name2");
+            }
+        }
+        boolean headers = allHeaders || !headerNames.isEmpty();
+        return new RecordProjection(topic, partition, offset, timestamp, key, value, headers,
+                allHeaders ? null : List.copyOf(headerNames));
+    }
+
+    public KafkaMessage map(ConsumerRecord<byte[], byte[]> record) {
+        return map(record, PayloadDecoder.PLAIN);
+    }
+
+    public KafkaMessage map(ConsumerRecord<byte[], byte[]> record, PayloadDecoder decoder) {
+        KafkaMessage.KafkaMessageBuilder message = KafkaMessage.builder()
+                .topic(topic ? record.topic() : null)
+                .partition(partition ? record.partition() : null)
+                .offset(offset ? record.offset() : null)
+                .timestamp(timestamp ? record.timestamp() : null)
+                .headers(headers ? headersOf(record) : null);
+        if (key) {
+            PayloadDecoder.Decoded decoded = decoder.decode(record.key());
+            if (decoded != null) {
+                message.key(decoded.text()).keyFormat(decoded.format()).keySchemaId(decoded.schemaId());
+            }
+        }
+        if (value) {
+            PayloadDecoder.Decoded decoded = decoder.decode(record.value());
+            if (decoded != null) {
+                message.value(decoded.text()).valueFormat(decoded.format()).valueSchemaId(decoded.schemaId());
+            }
+        }
+        return message.build();
+    }
+
+    private Map<String, String> headersOf(ConsumerRecord<byte[], byte[]> record) {
+        if (headerNames == null) {
+            Map<String, String> result = null;
+            for (Header header : record.headers()) {
+                if (result == null) {
+                    result = new HashMap<>();
+                }
+                result.put(header.key(), decode(header.value()));
+            }
+            return result != null ? result : Map.of();
+        }
+        Map<String, String> result = new LinkedHashMap<>(headerNames.size() * 2);
+        for (String name : headerNames) {
+            Header header = record.headers().lastHeader(name);
+            if (header != null) {
+                result.put(name, decode(header.value()));
+            }
+        }
+        return result;
+    }
+
+    private static String decode(byte[] bytes) {
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+}
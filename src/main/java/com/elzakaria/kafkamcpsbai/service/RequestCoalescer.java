@@ -0,0 +1,131 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight execution of identical Kafka operations.
+ * <p>
+ * The first caller of an operation with given arguments runs it on its own thread; callers arriving with the same
+ * operation and arguments while it is in flight wait for it and receive the same result or exception instead of
+ * sending their own request. The entry is removed before the result is published, so a call starting after
+ * completion always runs afresh and nothing is reused once it is done. Results are shared between callers and
+ * must not be modified. Joined calls are counted as {@code kafka.mcp.requests.coalesced}, tagged with the operation.
+ * <p>
+ * Deadlines differ per tool call, so a leading call that fails after its own {@link Deadline} passed does not pass
+ * that failure on: its joined calls start over, and one of them runs the operation with the time it has left.
+ */
+@Component
+public class RequestCoalescer {
+
+    // Result handed to joined calls when the leading call ran out of its own time
+    private static final Object LEADER_OUT_OF_TIME = new Object();
+
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.getCoalescing().isEnabled();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code call}, or joins an identical one already in flight. {@code args} must have value semantics
+     * ({@code equals}/{@code hashCode}); {@code null}s are allowed.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Call<T> call, Object... args)
+            throws ExecutionException, InterruptedException {
+        if (!enabled) {
+            return call.call();
+        }
+        Key key = new Key(operation, Arrays.asList(args));
+        while (true) {
+            CompletableFuture<Object> own = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, own);
+            if (existing != null) {
+                joined(operation).increment();
+                Object result = await(existing);
+                if (result != LEADER_OUT_OF_TIME) {
+                    return (T) result;
+                }
+                // Take over as the leading call, or join whichever joined call did
+                Deadline.check();
+                continue;
+            }
+
+            T result;
+            try {
+                result = call.call();
+            } catch (ExecutionException | InterruptedException | RuntimeException | Error e) {
+                inFlight.remove(key, own);
+                if (Deadline.expired()) {
+                    // Most likely this call's own deadline; joined calls may have time left to succeed
+                    own.complete(LEADER_OUT_OF_TIME);
+                } else {
+                    own.completeExceptionally(e);
+                }
+                throw e;
+            }
+            inFlight.remove(key, own);
+            own.complete(result);
+            return result;
+        }
+    }
+
+    /**
+     * Waits for the leading call, at most until this caller's own {@link Deadline}.
+     */
+    private static Object await(CompletableFuture<Object> leader) throws ExecutionException, InterruptedException {
+        try {
+            long remaining = Deadline.remainingNanos();
+            return remaining == Long.MAX_VALUE ? leader.get() : leader.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw Deadline.exceeded();
+        } catch (ExecutionException e) {
+            // Rethrow what the leading call threw, so joined callers fail exactly like it
+            Throwable cause = e.getCause();
+            if (cause instanceof ExecutionException executionException) {
+                throw executionException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            // The leading call was interrupted, this one was not
+            throw new ExecutionException("Shared request was interrupted", cause);
+        }
+    }
+
+    private Counter joined(String operation) {
+        return Counter.builder("kafka.mcp.requests.coalesced")
+                .description("Calls that joined an identical in-flight Kafka request instead of sending their own")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A Kafka operation whose result can be shared.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws ExecutionException, InterruptedException;
+    }
+
+    private record Key(String operation, List<Object> args) {
+    }
+}
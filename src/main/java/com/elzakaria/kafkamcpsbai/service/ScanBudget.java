@@ -0,0 +1,82 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limits shared by all partition readers of one scan: records examined, bytes examined and wall-clock time.
+ * The first limit hit, or an explicit {@link #stop(String)}, ends the scan for every reader.
+ */
+public class ScanBudget {
+
+    public static final String COMPLETED = "COMPLETED";
+    public static final String MAX_RECORDS = "MAX_RECORDS";
+    public static final String MAX_BYTES = "MAX_BYTES";
+    public static final String TIME_LIMIT = "TIME_LIMIT";
+    public static final String MAX_RESULTS = "MAX_RESULTS";
+    public static final String FAILED = "FAILED";
+
+    private final long maxRecords;
+    private final long maxBytes;
+    private final long deadlineNanos;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicReference<String> stopReason = new AtomicReference<>();
+
+    public ScanBudget(long maxRecords, long maxBytes, Duration maxTime) {
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.deadlineNanos = System.nanoTime() + maxTime.toNanos();
+    }
+
+    /**
+     * Accounts for one record about to be examined; returns {@code false} once any limit is exhausted.
+     */
+    public boolean tryAccount(long recordBytes) {
+        if (isExhausted()) {
+            return false;
+        }
+        if (records.incrementAndGet() > maxRecords) {
+            records.decrementAndGet();
+            stop(MAX_RECORDS);
+            return false;
+        }
+        if (bytes.addAndGet(recordBytes) > maxBytes) {
+            stop(MAX_BYTES);
+        }
+        return true;
+    }
+
+    public boolean isExhausted() {
+        if (stopReason.get() != null) {
+            return true;
+        }
+        if (System.nanoTime() - deadlineNanos > 0) {
+            stop(TIME_LIMIT);
+            return true;
+        }
+        return false;
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public void stop(String reason) {
+        stopReason.compareAndSet(null, reason);
+    }
+
+    public String stopReason() {
+        String reason = stopReason.get();
+        return reason != null ? reason : COMPLETED;
+    }
+
+    public long records() {
+        return records.get();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Looks up schemas by id in a Confluent-compatible schema registry ({@code GET /schemas/ids/{id}}).
+ * <p>
+ * Registered schemas never change, so successful lookups stay cached until evicted by size; failed lookups
+ * are remembered for {@code kafka.mcp.schema-registry.failure-ttl} so an unreachable registry or unknown id
+ * costs one request per interval rather than one per record. Avro schemas are parsed once, when cached.
+ */
+@Slf4j
+public class SchemaRegistryClient {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RestClient restClient;
+    private final LoadingCache<Integer, RegisteredSchema> schemas;
+
+    public SchemaRegistryClient(KafkaMcpProperties.SchemaRegistry properties, MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(properties.getRequestTimeout())
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(properties.getRequestTimeout());
+        this.restClient = RestClient.builder()
+                .baseUrl(properties.getUrl())
+                .requestFactory(requestFactory)
+                .build();
+
+        Duration failureTtl = properties.getFailureTtl();
+        this.schemas = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfter(Expiry.<Integer, RegisteredSchema>writing((id, schema) ->
+                        schema.error() != null ? failureTtl : Duration.ofNanos(Long.MAX_VALUE)))
+                .recordStats()
+                .build(this::fetch);
+        CaffeineCacheMetrics.monitor(meterRegistry, schemas, "kafka-mcp-schemas");
+    }
+
+    /**
+     * Returns the schema with the given id; lookup failures are reported through {@link RegisteredSchema#error()}.
+     */
+    public RegisteredSchema schema(int id) {
+        return schemas.get(id);
+    }
+
+    private RegisteredSchema fetch(Integer id) {
+        try {
+            String response = restClient.get()
+                    .uri("/schemas/ids/{id}", id)
+                    .retrieve()
+                    .body(String.class);
+            JsonNode body = response != null ? objectMapper.readTree(response) : null;
+            if (body == null || !body.hasNonNull("schema")) {
+                return RegisteredSchema.failed(id, "Registry returned no schema");
+            }
+            // schemaType is omitted for Avro
+            String type = body.path("schemaType").asText("AVRO");
+            String definition = body.get("schema").asText();
+            Schema avroSchema = "AVRO".equals(type) ? new Schema.Parser().parse(definition) : null;
+            return new RegisteredSchema(id, type, avroSchema, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Schema {} could not be loaded from the registry: {}", id, e.getMessage());
+            return RegisteredSchema.failed(id, e.getMessage());
+        }
+    }
+
+    /**
+     * @param type       AVRO, JSON or PROTOBUF
+     * @param avroSchema the parsed schema when {@code type} is AVRO
+     * @param error      why the lookup failed, or {@code null}
+     */
+    public record RegisteredSchema(int id, String type, Schema avroSchema, String error) {
+
+        static RegisteredSchema failed(int id, String error) {
+            return new RegisteredSchema(id, null, null, error != null ? error : "unknown error");
+        }
+    }
+}
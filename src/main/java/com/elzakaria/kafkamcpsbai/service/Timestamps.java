@@ -0,0 +1,37 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the timestamp arguments accepted by the tools.
+ */
+public final class Timestamps {
+
+    private Timestamps() {
+    }
+
+    /**
+     * Accepts an ISO-8601 instant ({@code 2024-05-01T14:02:00Z}), epoch milliseconds, or an ISO-8601 duration
+     * ({@code PT15M}) meaning that long before {@code now}. Returns {@code null} for a blank value.
+     */
+    public static Long parse(String value, long now) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String text = value.trim();
+        try {
+            if (text.startsWith("P") || text.startsWith("-P")) {
+                return now - Duration.parse(text).abs().toMillis();
+            }
+            if (text.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(text);
+            }
+            return Instant.parse(text).toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unrecognized timestamp '" + value
+                    + "': expected ISO-8601 instant, epoch millis or ISO-8601 duration such as PT15M");
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ScanStats;
+import com.elzakaria.kafkamcpsbai.dto.TopicProfile;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles a topic from a sample of its records without returning any of them: the tail of every partition, or
+ * everything inside a time window, read in parallel by {@link PartitionScanner}.
+ * <p>
+ * Each reader thread feeds its own fixed-size sketches (size histograms, {@link HyperLogLog},
+ * {@link HeavyHitters}, header key counts), merged once the scan is done, so memory depends on the scan
+ * parallelism rather than on the number of records or partitions.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopicProfiler {
+
+    private static final int MAX_HEADER_KEYS = 100;
+    private static final String OTHER_HEADER_KEYS = "(other)";
+
+    private final PartitionScanner partitionScanner;
+    private final PayloadDecoder payloadDecoder;
+    private final KafkaMcpProperties properties;
+
+    /**
+     * @param startTime          window start (epoch millis); {@code null} samples the tail of each partition
+     * @param samplePerPartition records read from the end of each partition when there is no window
+     */
+    public TopicProfile profile(String topic, Long startTime, Long endTime, int samplePerPartition, int topKeys,
+                                Duration maxTime) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        boolean window = startTime != null;
+        List<PartitionScanner.PartitionRange> ranges = partitionScanner.resolveRanges(topic,
+                window ? new PartitionScanner.Bounds(null, null, null, startTime, endTime)
+                        : PartitionScanner.Bounds.none());
+
+        Map<Integer, PartitionSample> samples = new HashMap<>();
+        List<PartitionScanner.PartitionRange> toRead = new ArrayList<>(ranges.size());
+        for (PartitionScanner.PartitionRange range : ranges) {
+            samples.put(range.topicPartition().partition(),
+                    new PartitionSample(Math.max(0, range.endOffset() - range.startOffset())));
+            toRead.add(window || range.error() != null ? range
+                    : new PartitionScanner.PartitionRange(range.topicPartition(),
+                            Math.max(range.startOffset(), range.endOffset() - samplePerPartition), range.endOffset()));
+        }
+
+        Queue<Sketches> allSketches = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Sketches> sketches = ThreadLocal.withInitial(() -> {
+            Sketches created = new Sketches(topKeys);
+            allSketches.add(created);
+            return created;
+        });
+        ScanBudget budget = new ScanBudget(properties.getScan().getMaxRecords(),
+                properties.getScan().getMaxBytes().toBytes(), maxTime);
+        List<ScanStats.PartitionProgress> progress = partitionScanner.scan(toRead, budget, Long.MAX_VALUE,
+                record -> {
+                    // A partition is read by one reader at a time, so its sample needs no locking
+                    samples.get(record.partition()).add(record);
+                    sketches.get().add(record);
+                    return false;
+                });
+
+        Sketches merged = new Sketches(topKeys);
+        allSketches.forEach(merged::merge);
+        Map<Integer, ScanStats.PartitionProgress> progressByPartition = progress.stream()
+                .collect(Collectors.toMap(ScanStats.PartitionProgress::getPartition, Function.identity()));
+        List<TopicProfile.PartitionProfile> partitions = samples.entrySet().stream()
+                .map(e -> e.getValue().toProfile(e.getKey(), progressByPartition.get(e.getKey())))
+                .sorted((a, b) -> Integer.compare(a.getPartition(), b.getPartition()))
+                .toList();
+
+        return TopicProfile.builder()
+                .topic(topic)
+                .startTime(startTime)
+                .endTime(window ? endTime : null)
+                .samplePerPartition(window ? null : samplePerPartition)
+                .recordsSampled(merged.records)
+                .bytesSampled(budget.bytes())
+                .nullKeys(merged.nullKeys)
+                .tombstones(merged.tombstones)
+                .keySize(sizeStats(merged.keySizes))
+                .valueSize(sizeStats(merged.valueSizes))
+                .distinctKeys(merged.keys.estimate())
+                .topKeys(topKeys(merged, topKeys))
+                .headerKeys(new TreeMap<>(merged.headerKeys))
+                .skew(skew(partitions))
+                .partitions(partitions)
+                .stats(ScanStats.builder()
+                        .recordsScanned(budget.records())
+                        .bytesScanned(budget.bytes())
+                        .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                        .stopReason(budget.stopReason())
+                        .build())
+                .build();
+    }
+
+    private List<TopicProfile.KeyCount> topKeys(Sketches merged, int n) {
+        long keyed = merged.records - merged.nullKeys;
+        return merged.hotKeys.top(n).stream()
+                .map(estimate -> {
+                    PayloadDecoder.Decoded key = payloadDecoder.decode(estimate.key());
+                    return TopicProfile.KeyCount.builder()
+                            .key(key.text())
+                            .keyFormat(key.format())
+                            .count(estimate.count())
+                            .share(keyed > 0 ? round((double) estimate.count() / keyed) : 0)
+                            .build();
+                })
+                .toList();
+    }
+
+    private static TopicProfile.SizeStats sizeStats(SizeHistogram histogram) {
+        return TopicProfile.SizeStats.builder()
+                .min(histogram.min())
+                .p50(histogram.percentile(50))
+                .p90(histogram.percentile(90))
+                .p99(histogram.percentile(99))
+                .max(histogram.max())
+                .mean(round(histogram.mean()))
+                .build();
+    }
+
+    private static TopicProfile.Skew skew(List<TopicProfile.PartitionProfile> partitions) {
+        if (partitions.isEmpty()) {
+            return null;
+        }
+        TopicProfile.PartitionProfile largest = partitions.getFirst();
+        long totalRecords = 0;
+        TopicProfile.PartitionProfile fastest = null;
+        double totalRate = 0;
+        int withRate = 0;
+        for (TopicProfile.PartitionProfile partition : partitions) {
+            totalRecords += partition.getRecordsInRange();
+            if (partition.getRecordsInRange() > largest.getRecordsInRange()) {
+                largest = partition;
+            }
+            Double rate = partition.getRecordsPerSecond();
+            if (rate != null) {
+                totalRate += rate;
+                withRate++;
+                if (fastest == null || rate > fastest.getRecordsPerSecond()) {
+                    fastest = partition;
+                }
+            }
+        }
+        double meanRecords = (double) totalRecords / partitions.size();
+        return TopicProfile.Skew.builder()
+                .records(meanRecords > 0 ? round(largest.getRecordsInRange() / meanRecords) : 1.0)
+                .largestPartition(largest.getPartition())
+                .rate(fastest != null && totalRate > 0
+                        ? round(fastest.getRecordsPerSecond() / (totalRate / withRate)) : null)
+                .fastestPartition(fastest != null ? fastest.getPartition() : null)
+                .build();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * Counters for one partition.
+     */
+    private static final class PartitionSample {
+        private final long recordsInRange;
+        private long records;
+        private long bytes;
+        private long firstTimestamp = Long.MAX_VALUE;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        PartitionSample(long recordsInRange) {
+            this.recordsInRange = recordsInRange;
+        }
+
+        void add(ConsumerRecord<byte[], byte[]> record) {
+            records++;
+            bytes += Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+            firstTimestamp = Math.min(firstTimestamp, record.timestamp());
+            lastTimestamp = Math.max(lastTimestamp, record.timestamp());
+        }
+
+        TopicProfile.PartitionProfile toProfile(int partition, ScanStats.PartitionProgress progress) {
+            long spanMs = lastTimestamp - firstTimestamp;
+            return TopicProfile.PartitionProfile.builder()
+                    .partition(partition)
+                    .recordsInRange(recordsInRange)
+                    .recordsSampled(records)
+                    .bytesSampled(bytes)
+                    .firstTimestamp(records > 0 ? firstTimestamp : null)
+                    .lastTimestamp(records > 0 ? lastTimestamp : null)
+                    .recordsPerSecond(records > 1 && spanMs > 0 ? round((records - 1) * 1000.0 / spanMs) : null)
+                    .completed(progress != null && progress.isCompleted())
+                    .error(progress != null ? progress.getError() : null)
+                    .build();
+        }
+    }
+
+    /**
+     * Topic-wide sketches fed by one reader thread.
+     */
+    private static final class Sketches {
+        private final SizeHistogram keySizes = new SizeHistogram();
+        private final SizeHistogram valueSizes = new SizeHistogram();
+        private final HyperLogLog keys = new HyperLogLog();
+        private final HeavyHitters hotKeys;
+        private final Map<String, Long> headerKeys = new HashMap<>();
+        private long records;
+        private long nullKeys;
+        private long tombstones;
+
+        Sketches(int topKeys) {
+            // Track more candidates than reported so keys near the cut-off are not lost to ordering
+            this.hotKeys = new HeavyHitters(Math.max(64, topKeys * 4));
+        }
+
+        void add(ConsumerRecord<byte[], byte[]> record) {
+            records++;
+            byte[] key = record.key();
+            if (key == null) {
+                nullKeys++;
+            } else {
+                keySizes.record(key.length);
+                long hash = HyperLogLog.hash(key);
+                keys.add(hash);
+                hotKeys.add(key, hash);
+            }
+            if (record.value() == null) {
+                tombstones++;
+            } else {
+                valueSizes.record(record.value().length);
+            }
+            for (Header header : record.headers()) {
+                String name = headerKeys.containsKey(header.key()) || headerKeys.size() < MAX_HEADER_KEYS
+                        ? header.key() : OTHER_HEADER_KEYS;
+                headerKeys.merge(name, 1L, Long::sum);
+            }
+        }
+
+        void merge(Sketches other) {
+            keySizes.merge(other.keySizes);
+            valueSizes.merge(other.valueSizes);
+            keys.merge(other.keys);
+            hotKeys.merge(other.hotKeys);
+            other.headerKeys.forEach((name, count) -> headerKeys.merge(name, count, Long::sum));
+            records += other.records;
+            nullKeys += other.nullKeys;
+            tombstones += other.tombstones;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.KafkaMessage;
+import com.elzakaria.kafkamcpsbai.dto.TailBatch;
+import com.elzakaria.kafkamcpsbai.dto.TailSubscription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live tails of topics, shared by every subscriber of the same topic.
+ * <p>
+ * The first subscription to a topic starts one group-less consumer that follows the end of every partition on its
+ * own virtual thread and appends what it reads to a ring buffer bounded by {@code kafka.mcp.tail.buffer-size} and
+ * {@code buffer-bytes}. A subscription is only a cursor into that buffer plus its own filter and projection, so ten
+ * sessions watching one topic cost one consumer and one copy of the records. A subscriber that falls a full buffer
+ * behind either misses the overwritten records, which its next poll reports, or holds the consumer back
+ * ({@code overflow=pause}). The consumer is closed as soon as the last subscription on its topic is closed or
+ * expires after {@code idle-timeout} without a poll.
+ * <p>
+ * Open tails and subscriptions are published as {@code kafka.mcp.tail.topics} and
+ * {@code kafka.mcp.tail.subscriptions}; records subscribers missed are counted by
+ * {@code kafka.mcp.tail.records.dropped}.
+ */
+@Slf4j
+public class TopicTails implements AutoCloseable {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration METADATA_TIMEOUT = Duration.ofSeconds(10);
+    private static final long PARTITION_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Map<String, Object> config;
+    private final KafkaMcpProperties.Tail properties;
+    private final PayloadDecoder payloadDecoder;
+    private final ReadMetrics readMetrics;
+    private final boolean pauseOnOverflow;
+    private final int maxPollRecords;
+    private final MicrometerConsumerListener<byte[], byte[]> metricsListener;
+    private final Counter droppedRecords;
+    private final AtomicInteger clientIds = new AtomicInteger();
+    private final Map<String, Tail> tails = new HashMap<>();
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private boolean closed;
+
+    public TopicTails(Map<String, Object> config, KafkaMcpProperties.Tail properties, PayloadDecoder payloadDecoder,
+                      ReadMetrics readMetrics, MeterRegistry meterRegistry) {
+        if (!"drop".equals(properties.getOverflow()) && !"pause".equals(properties.getOverflow())) {
+            throw new IllegalArgumentException("kafka.mcp.tail.overflow must be drop or pause, got "
+                    + properties.getOverflow());
+        }
+        this.properties = properties;
+        this.payloadDecoder = payloadDecoder;
+        this.readMetrics = readMetrics;
+        this.pauseOnOverflow = "pause".equals(properties.getOverflow());
+        // Small enough that one poll never overruns the buffer space a paused tail keeps free
+        this.maxPollRecords = Math.max(1, Math.min(500, properties.getBufferSize() / 4));
+        this.config = ConsumerPool.readerConfig(config);
+        this.config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        this.metricsListener = new MicrometerConsumerListener<>(meterRegistry);
+        this.droppedRecords = Counter.builder("kafka.mcp.tail.records.dropped")
+                .description("Tailed records overwritten before a subscriber read them")
+                .register(meterRegistry);
+        Gauge.builder("kafka.mcp.tail.topics", this, TopicTails::tailCount)
+                .description("Topics tailed by a shared consumer")
+                .register(meterRegistry);
+        Gauge.builder("kafka.mcp.tail.subscriptions", subscriptions, Map::size)
+                .description("Open tail subscriptions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a subscription on a topic, starting its shared tail if this is the first one. The subscription sees
+     * records produced from now on, preceded by up to {@code replay} records that are already buffered.
+     * <p>
+     * A new tail is started outside the monitor, since it waits for the topic's metadata, and
+     * published only if no other subscriber started one for the topic meanwhile; the loser is stopped again.
+     */
+    public TailSubscription subscribe(String topic, MessageFilter filter, RecordProjection projection, int replay) {
+        synchronized (this) {
+            checkCanSubscribe();
+            Tail tail = tails.get(topic);
+            if (tail != null) {
+                return attach(tail, filter, projection, replay);
+            }
+            checkCanTail();
+        }
+
+        Tail started = new Tail(topic);
+        synchronized (this) {
+            Tail tail;
+            try {
+                checkCanSubscribe();
+                tail = tails.get(topic);
+                if (tail == null) {
+                    checkCanTail();
+                    tails.put(topic, started);
+                    tail = started;
+                }
+            } catch (RuntimeException e) {
+                started.stop(null);
+                throw e;
+            }
+            if (tail != started) {
+                started.stop(null);
+            }
+            return attach(tail, filter, projection, replay);
+        }
+    }
+
+    private void checkCanSubscribe() {
+        if (closed) {
+            throw new IllegalStateException("Topic tails have been closed");
+        }
+        if (subscriptions.size() >= properties.getMaxSubscriptions()) {
+            throw new IllegalStateException("At most " + properties.getMaxSubscriptions()
+                    + " tail subscriptions can be open at once");
+        }
+    }
+
+    private void checkCanTail() {
+        if (tails.size() >= properties.getMaxTopics()) {
+            throw new IllegalStateException("At most " + properties.getMaxTopics()
+                    + " topics can be tailed at once");
+        }
+    }
+
+    private TailSubscription attach(Tail tail, MessageFilter filter, RecordProjection projection, int replay) {
+        Subscription subscription = new Subscription(UUID.randomUUID().toString(), tail, filter, projection,
+                tail.startSequence(replay));
+        tail.subscribers.add(subscription);
+        subscriptions.put(subscription.id, subscription);
+        return TailSubscription.builder()
+                .subscriptionId(subscription.id)
+                .topic(tail.topic)
+                .topicSubscribers(tail.subscribers.size())
+                .replayedRecords(tail.pendingFor(subscription))
+                .build();
+    }
+
+    /**
+     * Returns the subscription's next records, waiting up to {@code wait} (capped at {@code max-wait}) for at least
+     * one that passes its filter.
+     */
+    public TailBatch poll(String subscriptionId, int maxMessages, Duration wait) throws InterruptedException {
+        Subscription subscription = subscriptions.get(subscriptionId);
+        if (subscription == null) {
+            throw new IllegalArgumentException("No subscription '" + subscriptionId + "'; it was closed or expired");
+        }
+        Duration maxWait = properties.getMaxWait();
+        return subscription.poll(maxMessages, Deadline.cap(wait.compareTo(maxWait) > 0 ? maxWait : wait));
+    }
+
+    /**
+     * Closes a subscription, and the topic's tail with it when it was the last one.
+     *
+     * @return {@code false} if there was no such subscription
+     */
+    public synchronized boolean unsubscribe(String subscriptionId) {
+        Subscription subscription = subscriptions.remove(subscriptionId);
+        if (subscription == null) {
+            return false;
+        }
+        Tail tail = subscription.tail;
+        tail.subscribers.remove(subscription);
+        if (tail.subscribers.isEmpty()) {
+            tails.remove(tail.topic, tail);
+            tail.stop(null);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the tail of a deleted topic. Its subscriptions stay open so that their next poll says why.
+     */
+    public synchronized void topicDeleted(String topic) {
+        Tail tail = tails.remove(topic);
+        if (tail != null) {
+            tail.stop("topic '" + topic + "' was deleted");
+        }
+    }
+
+    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void expireIdle() {
+        long cutoff = System.nanoTime() - properties.getIdleTimeout().toNanos();
+        for (Subscription subscription : subscriptions.values()) {
+            if (subscription.lastPolled - cutoff < 0 && unsubscribe(subscription.id)) {
+                log.debug("Closed tail subscription {} on topic {} after {} without a poll",
+                        subscription.id, subscription.tail.topic, properties.getIdleTimeout());
+            }
+        }
+    }
+
+    public synchronized int tailCount() {
+        return tails.size();
+    }
+
+    @Override
+    public void close() {
+        List<Tail> stopped;
+        synchronized (this) {
+            closed = true;
+            stopped = new ArrayList<>(tails.values());
+            tails.clear();
+            subscriptions.clear();
+        }
+        stopped.forEach(tail -> tail.stop("server is shutting down"));
+        for (Tail tail : stopped) {
+            try {
+                tail.thread.join(Duration.ofSeconds(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void tailFailed(Tail tail) {
+        tails.remove(tail.topic, tail);
+    }
+
+    /**
+     * One topic's shared consumer and the ring buffer it fills. Records are numbered by a sequence that keeps
+     * growing; the buffer holds sequences {@code [first, next)}.
+     */
+    private final class Tail {
+
+        private final String topic;
+        private final String clientId;
+        private final KafkaConsumer<byte[], byte[]> consumer;
+        private final ConsumerRecord<byte[], byte[]>[] ring;
+        private final long maxBytes;
+        private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition arrived = lock.newCondition();
+        private final Thread thread;
+
+        private long first;
+        private long next;
+        private long bytes;
+        private volatile boolean running = true;
+        private volatile String stopReason;
+        private boolean paused;
+        private long partitionsCheckedAt;
+
+        @SuppressWarnings("unchecked")
+        Tail(String topic) {
+            this.topic = topic;
+            this.ring = new ConsumerRecord[properties.getBufferSize()];
+            this.maxBytes = properties.getBufferBytes().toBytes();
+            this.clientId = "kafka-mcp-tail-" + clientIds.incrementAndGet();
+            Map<String, Object> props = new HashMap<>(config);
+            props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+            this.consumer = new KafkaConsumer<>(props);
+            try {
+                List<TopicPartition> partitions = partitionsOf();
+                if (partitions.isEmpty()) {
+                    throw new IllegalArgumentException("Topic '" + topic + "' does not exist");
+                }
+                consumer.assign(partitions);
+                consumer.seekToEnd(partitions);
+                // Resolve the end offsets now, so nothing produced after subscribe() returns is missed
+                partitions.forEach(consumer::position);
+            } catch (RuntimeException e) {
+                consumer.close(Duration.ofSeconds(1));
+                throw e;
+            }
+            metricsListener.consumerAdded(clientId, consumer);
+            this.partitionsCheckedAt = System.nanoTime();
+            this.thread = Thread.ofVirtual().name(clientId + "-" + topic).start(this::run);
+        }
+
+        private List<TopicPartition> partitionsOf() {
+            return consumer.partitionsFor(topic, Deadline.cap(METADATA_TIMEOUT)).stream()
+                    .map(p -> new TopicPartition(topic, p.partition()))
+                    .toList();
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    refreshPartitions();
+                    if (pauseOnOverflow) {
+                        applyBackpressure();
+                    }
+                    ConsumerRecords<byte[], byte[]> records = consumer.poll(POLL_TIMEOUT);
+                    if (!records.isEmpty()) {
+                        append(records);
+                    }
+                }
+            } catch (WakeupException e) {
+                // stop() woke the consumer up
+            } catch (RuntimeException e) {
+                log.warn("Tail of topic {} stopped: {}", topic, e.getMessage());
+                stopReason = e.getMessage();
+                tailFailed(this);
+            } finally {
+                running = false;
+                metricsListener.consumerRemoved(clientId, consumer);
+                try {
+                    consumer.close(Duration.ofSeconds(1));
+                } catch (RuntimeException e) {
+                    log.debug("Error closing tail consumer", e);
+                }
+                signalAll();
+            }
+        }
+
+        /**
+         * Picks up partitions added to the topic since the tail started; they are read from their beginning.
+         */
+        private void refreshPartitions() {
+            if (System.nanoTime() - partitionsCheckedAt < PARTITION_REFRESH_NANOS) {
+                return;
+            }
+            partitionsCheckedAt = System.nanoTime();
+            Set<TopicPartition> assigned = consumer.assignment();
+            List<TopicPartition> partitions = partitionsOf();
+            List<TopicPartition> added = partitions.stream().filter(tp -> !assigned.contains(tp)).toList();
+            if (!added.isEmpty()) {
+                Set<TopicPartition> all = new HashSet<>(assigned);
+                all.addAll(added);
+                consumer.assign(all);
+                consumer.seekToBeginning(added);
+                if (paused) {
+                    consumer.pause(added);
+                }
+            }
+        }
+
+        /**
+         * Pauses fetching while the slowest subscriber could not absorb another poll without losing records.
+         */
+        private void applyBackpressure() {
+            long slowest;
+            lock.lock();
+            try {
+                slowest = next;
+                for (Subscription subscription : subscribers) {
+                    slowest = Math.min(slowest, Math.max(first, subscription.cursor));
+                }
+                paused = next - slowest + maxPollRecords > ring.length;
+            } finally {
+                lock.unlock();
+            }
+            if (paused) {
+                consumer.pause(consumer.assignment());
+            } else if (!consumer.paused().isEmpty()) {
+                consumer.resume(consumer.paused());
+            }
+        }
+
+        private void append(ConsumerRecords<byte[], byte[]> records) {
+            lock.lock();
+            try {
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    if (next - first == ring.length) {
+                        evictOldest();
+                    }
+                    ring[index(next++)] = record;
+                    bytes += ReadMetrics.sizeOf(record);
+                    while (bytes > maxBytes && next - first > 1) {
+                        evictOldest();
+                    }
+                }
+                arrived.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void evictOldest() {
+            int index = index(first++);
+            bytes -= ReadMetrics.sizeOf(ring[index]);
+            ring[index] = null;
+        }
+
+        private int index(long sequence) {
+            return (int) (sequence % ring.length);
+        }
+
+        long startSequence(int replay) {
+            lock.lock();
+            try {
+                return Math.max(first, next - Math.max(0, replay));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long pendingFor(Subscription subscription) {
+            lock.lock();
+            try {
+                return next - Math.max(first, subscription.cursor);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void stop(String reason) {
+            stopReason = reason;
+            running = false;
+            consumer.wakeup();
+        }
+
+        private void signalAll() {
+            lock.lock();
+            try {
+                arrived.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A subscriber's position in its topic's buffer. Polls of one subscription are serialized.
+     */
+    private final class Subscription {
+
+        private final String id;
+        private final Tail tail;
+        private final MessageFilter filter;
+        private final RecordProjection projection;
+        private volatile long cursor;
+        private volatile long lastPolled = System.nanoTime();
+
+        Subscription(String id, Tail tail, MessageFilter filter, RecordProjection projection, long cursor) {
+            this.id = id;
+            this.tail = tail;
+            this.filter = filter;
+            this.projection = projection;
+            this.cursor = cursor;
+        }
+
+        synchronized TailBatch poll(int maxMessages, Duration wait) throws InterruptedException {
+            lastPolled = System.nanoTime();
+            long deadline = lastPolled + wait.toNanos();
+            List<KafkaMessage> messages = new ArrayList<>();
+            long dropped = 0;
+            long skipped = 0;
+            long read = 0;
+            long bytesRead = 0;
+            long pending;
+
+            while (true) {
+                List<ConsumerRecord<byte[], byte[]>> buffered;
+                long position;
+                tail.lock.lock();
+                try {
+                    long remaining;
+                    while (cursor >= tail.next && tail.running && (remaining = deadline - System.nanoTime()) > 0) {
+                        tail.arrived.awaitNanos(remaining);
+                    }
+                    if (cursor < tail.first) {
+                        dropped += tail.first - cursor;
+                        cursor = tail.first;
+                    }
+                    position = cursor;
+                    buffered = new ArrayList<>((int) (tail.next - position));
+                    for (long sequence = position; sequence < tail.next; sequence++) {
+                        buffered.add(tail.ring[tail.index(sequence)]);
+                    }
+                } finally {
+                    tail.lock.unlock();
+                }
+
+                // Filtering and decoding happen outside the lock, so the tail keeps appending meanwhile
+                try {
+                    for (ConsumerRecord<byte[], byte[]> record : buffered) {
+                        if (messages.size() >= maxMessages) {
+                            break;
+                        }
+                        position++;
+                        read++;
+                        bytesRead += ReadMetrics.sizeOf(record);
+                        try {
+                            if (filter.test(record)) {
+                                messages.add(projection.map(record, payloadDecoder));
+                            }
+                        } catch (RuntimeException e) {
+                            // Skipped rather than thrown, or every later poll would fail on the same record
+                            skipped++;
+                            log.debug("Skipped record {}-{}@{} on subscription {}: {}", record.topic(),
+                                    record.partition(), record.offset(), id, e.getMessage());
+                        }
+                    }
+                } finally {
+                    cursor = position;
+                }
+                if (!messages.isEmpty() || !tail.running || deadline - System.nanoTime() <= 0) {
+                    break;
+                }
+            }
+            lastPolled = System.nanoTime();
+            pending = tail.pendingFor(this);
+
+            if (dropped > 0) {
+                droppedRecords.increment(dropped);
+            }
+            readMetrics.record("tail", read, bytesRead, messages.size());
+            if (messages.isEmpty() && pending == 0 && tail.stopReason != null) {
+                throw new IllegalStateException("Tail of topic '" + tail.topic + "' stopped: " + tail.stopReason);
+            }
+            return TailBatch.builder()
+                    .subscriptionId(id)
+                    .topic(tail.topic)
+                    .messagesReturned(messages.size())
+                    .recordsRead(read)
+                    .droppedRecords(dropped)
+                    .skippedRecords(skipped)
+                    .pendingRecords(pending)
+                    .messages(messages)
+                    .build();
+        }
+    }
+}
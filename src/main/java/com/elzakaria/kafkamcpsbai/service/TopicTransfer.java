@@ -0,0 +1,207 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ExportResult;
+import com.elzakaria.kafkamcpsbai.dto.ImportResult;
+import com.elzakaria.kafkamcpsbai.dto.ScanStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies topics to and from {@link RecordFiles} in {@code kafka.mcp.transfer.directory}.
+ * <p>
+ * Exports read the requested ranges with {@link PartitionScanner}, several partitions in parallel, and stream each
+ * record straight into the file, so memory stays constant however large the topic is. Imports stream the file
+ * back through the cluster's {@link BatchProducer} without waiting for each send, optionally paced to a fixed
+ * rate. Both stop at their time limit and report how far they got and how fast they went.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopicTransfer {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final KafkaMcpProperties properties;
+
+    /**
+     * @param fileName file to create inside the transfer directory; {@code null} names it after the topic
+     */
+    public ExportResult export(KafkaCluster kafka, String topic, PartitionScanner.Bounds bounds, String fileName,
+                               String format, String compression, Duration maxTime)
+            throws IOException, ExecutionException, InterruptedException {
+        KafkaMcpProperties.Transfer transfer = properties.getTransfer();
+        Path file = resolve(fileName != null ? fileName : defaultFileName(topic, format, compression));
+        Files.createDirectories(file.getParent());
+
+        long start = System.nanoTime();
+        List<PartitionScanner.PartitionRange> ranges = kafka.partitionScanner().resolveRanges(topic, bounds);
+        ScanBudget budget = new ScanBudget(transfer.getMaxRecords(), transfer.getMaxBytes().toBytes(), maxTime);
+        List<ScanStats.PartitionProgress> progress;
+        try (RecordFiles.Writer writer = RecordFiles.create(file, format, compression,
+                (int) transfer.getBufferSize().toBytes())) {
+            progress = kafka.partitionScanner().scan(ranges, budget, Long.MAX_VALUE, record -> {
+                try {
+                    writer.write(record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            });
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            // A file that failed half-way is not worth keeping; one cut short by a limit is, see partitions
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        log.info("Exported {} records of topic {} to {} ({})", budget.records(), topic, file, budget.stopReason());
+        return ExportResult.builder()
+                .topic(topic)
+                .file(directory().relativize(file).toString())
+                .format(format.toLowerCase(Locale.ROOT))
+                .compression(compression.toLowerCase(Locale.ROOT))
+                .recordsWritten(budget.records())
+                .bytesRead(budget.bytes())
+                .bytesWritten(Files.size(file))
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                .recordsPerSecond(perSecond(budget.records(), elapsed))
+                .bytesPerSecond(perSecond(budget.bytes(), elapsed))
+                .stopReason(budget.stopReason())
+                .partitions(progress)
+                .build();
+    }
+
+    /**
+     * @param ratePerSecond      records sent per second at most; 0 sends as fast as the producer accepts them
+     * @param preservePartitions send each record to the partition it was exported from instead of by key
+     * @param preserveTimestamps keep each record's original timestamp instead of the time it is sent
+     */
+    public ImportResult importFile(KafkaCluster kafka, String fileName, String topic, int ratePerSecond,
+                                   boolean preservePartitions, boolean preserveTimestamps, Duration maxTime)
+            throws IOException {
+        Path file = resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No such file in the transfer directory: " + fileName);
+        }
+        BatchProducer producer = kafka.batchProducer();
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        AtomicReference<String> firstError = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        long end = start + maxTime.toNanos();
+        long read = 0;
+        long bytes = 0;
+        String stopReason = ScanBudget.COMPLETED;
+        int bufferSize = (int) properties.getTransfer().getBufferSize().toBytes();
+        try (RecordFiles.Reader reader = RecordFiles.open(file, bufferSize)) {
+            RecordFiles.FileRecord record;
+            while ((record = reader.next()) != null) {
+                if (failures.get() > 0) {
+                    stopReason = ScanBudget.FAILED;
+                    break;
+                }
+                if (System.nanoTime() - end >= 0 || Deadline.expired()) {
+                    stopReason = ScanBudget.TIME_LIMIT;
+                    break;
+                }
+                if (ratePerSecond > 0) {
+                    // Hold back until this record's slot in the schedule instead of sending in bursts
+                    long due = start + read * TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                ProducerRecord<byte[], byte[]> producerRecord = new ProducerRecord<>(topic,
+                        preservePartitions && record.partition() >= 0 ? record.partition() : null,
+                        preserveTimestamps && record.timestamp() >= 0 ? record.timestamp() : null,
+                        record.key(), record.value(), record.headers());
+                read++;
+                bytes += (record.key() != null ? record.key().length : 0)
+                        + (record.value() != null ? record.value().length : 0);
+                producer.sendRaw(producerRecord).whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        sent.incrementAndGet();
+                    } else {
+                        failures.incrementAndGet();
+                        firstError.compareAndSet(null, ex.getMessage());
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopReason = ScanBudget.TIME_LIMIT;
+        } finally {
+            producer.flushRaw();
+        }
+        if (failures.get() > 0) {
+            stopReason = ScanBudget.FAILED;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        log.info("Imported {} of {} records from {} into topic {} ({})", sent.get(), read, file, topic, stopReason);
+        return ImportResult.builder()
+                .topic(topic)
+                .file(fileName)
+                .recordsRead(read)
+                .recordsSent(sent.get())
+                .failureCount(failures.get())
+                .firstError(firstError.get())
+                .elapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                .recordsPerSecond(perSecond(sent.get(), elapsed))
+                .bytesPerSecond(perSecond(bytes, elapsed))
+                .stopReason(stopReason)
+                .build();
+    }
+
+    /**
+     * Resolves a file name against the transfer directory, refusing anything that would end up outside it.
+     */
+    private Path resolve(String fileName) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        Path directory = directory();
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || file.equals(directory)) {
+            throw new IllegalArgumentException("File must be inside the transfer directory: " + fileName);
+        }
+        return file;
+    }
+
+    private Path directory() {
+        return properties.getTransfer().getDirectory().toAbsolutePath().normalize();
+    }
+
+    private static String defaultFileName(String topic, String format, String compression) {
+        String name = topic + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + "."
+                + (RecordFiles.BINARY.equalsIgnoreCase(format) ? "kmcp" : "ndjson");
+        return switch (compression.toLowerCase(Locale.ROOT)) {
+            case RecordFiles.GZIP -> name + ".gz";
+            case RecordFiles.ZSTD -> name + ".zst";
+            default -> name;
+        };
+    }
+
+    private static double perSecond(long count, long elapsedNanos) {
+        return elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time from JVM start to the first successful tool response, published as
+ * {@code kafka.mcp.startup.first.tool.response} and logged once. It covers everything a freshly started server
+ * goes through before it is useful: the Spring context, tool scanning, the MCP handshake and whatever the first
+ * call sets up (Kafka clients, their classes, the broker connection). The gauge reads NaN until a call succeeds.
+ */
+@Slf4j
+public class FirstToolResponse {
+
+    private final AtomicLong uptimeMillis = new AtomicLong(-1);
+
+    public FirstToolResponse(MeterRegistry registry) {
+        TimeGauge.builder("kafka.mcp.startup.first.tool.response", this, TimeUnit.MILLISECONDS,
+                        FirstToolResponse::millis)
+                .description("Time from JVM start to the first successful tool response")
+                .register(registry);
+    }
+
+    /**
+     * Called after every successful tool call; only the first one counts.
+     */
+    void record(String tool) {
+        if (uptimeMillis.get() >= 0) {
+            return;
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (uptimeMillis.compareAndSet(-1, uptime)) {
+            log.info("First successful tool response ({}) {} ms after JVM start", tool, uptime);
+        }
+    }
+
+    private double millis() {
+        long uptime = uptimeMillis.get();
+        return uptime >= 0 ? uptime : Double.NaN;
+    }
+}
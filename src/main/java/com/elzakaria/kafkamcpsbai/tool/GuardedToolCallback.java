@@ -0,0 +1,143 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.service.Deadline;
+import com.elzakaria.kafkamcpsbai.service.KafkaClusters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs every call of a tool on its own virtual thread, behind a per-tool bulkhead and within a deadline.
+ * <p>
+ * At most {@code kafka.mcp.tools.max-concurrent} calls of a tool run at once (overridable per tool); a call that
+ * cannot get a slot within {@code queue-timeout} is rejected straight away with an error response, so one agent
+ * hammering a slow tool cannot take the threads every other tool needs. Admitted calls get a {@link Deadline}
+ * ({@code deadline}, overridable per tool) that bounds every Kafka wait underneath; a call still running when it
+ * passes is interrupted and answered with an error. Its slot stays taken until its thread has actually finished,
+ * since Kafka calls that ignore the interrupt keep running, so the bulkhead bounds the calls really in progress
+ * rather than those still awaited. The thread also leases the clusters it uses ({@link KafkaClusters#leasing}), so
+ * none of them is closed as idle under it. Slot waits are timed as {@code kafka.mcp.tool.queue}, occupied
+ * slots are {@code kafka.mcp.tool.active}, and rejections are counted by {@code kafka.mcp.tool.rejected} with
+ * reason {@code saturated} or {@code deadline}.
+ */
+@Slf4j
+public class GuardedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ResponseRenderer responseRenderer;
+    private final String tool;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final Duration queueTimeout;
+    private final Duration deadline;
+    private final Timer queued;
+    private final Counter saturated;
+    private final Counter deadlineExceeded;
+
+    public GuardedToolCallback(ToolCallback delegate, KafkaMcpProperties.Tools properties,
+                               ResponseRenderer responseRenderer, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.responseRenderer = responseRenderer;
+        this.tool = delegate.getToolDefinition().name();
+        this.maxConcurrent = properties.getMaxConcurrentPerTool().getOrDefault(tool, properties.getMaxConcurrent());
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.queueTimeout = properties.getQueueTimeout();
+        this.deadline = properties.getDeadlinePerTool().getOrDefault(tool, properties.getDeadline());
+        this.queued = Timer.builder("kafka.mcp.tool.queue")
+                .description("Time tool calls waited for a free slot in their tool's bulkhead")
+                .tag("tool", tool)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.saturated = rejections("saturated", registry);
+        this.deadlineExceeded = rejections("deadline", registry);
+        Gauge.builder("kafka.mcp.tool.active", slots, s -> maxConcurrent - s.availablePermits())
+                .description("Tool calls currently running")
+                .tag("tool", tool)
+                .register(registry);
+    }
+
+    private Counter rejections(String reason, MeterRegistry registry) {
+        return Counter.builder("kafka.mcp.tool.rejected")
+                .description("Tool calls turned away by their bulkhead or cut off by their deadline")
+                .tag("tool", tool)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        long start = System.nanoTime();
+        try {
+            if (!slots.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                saturated.increment();
+                return responseRenderer.renderError("Tool " + tool + " is saturated (" + maxConcurrent
+                        + " calls in progress); retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return responseRenderer.renderError("Interrupted while waiting to run tool " + tool);
+        }
+        queued.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        FutureTask<String> task = new FutureTask<>(() -> Deadline.within(deadline, () -> KafkaClusters.leasing(() ->
+                toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput))));
+        try {
+            Thread.ofVirtual().name("mcp-tool-" + tool).start(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            slots.release();
+            throw e;
+        }
+        try {
+            return task.get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            deadlineExceeded.increment();
+            log.warn("Tool {} did not finish within {}", tool, deadline);
+            return responseRenderer.renderError("Tool " + tool + " did not finish within " + deadline);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return responseRenderer.renderError("Interrupted while running tool " + tool);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
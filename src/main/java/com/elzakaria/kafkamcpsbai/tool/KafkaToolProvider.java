@@ -1,16 +1,26 @@
 package com.elzakaria.kafkamcpsbai.tool;
 
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
 import com.elzakaria.kafkamcpsbai.dto.*;
 import com.elzakaria.kafkamcpsbai.service.KafkaService;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.elzakaria.kafkamcpsbai.service.MessageFilter;
+import com.elzakaria.kafkamcpsbai.service.PartitionScanner;
+import com.elzakaria.kafkamcpsbai.service.PayloadDecoder;
+import com.elzakaria.kafkamcpsbai.service.RecordFiles;
+import com.elzakaria.kafkamcpsbai.service.RecordProjection;
+import com.elzakaria.kafkamcpsbai.service.Timestamps;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -19,15 +29,21 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class KafkaToolProvider {
 
+    private static final String CLUSTER = "Cluster to run against, as listed by listClusters (default: the default cluster)";
+
     private final KafkaService kafkaService;
+    private final KafkaMcpProperties properties;
+    private final ResponseRenderer responseRenderer;
+    private final PayloadDecoder payloadDecoder;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // ==================== Topic Management ====================
 
     @Tool(description = "List all Kafka topics in the cluster. Returns a list of topic names.")
-    public String listTopics() {
+    public String listTopics(
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            List<String> topics = kafkaService.listTopics();
+            List<String> topics = kafkaService.listTopics(cluster);
             return toJson(Map.of("topics", topics, "count", topics.size()));
         } catch (Exception e) {
             log.error("Failed to list topics", e);
@@ -37,9 +53,10 @@ public class KafkaToolProvider {
 
     @Tool(description = "Get detailed information about a specific Kafka topic including partitions, replicas, and configurations.")
     public String describeTopic(
-            @ToolParam(description = "The name of the topic to describe") String topicName) {
+            @ToolParam(description = "The name of the topic to describe") String topicName,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            TopicInfo topicInfo = kafkaService.describeTopic(topicName);
+            TopicInfo topicInfo = kafkaService.describeTopic(cluster, topicName);
             return toJson(topicInfo);
         } catch (Exception e) {
             log.error("Failed to describe topic {}", topicName, e);
@@ -47,15 +64,50 @@ public class KafkaToolProvider {
         }
     }
 
+    @Tool(description = "Describe many topics in one call: a list of names, every topic matching a regex, or all topics. Descriptions and configs are fetched with batched requests; every partition is flagged when under-replicated or offline, with optional earliest/latest offsets. Topics that could not be described are listed under errors.")
+    public String describeTopics(
+            @ToolParam(description = "Comma-separated topic names", required = false) String topicNames,
+            @ToolParam(description = "Regular expression that topic names must fully match (ignored when topicNames is set)", required = false) String topicPattern,
+            @ToolParam(description = "Include the earliest and latest offset of every partition (default: false)", required = false) Boolean includeOffsets,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            List<String> names = topicList(topicNames);
+            TopicsReport report = kafkaService.describeTopics(cluster, names, topicPattern,
+                    includeOffsets != null && includeOffsets);
+            return toJson(report);
+        } catch (Exception e) {
+            log.error("Failed to describe topics", e);
+            return errorResponse("Failed to describe topics: " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Summarize how much data topics hold: per-topic record counts, size on disk (leader copy and all replicas), average record size, partition skew, oldest-record age and newest record time, plus disk usage per broker. Covers a list of names, a regex, or the whole cluster with a few batched requests; use it to plan reads and estimate scans.")
+    public String describeStorage(
+            @ToolParam(description = "Comma-separated topic names", required = false) String topicNames,
+            @ToolParam(description = "Regular expression that topic names must fully match (ignored when topicNames is set)", required = false) String topicPattern,
+            @ToolParam(description = "Include per-partition offsets, sizes and timestamps (default: false)", required = false) Boolean includePartitions,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            List<String> names = topicList(topicNames);
+            StorageReport report = kafkaService.describeStorage(cluster, names, topicPattern,
+                    includePartitions != null && includePartitions);
+            return toJson(report);
+        } catch (Exception e) {
+            log.error("Failed to describe storage", e);
+            return errorResponse("Failed to describe storage: " + e.getMessage());
+        }
+    }
+
     @Tool(description = "Create a new Kafka topic with the specified configuration.")
     public String createTopic(
             @ToolParam(description = "The name of the topic to create") String topicName,
             @ToolParam(description = "Number of partitions for the topic (default: 1)") Integer partitions,
-            @ToolParam(description = "Replication factor for the topic (default: 1)") Integer replicationFactor) {
+            @ToolParam(description = "Replication factor for the topic (default: 1)") Integer replicationFactor,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
             int numPartitions = partitions != null ? partitions : 1;
             short replFactor = replicationFactor != null ? replicationFactor.shortValue() : 1;
-            String result = kafkaService.createTopic(topicName, numPartitions, replFactor);
+            String result = kafkaService.createTopic(cluster, topicName, numPartitions, replFactor);
             return toJson(Map.of("success", true, "message", result));
         } catch (Exception e) {
             log.error("Failed to create topic {}", topicName, e);
@@ -65,9 +117,10 @@ public class KafkaToolProvider {
 
     @Tool(description = "Delete a Kafka topic. WARNING: This operation is irreversible and will delete all messages in the topic.")
     public String deleteTopic(
-            @ToolParam(description = "The name of the topic to delete") String topicName) {
+            @ToolParam(description = "The name of the topic to delete") String topicName,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            String result = kafkaService.deleteTopic(topicName);
+            String result = kafkaService.deleteTopic(cluster, topicName);
             return toJson(Map.of("success", true, "message", result));
         } catch (Exception e) {
             log.error("Failed to delete topic {}", topicName, e);
@@ -82,13 +135,14 @@ public class KafkaToolProvider {
             @ToolParam(description = "The topic to send the message to") String topicName,
             @ToolParam(description = "The message value/payload to send") String message,
             @ToolParam(description = "Optional message key for partitioning") String key,
-            @ToolParam(description = "Optional headers as JSON object (e.g., {\"header1\": \"value1\"})") String headersJson) {
+            @ToolParam(description = "Optional headers as JSON object (e.g., {\"header1\": \"value1\"})") String headersJson,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
             Map<String, String> headers = null;
             if (headersJson != null && !headersJson.isBlank()) {
                 headers = objectMapper.readValue(headersJson, Map.class);
             }
-            ProduceResult result = kafkaService.produceMessage(topicName, key, message, headers);
+            ProduceResult result = kafkaService.produceMessage(cluster, topicName, key, message, headers);
             return toJson(result);
         } catch (Exception e) {
             log.error("Failed to produce message to topic {}", topicName, e);
@@ -96,21 +150,42 @@ public class KafkaToolProvider {
         }
     }
 
+    @Tool(description = "Send many messages to a Kafka topic in one call. Records are sent asynchronously and batched by the producer; returns the partition and offset of each record plus aggregate throughput.")
+    public String produceMessages(
+            @ToolParam(description = "The topic to send the messages to") String topicName,
+            @ToolParam(description = "JSON array of records, each {\"value\": \"...\", \"key\": \"...\", \"headers\": {\"h\": \"v\"}, \"partition\": 0, \"timestamp\": 1700000000000}; only value is required") String recordsJson,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            List<ProduceRecord> records = objectMapper.readValue(recordsJson, new TypeReference<>() {});
+            BatchProduceResult result = kafkaService.produceMessages(cluster, topicName, records);
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to produce messages to topic {}", topicName, e);
+            return errorResponse("Failed to produce messages: " + e.getMessage());
+        }
+    }
+
     // ==================== Message Consumption ====================
 
-    @Tool(description = "Consume messages from a Kafka topic. Creates a temporary consumer group to read messages.")
+    @Tool(description = "Consume messages from a Kafka topic across all partitions. Reads with a pooled consumer; no consumer group is created or committed. Use fields to return only what is needed, e.g. offset,timestamp. If the server enables partial results, messages are also sent as info log notifications batch by batch while the call runs; the result always holds all of them.")
     public String consumeMessages(
             @ToolParam(description = "The topic to consume messages from") String topicName,
             @ToolParam(description = "Maximum number of messages to consume (default: 10)") Integer maxMessages,
             @ToolParam(description = "Whether to read from the beginning of the topic (default: true)") Boolean fromBeginning,
-            @ToolParam(description = "Timeout in seconds to wait for messages (default: 10)") Integer timeoutSeconds) {
+            @ToolParam(description = "Timeout in seconds to wait for messages (default: 10)") Integer timeoutSeconds,
+            @ToolParam(description = "Fields to return, comma-separated: topic, partition, offset, timestamp, key, value, headers, or headers=name1|name2 for selected headers only (default: all)", required = false) String fields,
+            @ToolParam(description = CLUSTER, required = false) String cluster,
+            ToolContext toolContext) {
         try {
             int max = maxMessages != null ? maxMessages : 10;
             boolean fromStart = fromBeginning != null ? fromBeginning : true;
             int timeout = timeoutSeconds != null ? timeoutSeconds : 10;
+            PartialResults partial = PartialResults.of(toolContext, "consumeMessages", responseRenderer,
+                    properties.getTools().isPartialResults());
 
-            List<KafkaMessage> messages = kafkaService.consumeMessages(
-                    topicName, max, fromStart, Duration.ofSeconds(timeout));
+            List<KafkaMessage> messages = kafkaService.consumeMessages(cluster,
+                    topicName, max, fromStart, Duration.ofSeconds(timeout), RecordProjection.parse(fields),
+                    batch -> partial.send(Map.of("topic", topicName, "messages", batch)));
 
             return toJson(Map.of(
                     "topic", topicName,
@@ -128,10 +203,13 @@ public class KafkaToolProvider {
             @ToolParam(description = "The topic to peek messages from") String topicName,
             @ToolParam(description = "The partition number to read from") int partition,
             @ToolParam(description = "The offset to start reading from") long offset,
-            @ToolParam(description = "Number of messages to read (default: 5)") Integer count) {
+            @ToolParam(description = "Number of messages to read (default: 5)") Integer count,
+            @ToolParam(description = "Fields to return, comma-separated: topic, partition, offset, timestamp, key, value, headers, or headers=name1|name2 for selected headers only (default: all)", required = false) String fields,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
             int numMessages = count != null ? count : 5;
-            List<KafkaMessage> messages = kafkaService.peekMessages(topicName, partition, offset, numMessages);
+            List<KafkaMessage> messages = kafkaService.peekMessages(cluster, topicName, partition, offset,
+                    numMessages, RecordProjection.parse(fields));
 
             return toJson(Map.of(
                     "topic", topicName,
@@ -146,12 +224,238 @@ public class KafkaToolProvider {
         }
     }
 
+    @Tool(description = "Read the messages a topic received within a time window, merged across partitions in timestamp order. Start offsets are looked up by timestamp, so only the window is read instead of the whole topic.")
+    public String consumeTimeWindow(
+            @ToolParam(description = "The topic to read from") String topicName,
+            @ToolParam(description = "Window start: ISO-8601 instant (2024-05-01T14:02:00Z), epoch millis, or duration ago such as PT15M") String startTime,
+            @ToolParam(description = "Window end (exclusive), same formats as startTime (default: now)", required = false) String endTime,
+            @ToolParam(description = "Maximum number of messages to return (default: 100)", required = false) Integer maxMessages,
+            @ToolParam(description = "Only read this partition", required = false) Integer partition,
+            @ToolParam(description = "Time limit in seconds (default: 30)", required = false) Integer timeoutSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            long now = System.currentTimeMillis();
+            Long start = Timestamps.parse(startTime, now);
+            if (start == null) {
+                return errorResponse("startTime is required");
+            }
+            Long end = Timestamps.parse(endTime, now);
+
+            TimeWindowResult result = kafkaService.consumeTimeWindow(cluster, topicName, partition, start,
+                    end != null ? end : now,
+                    maxMessages != null ? maxMessages : properties.getScan().getMaxResults(),
+                    timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : properties.getScan().getMaxTime());
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to consume time window from topic {}", topicName, e);
+            return errorResponse("Failed to consume time window: " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Search a topic server-side and return only matching messages. Partitions are scanned in parallel, optionally bounded by offsets or a time range; all set criteria must match. Returns matches plus scan statistics (records/bytes scanned, per-partition progress, why the scan stopped).")
+    public String searchMessages(
+            @ToolParam(description = "The topic to search") String topicName,
+            @ToolParam(description = "Key must equal this value", required = false) String keyEquals,
+            @ToolParam(description = "Key must match this regular expression", required = false) String keyRegex,
+            @ToolParam(description = "Header that must be present", required = false) String headerName,
+            @ToolParam(description = "Exact value the header must have (with headerName)", required = false) String headerValue,
+            @ToolParam(description = "Value must contain this substring", required = false) String valueContains,
+            @ToolParam(description = "Value must match this regular expression", required = false) String valueRegex,
+            @ToolParam(description = "JSON path evaluated on the value, e.g. $.order.id", required = false) String jsonPath,
+            @ToolParam(description = "Expected result of jsonPath; if omitted the path only has to exist", required = false) String jsonValue,
+            @ToolParam(description = "Only scan this partition", required = false) Integer partition,
+            @ToolParam(description = "Start offset (inclusive) in each scanned partition", required = false) Long startOffset,
+            @ToolParam(description = "End offset (exclusive) in each scanned partition", required = false) Long endOffset,
+            @ToolParam(description = "Start time: ISO-8601 instant, epoch millis, or duration ago such as PT1H", required = false) String startTime,
+            @ToolParam(description = "End time (exclusive): ISO-8601 instant, epoch millis, or duration ago", required = false) String endTime,
+            @ToolParam(description = "Maximum matches to return (default: 100)", required = false) Integer maxResults,
+            @ToolParam(description = "Maximum records to scan (default: 1000000)", required = false) Long maxRecords,
+            @ToolParam(description = "Time limit in seconds (default: 30)", required = false) Integer timeoutSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            KafkaMcpProperties.Scan defaults = properties.getScan();
+            long now = System.currentTimeMillis();
+            MessageFilter filter = messageFilter(keyEquals, keyRegex, headerName, headerValue, valueContains,
+                    valueRegex, jsonPath, jsonValue);
+            PartitionScanner.Bounds bounds = new PartitionScanner.Bounds(partition, startOffset, endOffset,
+                    Timestamps.parse(startTime, now), Timestamps.parse(endTime, now));
+
+            SearchResult result = kafkaService.searchMessages(cluster, topicName, filter, bounds,
+                    maxResults != null ? maxResults : defaults.getMaxResults(),
+                    maxRecords != null ? maxRecords : defaults.getMaxRecords(),
+                    timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : defaults.getMaxTime());
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to search messages in topic {}", topicName, e);
+            return errorResponse("Failed to search messages: " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Profile a topic without returning its messages: key/value size percentiles, approximate distinct keys, hottest keys, header key counts, and per-partition record counts, rates and skew. Reads the last samplePerPartition records of every partition, or everything in a time window, in parallel and in bounded memory.")
+    public String profileTopic(
+            @ToolParam(description = "The topic to profile") String topicName,
+            @ToolParam(description = "Profile this window instead of the partition tails; start as ISO-8601 instant, epoch millis, or duration ago such as PT1H", required = false) String startTime,
+            @ToolParam(description = "Window end (exclusive), same formats as startTime (default: now)", required = false) String endTime,
+            @ToolParam(description = "Records read from the end of each partition when no window is given (default: 10000)", required = false) Integer samplePerPartition,
+            @ToolParam(description = "Number of hottest keys to return (default: 10)", required = false) Integer topKeys,
+            @ToolParam(description = "Time limit in seconds (default: 30)", required = false) Integer timeoutSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            long now = System.currentTimeMillis();
+            Long start = Timestamps.parse(startTime, now);
+            Long end = Timestamps.parse(endTime, now);
+            TopicProfile profile = kafkaService.profileTopic(cluster, topicName, start, end != null ? end : now,
+                    samplePerPartition != null ? samplePerPartition : 10_000,
+                    topKeys != null ? topKeys : 10,
+                    timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : properties.getScan().getMaxTime());
+            return toJson(profile);
+        } catch (Exception e) {
+            log.error("Failed to profile topic {}", topicName, e);
+            return errorResponse("Failed to profile topic: " + e.getMessage());
+        }
+    }
+
+    // ==================== Live Tails ====================
+
+    @Tool(description = "Start watching a topic live. Returns a subscriptionId to pass to pollSubscription. All subscriptions on a topic share one server-side consumer and buffer; each keeps its own position, filter and fields. Only records produced after subscribing are seen, unless replay asks for recently buffered ones. Call unsubscribeTopic when done; idle subscriptions expire. Poll and unsubscribe on the same cluster the subscription was opened on.")
+    public String subscribeTopic(
+            @ToolParam(description = "The topic to watch") String topicName,
+            @ToolParam(description = "Key must equal this value", required = false) String keyEquals,
+            @ToolParam(description = "Key must match this regular expression", required = false) String keyRegex,
+            @ToolParam(description = "Header that must be present", required = false) String headerName,
+            @ToolParam(description = "Exact value the header must have (with headerName)", required = false) String headerValue,
+            @ToolParam(description = "Value must contain this substring", required = false) String valueContains,
+            @ToolParam(description = "Value must match this regular expression", required = false) String valueRegex,
+            @ToolParam(description = "JSON path evaluated on the value, e.g. $.order.id", required = false) String jsonPath,
+            @ToolParam(description = "Expected result of jsonPath; if omitted the path only has to exist", required = false) String jsonValue,
+            @ToolParam(description = "Fields to return, comma-separated: topic, partition, offset, timestamp, key, value, headers, or headers=name1|name2 for selected headers only (default: all)", required = false) String fields,
+            @ToolParam(description = "Start with up to this many records already buffered for the topic (default: 0)", required = false) Integer replay,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            MessageFilter filter = messageFilter(keyEquals, keyRegex, headerName, headerValue, valueContains,
+                    valueRegex, jsonPath, jsonValue);
+            TailSubscription subscription = kafkaService.subscribeTopic(cluster, topicName, filter,
+                    RecordProjection.parse(fields), replay != null ? replay : 0);
+            return toJson(subscription);
+        } catch (Exception e) {
+            log.error("Failed to subscribe to topic {}", topicName, e);
+            return errorResponse("Failed to subscribe to topic '" + topicName + "': " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Get the next records of a subscription opened with subscribeTopic, waiting up to waitSeconds for at least one matching record. Reports records missed because the subscription fell too far behind (droppedRecords), records the filter or projection could not process (skippedRecords) and records still waiting (pendingRecords).")
+    public String pollSubscription(
+            @ToolParam(description = "The subscriptionId returned by subscribeTopic") String subscriptionId,
+            @ToolParam(description = "Maximum number of messages to return (default: 100)", required = false) Integer maxMessages,
+            @ToolParam(description = "Seconds to wait for a matching record when none is pending (default: 10, max: 30)", required = false) Integer waitSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            TailBatch batch = kafkaService.pollSubscription(cluster, subscriptionId,
+                    maxMessages != null ? maxMessages : 100,
+                    Duration.ofSeconds(waitSeconds != null ? Math.max(0, waitSeconds) : 10));
+            return toJson(batch);
+        } catch (Exception e) {
+            log.error("Failed to poll subscription {}", subscriptionId, e);
+            return errorResponse("Failed to poll subscription: " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Stop a subscription opened with subscribeTopic. The topic's shared consumer is closed when its last subscription goes.")
+    public String unsubscribeTopic(
+            @ToolParam(description = "The subscriptionId returned by subscribeTopic") String subscriptionId,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            boolean closed = kafkaService.unsubscribeTopic(cluster, subscriptionId);
+            return toJson(Map.of("success", closed, "subscriptionId", subscriptionId));
+        } catch (Exception e) {
+            log.error("Failed to unsubscribe {}", subscriptionId, e);
+            return errorResponse("Failed to unsubscribe: " + e.getMessage());
+        }
+    }
+
+    // ==================== Key Index ====================
+
+    @Tool(description = "Look up the current value of one or more keys in a compacted topic that has a key index (configured server-side). Answers from a disk-backed index kept current by a background reader, without scanning the topic. Returns per key whether it was found, whether its latest record is a tombstone, and its partition, offset, timestamp and value, plus how far the index lags behind the topic.")
+    public String lookupKey(
+            @ToolParam(description = "The indexed topic") String topicName,
+            @ToolParam(description = "The key to look up", required = false) String key,
+            @ToolParam(description = "JSON array of keys for a batch lookup, e.g. [\"a\", \"b\"]", required = false) String keysJson,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            List<String> keys = new ArrayList<>();
+            if (key != null) {
+                keys.add(key);
+            }
+            if (keysJson != null && !keysJson.isBlank()) {
+                keys.addAll(objectMapper.readValue(keysJson, new TypeReference<List<String>>() {}));
+            }
+            KeyLookupResult result = kafkaService.lookupKeys(cluster, topicName, keys);
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to look up keys in topic {}", topicName, e);
+            return errorResponse("Failed to look up keys: " + e.getMessage());
+        }
+    }
+
+    // ==================== Export / Import ====================
+
+    @Tool(description = "Export a topic, or a partition/offset/time range of it, to a file in the server's transfer directory. Partitions are read in parallel and streamed to disk as NDJSON or compact binary, gzip or zstd compressed, in constant memory; records round-trip byte for byte. Returns records and bytes written, records/sec, bytes/sec, and per-partition progress; an export cut short by its limits keeps what it wrote.")
+    public String exportTopic(
+            @ToolParam(description = "The topic to export") String topicName,
+            @ToolParam(description = "File name inside the transfer directory; must not exist yet (default: <topic>-<timestamp>.ndjson.gz)", required = false) String fileName,
+            @ToolParam(description = "ndjson or binary (default: ndjson)", required = false) String format,
+            @ToolParam(description = "gzip, zstd or none (default: gzip)", required = false) String compression,
+            @ToolParam(description = "Only export this partition", required = false) Integer partition,
+            @ToolParam(description = "Start offset (inclusive) in each exported partition", required = false) Long startOffset,
+            @ToolParam(description = "End offset (exclusive) in each exported partition", required = false) Long endOffset,
+            @ToolParam(description = "Start time: ISO-8601 instant, epoch millis, or duration ago such as PT1H", required = false) String startTime,
+            @ToolParam(description = "End time (exclusive): ISO-8601 instant, epoch millis, or duration ago", required = false) String endTime,
+            @ToolParam(description = "Time limit in seconds (default: 600)", required = false) Integer timeoutSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            long now = System.currentTimeMillis();
+            PartitionScanner.Bounds bounds = new PartitionScanner.Bounds(partition, startOffset, endOffset,
+                    Timestamps.parse(startTime, now), Timestamps.parse(endTime, now));
+            ExportResult result = kafkaService.exportTopic(cluster, topicName, bounds, fileName,
+                    format != null ? format : RecordFiles.NDJSON,
+                    compression != null ? compression : RecordFiles.GZIP,
+                    timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : properties.getTransfer().getMaxTime());
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to export topic {}", topicName, e);
+            return errorResponse("Failed to export topic: " + e.getMessage());
+        }
+    }
+
+    @Tool(description = "Import a file written by exportTopic into a topic. The file is streamed through a batching asynchronous producer, optionally rate limited; format and compression are detected automatically. Returns records read and sent, failures, records/sec and bytes/sec.")
+    public String importTopic(
+            @ToolParam(description = "File name inside the transfer directory, as returned by exportTopic") String fileName,
+            @ToolParam(description = "The topic to send the records to") String topicName,
+            @ToolParam(description = "Maximum records per second (default: unlimited)", required = false) Integer ratePerSecond,
+            @ToolParam(description = "Send each record to the partition it was exported from instead of partitioning by key (default: false)", required = false) Boolean preservePartitions,
+            @ToolParam(description = "Keep the records' original timestamps (default: true)", required = false) Boolean preserveTimestamps,
+            @ToolParam(description = "Time limit in seconds (default: 600)", required = false) Integer timeoutSeconds,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            ImportResult result = kafkaService.importTopic(cluster, fileName, topicName,
+                    ratePerSecond != null ? ratePerSecond : properties.getTransfer().getImportRate(),
+                    preservePartitions != null && preservePartitions,
+                    preserveTimestamps == null || preserveTimestamps,
+                    timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : properties.getTransfer().getMaxTime());
+            return toJson(result);
+        } catch (Exception e) {
+            log.error("Failed to import {} into topic {}", fileName, topicName, e);
+            return errorResponse("Failed to import topic: " + e.getMessage());
+        }
+    }
+
     // ==================== Consumer Group Management ====================
 
     @Tool(description = "List all consumer groups in the Kafka cluster.")
-    public String listConsumerGroups() {
+    public String listConsumerGroups(
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            List<String> groups = kafkaService.listConsumerGroups();
+            List<String> groups = kafkaService.listConsumerGroups(cluster);
             return toJson(Map.of("consumerGroups", groups, "count", groups.size()));
         } catch (Exception e) {
             log.error("Failed to list consumer groups", e);
@@ -161,9 +465,10 @@ public class KafkaToolProvider {
 
     @Tool(description = "Get detailed information about a consumer group including members and their partition assignments.")
     public String describeConsumerGroup(
-            @ToolParam(description = "The consumer group ID to describe") String groupId) {
+            @ToolParam(description = "The consumer group ID to describe") String groupId,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            ConsumerGroupInfo groupInfo = kafkaService.describeConsumerGroup(groupId);
+            ConsumerGroupInfo groupInfo = kafkaService.describeConsumerGroup(cluster, groupId);
             return toJson(groupInfo);
         } catch (Exception e) {
             log.error("Failed to describe consumer group {}", groupId, e);
@@ -171,12 +476,40 @@ public class KafkaToolProvider {
         }
     }
 
+    @Tool(description = "Get consumer lag (log-end offset minus committed offset) for one consumer group, for all groups matching a regex, or for every group. Offsets for all groups are fetched in one batched pass; results are sorted by total lag, worst first, with per-topic and per-partition breakdowns. Groups and partitions whose offsets cannot be listed are reported under errors; such partitions show a null lag.")
+    public String consumerGroupLag(
+            @ToolParam(description = "A single consumer group ID", required = false) String groupId,
+            @ToolParam(description = "Regular expression that group IDs must fully match (ignored when groupId is set)", required = false) String groupPattern,
+            @ToolParam(description = "Maximum number of groups to return, worst lag first (default: 50)", required = false) Integer maxGroups,
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
+        try {
+            ConsumerGroupLagReport report = kafkaService.consumerGroupLag(cluster, groupId, groupPattern,
+                    maxGroups != null ? maxGroups : 50);
+            return toJson(report);
+        } catch (Exception e) {
+            log.error("Failed to compute consumer group lag", e);
+            return errorResponse("Failed to compute consumer group lag: " + e.getMessage());
+        }
+    }
+
     // ==================== Cluster Information ====================
 
+    @Tool(description = "List the Kafka clusters this server can reach. Pass a cluster's name as the cluster parameter of any other tool; without it tools use the default cluster.")
+    public String listClusters() {
+        try {
+            List<ClusterSummary> clusters = kafkaService.listClusters();
+            return toJson(Map.of("clusters", clusters, "count", clusters.size()));
+        } catch (Exception e) {
+            log.error("Failed to list clusters", e);
+            return errorResponse("Failed to list clusters: " + e.getMessage());
+        }
+    }
+
     @Tool(description = "Get information about the Kafka cluster including broker details and controller.")
-    public String describeCluster() {
+    public String describeCluster(
+            @ToolParam(description = CLUSTER, required = false) String cluster) {
         try {
-            ClusterInfo clusterInfo = kafkaService.describeCluster();
+            ClusterInfo clusterInfo = kafkaService.describeCluster(cluster);
             return toJson(clusterInfo);
         } catch (Exception e) {
             log.error("Failed to describe cluster", e);
@@ -186,15 +519,39 @@ public class KafkaToolProvider {
 
     // ==================== Utility Methods ====================
 
+    /**
+     * Topic names from a comma-separated list; empty when absent.
+     */
+    private static List<String> topicList(String topicNames) {
+        return topicNames == null ? List.of() : Arrays.stream(topicNames.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+    }
+
+    /**
+     * The searchMessages and subscribeTopic criteria, decoded with the configured payload decoder.
+     */
+    private MessageFilter messageFilter(String keyEquals, String keyRegex, String headerName, String headerValue,
+                                        String valueContains, String valueRegex, String jsonPath, String jsonValue) {
+        return MessageFilter.builder()
+                .keyEquals(keyEquals)
+                .keyRegex(keyRegex)
+                .headerName(headerName)
+                .headerValue(headerValue)
+                .valueContains(valueContains)
+                .valueRegex(valueRegex)
+                .jsonPath(jsonPath)
+                .jsonValue(jsonValue)
+                .decoder(payloadDecoder)
+                .build();
+    }
+
     private String toJson(Object obj) {
-        try {
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
-        } catch (JsonProcessingException e) {
-            return "{\"error\": \"Failed to serialize response\"}";
-        }
+        return responseRenderer.render(obj);
     }
 
     private String errorResponse(String message) {
-        return toJson(Map.of("success", false, "error", message));
+        return responseRenderer.renderError(message);
     }
 }
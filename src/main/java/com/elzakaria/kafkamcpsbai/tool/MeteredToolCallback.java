@@ -0,0 +1,102 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call of a tool ({@code kafka.mcp.tool.calls}, tagged with the tool name and {@code success} or
+ * {@code error}) and records the size of what it returned ({@code kafka.mcp.tool.response.size}). A call counts
+ * as an error when it throws or returns a {@link ResponseRenderer#ERROR_PREFIX error response}. The first
+ * successful call of any tool is reported to {@link FirstToolResponse}.
+ */
+public class MeteredToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final String tool;
+    private final FirstToolResponse firstResponse;
+    private final Timer success;
+    private final Timer error;
+    private final DistributionSummary responseSize;
+
+    public MeteredToolCallback(ToolCallback delegate, FirstToolResponse firstResponse, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.tool = delegate.getToolDefinition().name();
+        this.firstResponse = firstResponse;
+        this.success = callTimer(tool, "success", registry);
+        this.error = callTimer(tool, "error", registry);
+        this.responseSize = DistributionSummary.builder("kafka.mcp.tool.response.size")
+                .description("UTF-8 size of MCP tool responses")
+                .baseUnit("bytes")
+                .tag("tool", tool)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer callTimer(String tool, String outcome, MeterRegistry registry) {
+        return Timer.builder("kafka.mcp.tool.calls")
+                .description("MCP tool call latency")
+                .tag("tool", tool)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        long start = System.nanoTime();
+        String result = null;
+        try {
+            result = toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+            return result;
+        } finally {
+            boolean failed = result == null || result.startsWith(ResponseRenderer.ERROR_PREFIX);
+            (failed ? error : success).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!failed) {
+                firstResponse.record(tool);
+            }
+            if (result != null) {
+                responseSize.record(utf8Length(result));
+            }
+        }
+    }
+
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
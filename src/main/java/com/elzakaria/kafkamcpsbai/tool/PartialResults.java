@@ -0,0 +1,56 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+
+/**
+ * Hands parts of a tool's result to the MCP client while the call is still running, as {@code info} log
+ * notifications from a logger named after the tool, carrying the rendered JSON of the part. Over Streamable HTTP
+ * they travel on the call's own response stream ahead of the result; clients that do not want them raise their
+ * log level. The full result is returned as usual at the end, so a client that ignores notifications misses
+ * nothing. Without an MCP session (e.g. a call not made through the server) parts are dropped.
+ */
+@Slf4j
+final class PartialResults {
+
+    private static final PartialResults NONE = new PartialResults(null, null, null);
+
+    private final McpSyncServerExchange exchange;
+    private final String tool;
+    private final ResponseRenderer responseRenderer;
+
+    private PartialResults(McpSyncServerExchange exchange, String tool, ResponseRenderer responseRenderer) {
+        this.exchange = exchange;
+        this.tool = tool;
+        this.responseRenderer = responseRenderer;
+    }
+
+    static PartialResults of(ToolContext toolContext, String tool, ResponseRenderer responseRenderer,
+                             boolean enabled) {
+        if (!enabled || toolContext == null) {
+            return NONE;
+        }
+        return McpToolUtils.getMcpExchange(toolContext)
+                .map(exchange -> new PartialResults(exchange, tool, responseRenderer))
+                .orElse(NONE);
+    }
+
+    void send(Object part) {
+        if (exchange == null) {
+            return;
+        }
+        try {
+            exchange.loggingNotification(McpSchema.LoggingMessageNotification.builder()
+                    .level(McpSchema.LoggingLevel.INFO)
+                    .logger(tool)
+                    .data(responseRenderer.render(part))
+                    .build());
+        } catch (RuntimeException e) {
+            // The client may have gone away; the call still completes and returns its result
+            log.debug("Could not send a partial result of {}: {}", tool, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns tool results into the JSON text returned to the MCP client.
+ * <p>
+ * Responses are written compact (unless {@code kafka.mcp.response.pretty} is set) by a streaming generator, and
+ * each one is held to {@code kafka.mcp.response.max-bytes}: elements of the outermost lists are written one at a
+ * time and, once the budget is exceeded, the offending element is rewound and the rest are not serialized at all;
+ * their size is estimated from the average of the elements written before. String
+ * values longer than {@code kafka.mcp.response.max-value-length} are cut with a marker. When anything was dropped
+ * or cut, an object response gets a trailing {@code "truncation"} field saying how much. Rendering time is
+ * published as {@code kafka.mcp.response.render}.
+ */
+@Slf4j
+@Component
+public class ResponseRenderer {
+
+    /**
+     * Every error response starts with this, whatever the pretty setting.
+     */
+    public static final String ERROR_PREFIX = "{\"success\":false,";
+
+    private final ObjectMapper objectMapper;
+    private final KafkaMcpProperties.Response properties;
+    private final Timer renderTimer;
+
+    public ResponseRenderer(KafkaMcpProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getResponse();
+        this.renderTimer = Timer.builder("kafka.mcp.response.render")
+                .description("Time spent serializing tool results to JSON")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        SimpleModule module = new SimpleModule("kafka-mcp-response");
+        module.addSerializer(String.class, new TruncatingStringSerializer());
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifyCollectionSerializer(SerializationConfig config, CollectionType valueType,
+                                                                BeanDescription beanDesc,
+                                                                JsonSerializer<?> serializer) {
+                return new BudgetedCollectionSerializer(serializer);
+            }
+        });
+        this.objectMapper = new ObjectMapper().registerModule(module);
+    }
+
+    public String render(Object result) {
+        long start = System.nanoTime();
+        try {
+            return doRender(result);
+        } finally {
+            renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String doRender(Object result) {
+        BudgetedOutputStream out = new BudgetedOutputStream();
+        RenderState state = new RenderState(out, properties.getMaxBytes().toBytes(), properties.getMaxValueLength());
+        try (JsonGenerator gen = objectMapper.createGenerator(out)) {
+            if (properties.isPretty()) {
+                gen.useDefaultPrettyPrinter();
+            }
+            SerializerProvider provider = objectMapper.getSerializerProviderInstance();
+            provider.setAttribute(RenderState.class, state);
+            writeRoot(result, gen, provider, state);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to render tool response of type {}", result.getClass().getName(), e);
+            return renderError("Failed to serialize response: " + e.getMessage());
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Renders {@code {"success":false,"error":message}}; always compact and never truncated.
+     */
+    public String renderError(String message) {
+        try {
+            return ERROR_PREFIX + "\"error\":" + objectMapper.writeValueAsString(String.valueOf(message)) + "}";
+        } catch (IOException e) {
+            return ERROR_PREFIX + "\"error\":\"Failed to serialize error message\"}";
+        }
+    }
+
+    private void writeRoot(Object result, JsonGenerator gen, SerializerProvider provider, RenderState state)
+            throws IOException {
+        JsonSerializer<Object> fields = result instanceof Map
+                ? null
+                : provider.findValueSerializer(result.getClass(), null).unwrappingSerializer(NameTransformer.NOP);
+        if (!(result instanceof Map) && (fields == null || !fields.isUnwrappingSerializer())) {
+            // Not an object: nowhere to attach the truncation summary
+            provider.defaultSerializeValue(result, gen);
+            return;
+        }
+
+        gen.writeStartObject();
+        if (result instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                gen.writeFieldName(String.valueOf(entry.getKey()));
+                provider.defaultSerializeValue(entry.getValue(), gen);
+            }
+        } else {
+            fields.serialize(result, gen, provider);
+        }
+        if (state.truncated()) {
+            gen.writeFieldName("truncation");
+            gen.writeStartObject();
+            gen.writeNumberField("maxBytes", state.maxBytes);
+            gen.writeNumberField("droppedItems", state.droppedItems);
+            gen.writeNumberField("droppedBytes", state.droppedBytes);
+            gen.writeNumberField("truncatedValues", state.truncatedValues);
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Per-response bookkeeping, passed to the serializers as a provider attribute.
+     */
+    private static final class RenderState {
+        final BudgetedOutputStream out;
+        final long maxBytes;
+        final int maxValueLength;
+        int depth;
+        long droppedItems;
+        long droppedBytes;
+        long truncatedValues;
+
+        RenderState(BudgetedOutputStream out, long maxBytes, int maxValueLength) {
+            this.out = out;
+            this.maxBytes = maxBytes;
+            this.maxValueLength = maxValueLength;
+        }
+
+        boolean truncated() {
+            return droppedItems > 0 || truncatedValues > 0;
+        }
+    }
+
+    /**
+     * Output buffer that can be rewound to an earlier size.
+     */
+    private static final class BudgetedOutputStream extends ByteArrayOutputStream {
+
+        BudgetedOutputStream() {
+            super(8192);
+        }
+
+        void rewind(int size) {
+            count = size;
+        }
+    }
+
+    /**
+     * Writes the outermost collections element by element against the byte budget; nested collections and
+     * rendering outside {@link #render(Object)} use the regular serializer.
+     */
+    private static final class BudgetedCollectionSerializer extends StdSerializer<Collection<?>>
+            implements ContextualSerializer, ResolvableSerializer {
+
+        private final JsonSerializer<Object> delegate;
+
+        @SuppressWarnings("unchecked")
+        BudgetedCollectionSerializer(JsonSerializer<?> delegate) {
+            super(Collection.class, false);
+            this.delegate = (JsonSerializer<Object>) delegate;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer resolvable) {
+                resolvable.resolve(provider);
+            }
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            JsonSerializer<?> contextual = provider.handleSecondaryContextualization(delegate, property);
+            return contextual == delegate ? this : new BudgetedCollectionSerializer(contextual);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Collection<?> value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public void serialize(Collection<?> value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            RenderState state = (RenderState) provider.getAttribute(RenderState.class);
+            if (state == null || state.depth > 0) {
+                delegate.serialize(value, gen, provider);
+                return;
+            }
+
+            BudgetedOutputStream out = state.out;
+            state.depth++;
+            try {
+                gen.writeStartArray(value, value.size());
+                gen.flush();
+                int start = out.size();
+                int written = 0;
+                for (Object element : value) {
+                    int mark = out.size();
+                    provider.defaultSerializeValue(element, gen);
+                    gen.flush();
+                    if (out.size() > state.maxBytes) {
+                        // The rest is skipped, not serialized: estimate it from the average element so far
+                        long average = (out.size() - start) / (written + 1);
+                        long rest = value.size() - written - 1;
+                        state.droppedItems += 1 + rest;
+                        state.droppedBytes += out.size() - mark + rest * average;
+                        out.rewind(mark);
+                        break;
+                    }
+                    written++;
+                }
+                gen.writeEndArray();
+            } finally {
+                state.depth--;
+            }
+        }
+    }
+
+    /**
+     * Cuts long strings inside {@link #render(Object)}; elsewhere strings are written unchanged.
+     */
+    private static final class TruncatingStringSerializer extends StdSerializer<String> {
+
+        TruncatingStringSerializer() {
+            super(String.class);
+        }
+
+        @Override
+        public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            RenderState state = (RenderState) provider.getAttribute(RenderState.class);
+            if (state == null || value.length() <= state.maxValueLength) {
+                gen.writeString(value);
+                return;
+            }
+            int end = state.maxValueLength;
+            if (end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) {
+                end--;
+            }
+            state.truncatedValues++;
+            gen.writeString(value.substring(0, end) + "…[truncated " + (value.length() - end) + " chars]");
+        }
+    }
+}
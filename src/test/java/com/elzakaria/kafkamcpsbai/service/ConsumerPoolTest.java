@@ -0,0 +1,194 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Leasing, reuse, fair waiting and idle eviction of pooled consumers. Consumers are created but never connect:
+ * nothing here polls.
+ */
+class ConsumerPoolTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private ConsumerPool pool;
+
+    @AfterEach
+    void closePool() {
+        executor.shutdownNow();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void returnedConsumerIsReusedMostRecentFirst() throws Exception {
+        pool = pool(2, Duration.ofSeconds(1), Duration.ofMinutes(5));
+
+        ConsumerPool.Lease first = pool.borrow();
+        ConsumerPool.Lease second = pool.borrow();
+        assertThat(second.consumer()).isNotSameAs(first.consumer());
+        first.close();
+        second.close();
+        assertThat(pool.idleCount()).isEqualTo(2);
+
+        try (ConsumerPool.Lease again = pool.borrow()) {
+            assertThat(again.consumer()).isSameAs(second.consumer());
+            assertThat(pool.idleCount()).isEqualTo(1);
+        }
+        assertThat(meterRegistry.get("kafka.mcp.consumer.borrow").tag("consumer", "created").timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("kafka.mcp.consumer.borrow").tag("consumer", "reused").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void returnedConsumerIsUnassigned() throws Exception {
+        pool = pool(1, Duration.ofSeconds(1), Duration.ofMinutes(5));
+        Consumer<byte[], byte[]> consumer;
+        try (ConsumerPool.Lease lease = pool.borrow()) {
+            consumer = lease.consumer();
+            consumer.assign(List.of(new TopicPartition("orders", 0)));
+        }
+
+        assertThat(consumer.assignment()).isEmpty();
+    }
+
+    @Test
+    void invalidatedConsumerIsClosedInsteadOfReused() throws Exception {
+        pool = pool(1, Duration.ofSeconds(1), Duration.ofMinutes(5));
+        Consumer<byte[], byte[]> invalidated;
+        try (ConsumerPool.Lease lease = pool.borrow()) {
+            invalidated = lease.consumer();
+            lease.invalidate();
+        }
+
+        assertThat(pool.idleCount()).isZero();
+        assertThatThrownBy(invalidated::assignment).isInstanceOf(IllegalStateException.class);
+        try (ConsumerPool.Lease lease = pool.borrow()) {
+            assertThat(lease.consumer()).isNotSameAs(invalidated);
+        }
+    }
+
+    @Test
+    void closingALeaseTwiceReturnsItOnce() throws Exception {
+        pool = pool(1, Duration.ofMillis(100), Duration.ofMinutes(5));
+        ConsumerPool.Lease lease = pool.borrow();
+        lease.close();
+        lease.close();
+
+        try (ConsumerPool.Lease held = pool.borrow()) {
+            assertThatThrownBy(pool::borrow).isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("pool size 1");
+        }
+    }
+
+    @Test
+    void exhaustedPoolFailsAtTheCallersDeadline() throws Exception {
+        pool = pool(1, Duration.ofSeconds(30), Duration.ofMinutes(5));
+        try (ConsumerPool.Lease held = pool.borrow()) {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(100), pool::borrow))
+                    .isInstanceOf(TimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(WAIT);
+        }
+    }
+
+    @Test
+    void waitingBorrowersAreServedInArrivalOrder() throws Exception {
+        pool = pool(1, Duration.ofSeconds(30), Duration.ofMinutes(5));
+        List<String> order = new CopyOnWriteArrayList<>();
+        ConsumerPool.Lease held = pool.borrow();
+
+        Future<?> first = executor.submit(() -> borrowAndRecord("first", order));
+        await().atMost(WAIT).until(() -> waiting() == 1);
+        Future<?> second = executor.submit(() -> borrowAndRecord("second", order));
+        await().atMost(WAIT).until(() -> waiting() == 2);
+        held.close();
+
+        first.get(WAIT.toSeconds(), TimeUnit.SECONDS);
+        second.get(WAIT.toSeconds(), TimeUnit.SECONDS);
+        assertThat(order).containsExactly("first", "second");
+    }
+
+    @Test
+    void idleConsumersAreEvictedAfterTheIdleTimeout() throws Exception {
+        pool = pool(2, Duration.ofSeconds(1), Duration.ofMillis(50));
+        ConsumerPool.Lease lease = pool.borrow();
+        Consumer<byte[], byte[]> consumer = lease.consumer();
+        lease.close();
+
+        pool.evictIdle();
+        assertThat(pool.idleCount()).isEqualTo(1);
+
+        Thread.sleep(100);
+        pool.evictIdle();
+        assertThat(pool.idleCount()).isZero();
+        assertThatThrownBy(consumer::assignment).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void closedPoolRejectsBorrowsAndClosesReturnedConsumers() throws Exception {
+        pool = pool(2, Duration.ofSeconds(1), Duration.ofMinutes(5));
+        pool.borrow().close();
+        ConsumerPool.Lease outstanding = pool.borrow();
+
+        pool.close();
+        outstanding.close();
+
+        assertThat(pool.idleCount()).isZero();
+        assertThatThrownBy(outstanding.consumer()::assignment).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(pool::borrow).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("closed");
+    }
+
+    private Void borrowAndRecord(String name, List<String> order) throws InterruptedException {
+        try (ConsumerPool.Lease lease = pool.borrow()) {
+            order.add(name);
+        }
+        return null;
+    }
+
+    /**
+     * Threads parked in {@link ConsumerPool#borrow()}; the pool's gauges only count consumers, not waiters.
+     */
+    private static long waiting() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getState() == Thread.State.TIMED_WAITING)
+                .filter(thread -> Stream.of(thread.getStackTrace()).anyMatch(frame ->
+                        frame.getClassName().equals(ConsumerPool.class.getName())
+                                && frame.getMethodName().equals("borrow")))
+                .count();
+    }
+
+    private ConsumerPool pool(int size, Duration borrowTimeout, Duration idleTimeout) {
+        KafkaMcpProperties.Consumer properties = new KafkaMcpProperties.Consumer();
+        properties.setPoolSize(size);
+        properties.setBorrowTimeout(borrowTimeout);
+        properties.setIdleTimeout(idleTimeout);
+        return new ConsumerPool(Map.of(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092"), properties,
+                meterRegistry);
+    }
+}
@@ -0,0 +1,93 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Top keys of a skewed stream, from one sketch and from merged per-thread sketches.
+ */
+class HeavyHittersTest {
+
+    private static final int HOT_KEYS = 5;
+    private static final int ROUNDS = 1000;
+    private static final int COLD_KEYS_PER_ROUND = 10;
+
+    @Test
+    void findsTheMostFrequentKeysOfASkewedStream() {
+        HeavyHitters sketch = new HeavyHitters(10);
+        for (int round = 0; round < ROUNDS; round++) {
+            feed(sketch, round);
+        }
+
+        List<HeavyHitters.Estimate> top = sketch.top(HOT_KEYS);
+
+        assertThat(top).extracting(estimate -> text(estimate.key()))
+                .containsExactly("hot-0", "hot-1", "hot-2", "hot-3", "hot-4");
+        for (int k = 0; k < HOT_KEYS; k++) {
+            // Count-min estimates overcount by the colliding cold keys, never undercount
+            assertThat(top.get(k).count()).isBetween(count(k), count(k) + 20);
+        }
+    }
+
+    @Test
+    void mergedSketchesMatchOneSketchOfTheWholeStream() {
+        HeavyHitters all = new HeavyHitters(10);
+        HeavyHitters even = new HeavyHitters(10);
+        HeavyHitters odd = new HeavyHitters(10);
+        for (int round = 0; round < ROUNDS; round++) {
+            feed(all, round);
+            feed(round % 2 == 0 ? even : odd, round);
+        }
+
+        even.merge(odd);
+
+        List<HeavyHitters.Estimate> merged = even.top(HOT_KEYS);
+        List<HeavyHitters.Estimate> expected = all.top(HOT_KEYS);
+        assertThat(merged).extracting(estimate -> text(estimate.key()))
+                .containsExactlyElementsOf(expected.stream().map(estimate -> text(estimate.key())).toList());
+        assertThat(merged).extracting(HeavyHitters.Estimate::count)
+                .containsExactlyElementsOf(expected.stream().map(HeavyHitters.Estimate::count).toList());
+    }
+
+    @Test
+    void returnsFewerThanAskedWhenFewerKeysWereSeen() {
+        HeavyHitters sketch = new HeavyHitters(10);
+        add(sketch, "a");
+        add(sketch, "b");
+        add(sketch, "b");
+
+        assertThat(sketch.top(5)).extracting(estimate -> text(estimate.key())).containsExactly("b", "a");
+    }
+
+    /**
+     * One round of the stream: hot key {@code k} appears in the first {@code 1000 - 100k} rounds, and ten keys
+     * that are never seen again.
+     */
+    private static void feed(HeavyHitters sketch, int round) {
+        for (int k = 0; k < HOT_KEYS; k++) {
+            if (round < count(k)) {
+                add(sketch, "hot-" + k);
+            }
+        }
+        for (int i = 0; i < COLD_KEYS_PER_ROUND; i++) {
+            add(sketch, "cold-" + (round * COLD_KEYS_PER_ROUND + i));
+        }
+    }
+
+    private static long count(int hotKey) {
+        return ROUNDS - 100L * hotKey;
+    }
+
+    private static void add(HeavyHitters sketch, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        sketch.add(bytes, HyperLogLog.hash(bytes));
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+/**
+ * Distinct-count estimates of small and large key sets, duplicates and merged sketches.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void estimatesLargeCardinalitiesWithinAFewPercent() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(HyperLogLog.hash(key(i)));
+        }
+
+        // About 0.8% standard error, so 3% is almost four of them
+        assertThat(sketch.estimate()).isCloseTo(100_000L, withinPercentage(3));
+    }
+
+    @Test
+    void estimatesSmallCardinalitiesByLinearCounting() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertThat(sketch.estimate()).isZero();
+
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(HyperLogLog.hash(key(i)));
+        }
+
+        assertThat(sketch.estimate()).isCloseTo(1000L, withinPercentage(2));
+    }
+
+    @Test
+    void ignoresDuplicates() {
+        HyperLogLog once = new HyperLogLog();
+        HyperLogLog fiveTimes = new HyperLogLog();
+        for (int i = 0; i < 10_000; i++) {
+            once.add(HyperLogLog.hash(key(i)));
+            for (int j = 0; j < 5; j++) {
+                fiveTimes.add(HyperLogLog.hash(key(i)));
+            }
+        }
+
+        assertThat(fiveTimes.estimate()).isEqualTo(once.estimate());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        // 0..59999 and 40000..99999 overlap in 20000 keys
+        for (int i = 0; i < 100_000; i++) {
+            long hash = HyperLogLog.hash(key(i));
+            if (i < 60_000) {
+                first.add(hash);
+            }
+            if (i >= 40_000) {
+                second.add(hash);
+            }
+            all.add(hash);
+        }
+
+        first.merge(second);
+
+        assertThat(first.estimate()).isEqualTo(all.estimate());
+        assertThat(first.estimate()).isCloseTo(100_000L, withinPercentage(3));
+    }
+
+    @Test
+    void hashesEveryByteOfTheKey() {
+        assertThat(HyperLogLog.hash(bytes("key-12345678")))
+                .isNotEqualTo(HyperLogLog.hash(bytes("key-12345679")))
+                .isNotEqualTo(HyperLogLog.hash(bytes("key-12345678 ")));
+        assertThat(HyperLogLog.hash(new byte[0])).isNotEqualTo(HyperLogLog.hash(new byte[1]));
+        assertThat(HyperLogLog.hash(bytes("key-1"))).isEqualTo(HyperLogLog.hash(bytes("key-1")));
+    }
+
+    private static byte[] key(int i) {
+        return bytes("key-" + i);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
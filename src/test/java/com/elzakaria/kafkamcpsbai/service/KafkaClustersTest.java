@@ -0,0 +1,181 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ClusterSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Connecting named clusters on demand, leasing them to tool calls and closing them once idle. Clients are created
+ * against an address that is never contacted.
+ */
+class KafkaClustersTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private KafkaClusters clusters;
+
+    @AfterEach
+    void closeClusters() {
+        executor.shutdownNow();
+        if (clusters != null) {
+            clusters.close();
+        }
+    }
+
+    @Test
+    void namedClusterIsConnectedOnFirstUseAndReused() {
+        clusters = clusters(Duration.ofMinutes(10));
+        assertThat(connected()).isZero();
+
+        KafkaCluster remote = clusters.get("remote");
+
+        assertThat(remote.name()).isEqualTo("remote");
+        assertThat(clusters.get("remote")).isSameAs(remote);
+        assertThat(connected()).isEqualTo(1);
+        assertThat(clusters.list()).extracting(ClusterSummary::getName, ClusterSummary::isConnected)
+                .containsExactly(tuple("default", true), tuple("remote", true));
+    }
+
+    @Test
+    void unknownClusterIsRejected() {
+        clusters = clusters(Duration.ofMinutes(10));
+
+        assertThatThrownBy(() -> clusters.get("staging")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("default, remote");
+    }
+
+    @Test
+    void idleClusterIsClosedAndConnectedAgainOnNextUse() throws Exception {
+        clusters = clusters(Duration.ZERO);
+        KafkaCluster remote = clusters.get("remote");
+        Thread.sleep(5);
+
+        clusters.evictIdle();
+
+        assertThat(connected()).isZero();
+        assertThatThrownBy(() -> remote.consumerPool().borrow()).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("closed");
+        assertThat(clusters.get("remote")).isNotSameAs(remote);
+    }
+
+    @Test
+    void leasedClusterIsNeverClosed() throws Exception {
+        clusters = clusters(Duration.ZERO);
+
+        KafkaCluster leased = KafkaClusters.leasing(() -> {
+            KafkaCluster remote = clusters.get("remote");
+            Thread.sleep(5);
+            // Housekeeping runs on its own thread while the call is still using the cluster
+            executor.submit(clusters::evictIdle).get(WAIT.toSeconds(), TimeUnit.SECONDS);
+
+            assertThat(connected()).isEqualTo(1);
+            try (ConsumerPool.Lease lease = remote.consumerPool().borrow()) {
+                assertThat(lease.consumer()).isNotNull();
+            }
+            assertThat(clusters.get("remote")).isSameAs(remote);
+            return remote;
+        });
+        Thread.sleep(5);
+
+        // Once the call has returned the cluster is idle like any other
+        clusters.evictIdle();
+        assertThat(connected()).isZero();
+        assertThatThrownBy(() -> leased.consumerPool().borrow()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void nestedCallsShareTheOutermostLease() throws Exception {
+        clusters = clusters(Duration.ZERO);
+
+        KafkaClusters.leasing(() -> {
+            KafkaClusters.leasing(() -> clusters.get("remote"));
+            clusters.get("remote");
+            Thread.sleep(5);
+            clusters.evictIdle();
+            // The inner call returning did not release the outer call's lease
+            assertThat(connected()).isEqualTo(1);
+            return null;
+        });
+        Thread.sleep(5);
+
+        clusters.evictIdle();
+        assertThat(connected()).isZero();
+    }
+
+    @Test
+    void idleTimeCountsFromTheEndOfTheCall() throws Exception {
+        clusters = clusters(Duration.ofMillis(200));
+
+        KafkaClusters.leasing(() -> {
+            clusters.get("remote");
+            Thread.sleep(300);
+            return null;
+        });
+        clusters.evictIdle();
+
+        assertThat(connected()).isEqualTo(1);
+    }
+
+    @Test
+    void closedClustersRejectCalls() {
+        clusters = clusters(Duration.ofMinutes(10));
+        KafkaCluster remote = clusters.get("remote");
+
+        clusters.close();
+
+        assertThat(connected()).isZero();
+        assertThatThrownBy(() -> remote.consumerPool().borrow()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> clusters.get("remote")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void namedClusterMustNotRedefineTheDefaultOrLackAnAddress() {
+        KafkaMcpProperties redefined = properties(Duration.ofMinutes(10));
+        redefined.getClusters().put("default", redefined.getClusters().get("remote"));
+        KafkaMcpProperties unaddressed = properties(Duration.ofMinutes(10));
+        unaddressed.getClusters().get("remote").setBootstrapServers(" ");
+
+        assertThatThrownBy(() -> new KafkaClusters(null, redefined, PayloadDecoder.PLAIN,
+                new ReadMetrics(meterRegistry), meterRegistry)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new KafkaClusters(null, unaddressed, PayloadDecoder.PLAIN,
+                new ReadMetrics(meterRegistry), meterRegistry)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("kafka.mcp.clusters.remote.bootstrap-servers");
+    }
+
+    private KafkaClusters clusters(Duration idleTimeout) {
+        return new KafkaClusters(null, properties(idleTimeout), PayloadDecoder.PLAIN, new ReadMetrics(meterRegistry),
+                meterRegistry);
+    }
+
+    private KafkaMcpProperties properties(Duration idleTimeout) {
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        KafkaMcpProperties.Cluster cluster = new KafkaMcpProperties.Cluster();
+        cluster.setBootstrapServers("localhost:9092");
+        properties.getClusters().put("remote", cluster);
+        properties.setClusterIdleTimeout(idleTimeout);
+        properties.getKeyIndex().setDirectory(directory.resolve("key-index"));
+        return properties;
+    }
+
+    private double connected() {
+        return meterRegistry.get("kafka.mcp.clusters.connected").gauge().value();
+    }
+}
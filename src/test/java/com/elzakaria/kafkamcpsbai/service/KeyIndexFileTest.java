@@ -0,0 +1,183 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The on-disk key index: lookups, tombstones, both kinds of rebuild and reopening from a checkpoint.
+ */
+class KeyIndexFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void returnsTheLatestRecordOfEachKey() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 0, 100, bytes("a"), bytes("a0"));
+            index.put(1, 0, 101, bytes("b"), bytes("b0"));
+            index.put(0, 1, 102, bytes("a"), bytes("a1"));
+
+            KeyIndexFile.Entry a = index.get(bytes("a"));
+            assertThat(a.partition()).isZero();
+            assertThat(a.offset()).isEqualTo(1);
+            assertThat(a.timestamp()).isEqualTo(102);
+            assertThat(text(a.value())).isEqualTo("a1");
+            assertThat(a.deleted()).isFalse();
+            assertThat(text(index.get(bytes("b")).value())).isEqualTo("b0");
+            assertThat(index.get(bytes("missing"))).isNull();
+            assertThat(index.count()).isEqualTo(2);
+            assertThat(index.nextOffsets()).isEqualTo(Map.of(0, 2L, 1, 1L));
+        }
+    }
+
+    @Test
+    void ignoresOlderRecordsOfTheSamePartition() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 5, 100, bytes("a"), bytes("new"));
+            // Re-read after a restart from an earlier checkpoint
+            index.put(0, 3, 90, bytes("a"), bytes("old"));
+
+            assertThat(index.get(bytes("a")).offset()).isEqualTo(5);
+            assertThat(text(index.get(bytes("a")).value())).isEqualTo("new");
+        }
+    }
+
+    @Test
+    void tombstoneMarksTheKeyDeletedUntilItIsWrittenAgain() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 0, 100, bytes("a"), bytes("a0"));
+            index.put(0, 1, 101, bytes("a"), null);
+
+            KeyIndexFile.Entry deleted = index.get(bytes("a"));
+            assertThat(deleted.deleted()).isTrue();
+            assertThat(deleted.value()).isNull();
+            assertThat(deleted.offset()).isEqualTo(1);
+
+            index.put(0, 2, 102, bytes("a"), bytes("a2"));
+            assertThat(index.get(bytes("a")).deleted()).isFalse();
+            assertThat(text(index.get(bytes("a")).value())).isEqualTo("a2");
+            assertThat(index.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void growsTheTableWhenItFillsUp() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                index.put(i % 3, i / 3, i, bytes("key-" + i), bytes("value-" + i));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                assertThat(text(index.get(bytes("key-" + i)).value())).isEqualTo("value-" + i);
+            }
+            assertThat(index.count()).isEqualTo(1000);
+            // 4 slots doubled to 2048 in nine rebuilds; old generations are deleted
+            assertThat(files()).containsExactlyInAnyOrder("checkpoint", "index-10.bin", "values-10.bin");
+            assertThat(Files.size(directory.resolve("index-10.bin"))).isEqualTo(2048 * 16);
+        }
+    }
+
+    @Test
+    void rewritesTheLogWhenMostOfItIsSuperseded() throws IOException {
+        byte[] megabyte = new byte[1 << 20];
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(1, 0, 0, bytes("other"), bytes("kept"));
+            for (int i = 0; i < 70; i++) {
+                megabyte[0] = (byte) i;
+                index.put(0, i, i, bytes("big"), megabyte);
+            }
+
+            // More than 64 MB of superseded entries, and more than the live ones, forced one rewrite
+            assertThat(files()).contains("index-2.bin", "values-2.bin").doesNotContain("values-1.bin");
+            assertThat(Files.size(directory.resolve("values-2.bin"))).isLessThan(16L << 20);
+            KeyIndexFile.Entry big = index.get(bytes("big"));
+            assertThat(big.offset()).isEqualTo(69);
+            assertThat(big.value()[0]).isEqualTo((byte) 69);
+            assertThat(text(index.get(bytes("other")).value())).isEqualTo("kept");
+            assertThat(index.count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void reopensAtItsLastCheckpoint() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 0, 100, bytes("a"), bytes("a0"));
+            index.put(1, 0, 101, bytes("b"), null);
+            index.advance(2, 7);
+            index.checkpoint();
+        }
+
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            assertThat(index.count()).isEqualTo(2);
+            assertThat(index.nextOffsets()).isEqualTo(Map.of(0, 1L, 1, 1L, 2, 7L));
+            assertThat(text(index.get(bytes("a")).value())).isEqualTo("a0");
+            assertThat(index.get(bytes("b")).deleted()).isTrue();
+        }
+    }
+
+    @Test
+    void keepsSlotsWrittenAfterTheLastCheckpoint() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 0, 100, bytes("a"), bytes("a0"));
+            index.checkpoint();
+            index.put(0, 1, 101, bytes("a"), bytes("a1"));
+            index.put(0, 2, 102, bytes("c"), bytes("c2"));
+        }
+
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            // Offsets are those of the checkpoint, so the reader re-reads offsets 1 and 2
+            assertThat(index.nextOffsets()).isEqualTo(Map.of(0, 1L));
+            assertThat(text(index.get(bytes("a")).value())).isEqualTo("a1");
+            assertThat(text(index.get(bytes("c")).value())).isEqualTo("c2");
+            assertThat(index.count()).isEqualTo(2);
+
+            index.put(0, 1, 101, bytes("a"), bytes("a1"));
+            index.put(0, 2, 102, bytes("c"), bytes("c2"));
+            index.put(0, 3, 103, bytes("d"), bytes("d3"));
+
+            assertThat(index.count()).isEqualTo(3);
+            assertThat(index.nextOffsets()).isEqualTo(Map.of(0, 4L));
+            assertThat(index.get(bytes("a")).offset()).isEqualTo(1);
+            assertThat(text(index.get(bytes("d")).value())).isEqualTo("d3");
+        }
+    }
+
+    @Test
+    void startsEmptyWhenTheCheckpointIsUnreadable() throws IOException {
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            index.put(0, 0, 100, bytes("a"), bytes("a0"));
+            index.checkpoint();
+        }
+        Files.write(directory.resolve("checkpoint"), new byte[]{0, 0, 0, 99});
+
+        try (KeyIndexFile index = new KeyIndexFile(directory, 16)) {
+            assertThat(index.count()).isZero();
+            assertThat(index.nextOffsets()).isEmpty();
+            assertThat(index.get(bytes("a"))).isNull();
+        }
+    }
+
+    private String[] files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toArray(String[]::new);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+}
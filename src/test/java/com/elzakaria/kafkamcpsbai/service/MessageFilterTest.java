@@ -0,0 +1,89 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Record criteria of message search, on JSON, plain text, binary and missing values.
+ */
+class MessageFilterTest {
+
+    private static final List<ConsumerRecord<byte[], byte[]>> MIXED = List.of(
+            record("a", "{\"order\":{\"id\":7}}"),
+            record("b", "plain text"),
+            record("c", "{\"order\":"),
+            new ConsumerRecord<>("orders", 0, 3, bytes("d"), new byte[]{(byte) 0xff, 0, 1, 2}),
+            record("e", null),
+            record("f", "{\"order\":{\"id\":8}}"));
+
+    @Test
+    void jsonPathSkipsValuesThatAreNotJson() {
+        MessageFilter filter = MessageFilter.builder().jsonPath("$.order.id").build();
+
+        assertThat(MIXED).filteredOn(filter).extracting(record -> text(record.key())).containsExactly("a", "f");
+    }
+
+    @Test
+    void jsonPathComparesTheResultWhenAValueIsGiven() {
+        MessageFilter filter = MessageFilter.builder().jsonPath("$.order.id").jsonValue("8").build();
+
+        assertThat(MIXED).filteredOn(filter).extracting(record -> text(record.key())).containsExactly("f");
+    }
+
+    @Test
+    void everyCriterionMustMatch() {
+        MessageFilter filter = MessageFilter.builder().keyRegex("[a-c]").valueContains("order").build();
+
+        assertThat(MIXED).filteredOn(filter).extracting(record -> text(record.key())).containsExactly("a", "c");
+    }
+
+    @Test
+    void keyAndValueCriteriaAllCompareTheDecodedText() {
+        // Stands in for a schema registry: the payload after a 5-byte wire-format header is the text
+        PayloadDecoder decoder = new PayloadDecoder(null, PayloadDecoder.BASE64) {
+            @Override
+            public String decodeText(byte[] bytes) {
+                return new String(bytes, 5, bytes.length - 5, StandardCharsets.UTF_8);
+            }
+        };
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>("orders", 0, 0,
+                wireFormat("order-7"), wireFormat("{\"status\":\"shipped\"}"));
+
+        assertThat(MessageFilter.builder().keyEquals("order-7").decoder(decoder).build()).accepts(record);
+        assertThat(MessageFilter.builder().keyRegex("^order-\\d$").decoder(decoder).build()).accepts(record);
+        assertThat(MessageFilter.builder().valueContains("\"shipped\"}").decoder(decoder).build()).accepts(record);
+        assertThat(MessageFilter.builder().valueRegex("^\\{").decoder(decoder).build()).accepts(record);
+        assertThat(MessageFilter.builder().jsonPath("$.status").jsonValue("shipped").decoder(decoder).build())
+                .accepts(record);
+        assertThat(MessageFilter.builder().keyEquals("order-8").decoder(decoder).build()).rejects(record);
+    }
+
+    @Test
+    void emptyFilterMatchesEveryRecord() {
+        assertThat(MIXED).filteredOn(MessageFilter.builder().build()).hasSameSizeAs(MIXED);
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(String key, String value) {
+        return new ConsumerRecord<>("orders", 0, 0, bytes(key), value != null ? bytes(value) : null);
+    }
+
+    private static byte[] wireFormat(String text) {
+        byte[] payload = bytes(text);
+        byte[] bytes = new byte[5 + payload.length];
+        System.arraycopy(payload, 0, bytes, 5, payload.length);
+        return bytes;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
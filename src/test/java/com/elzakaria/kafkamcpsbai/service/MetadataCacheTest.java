@@ -0,0 +1,143 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.TopicInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Caching, background refresh and refresh failures of topic metadata.
+ */
+class MetadataCacheTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @Test
+    void servesCachedValuesUntilTheyAreInvalidated() throws Exception {
+        MetadataCache cache = cache(null);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.topic("orders", () -> topic("orders", loads.incrementAndGet()));
+        TopicInfo cached = cache.topic("orders", () -> topic("orders", loads.incrementAndGet()));
+        cache.invalidateTopic("orders");
+        TopicInfo reloaded = cache.topic("orders", () -> topic("orders", loads.incrementAndGet()));
+
+        assertThat(cached.getPartitionCount()).isEqualTo(1);
+        assertThat(reloaded.getPartitionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void missingTopicIsNotCached() throws Exception {
+        MetadataCache cache = cache(null);
+
+        assertThat(cache.topic("orders", () -> null)).isNull();
+        assertThat(cache.topic("orders", () -> topic("orders", 3)).getPartitionCount()).isEqualTo(3);
+    }
+
+    @Test
+    void loadFailureReachesTheCallerAndIsNotCached() throws Exception {
+        MetadataCache cache = cache(null);
+        ExecutionException failure = new ExecutionException(new IllegalStateException("broker down"));
+
+        assertThatThrownBy(() -> cache.topic("orders", () -> {
+            throw failure;
+        })).isSameAs(failure);
+        assertThat(cache.topic("orders", () -> topic("orders", 3)).getPartitionCount()).isEqualTo(3);
+    }
+
+    @Test
+    void staleEntryIsReloadedInTheBackground() throws Exception {
+        MetadataCache cache = cache(Duration.ofMillis(1));
+        AtomicInteger partitions = new AtomicInteger(1);
+        MetadataCache.Loader<TopicInfo> loader = () -> topic("orders", partitions.get());
+
+        assertThat(cache.topic("orders", loader).getPartitionCount()).isEqualTo(1);
+        partitions.set(4);
+        Thread.sleep(5);
+
+        // The stale value is served while the reload runs
+        assertThat(cache.topic("orders", loader).getPartitionCount()).isEqualTo(1);
+        await().atMost(WAIT).until(() -> cache.topic("orders", loader).getPartitionCount() == 4);
+    }
+
+    @Test
+    void refreshDropsATopicThatWasDeleted() throws Exception {
+        MetadataCache cache = cache(Duration.ofMillis(1));
+        AtomicReference<TopicInfo> broker = new AtomicReference<>(topic("orders", 1));
+        MetadataCache.Loader<TopicInfo> loader = broker::get;
+
+        cache.topic("orders", loader);
+        broker.set(null);
+        Thread.sleep(5);
+        cache.topic("orders", loader);
+
+        await().atMost(WAIT).until(() -> cache.topic("orders", loader) == null);
+    }
+
+    @Test
+    void failedRefreshKeepsTheStaleValue() throws Exception {
+        MetadataCache cache = cache(Duration.ofMillis(1));
+        AtomicInteger attempts = new AtomicInteger();
+        MetadataCache.Loader<TopicInfo> loader = () -> {
+            if (attempts.incrementAndGet() > 1) {
+                throw new ExecutionException(new IllegalStateException("broker down"));
+            }
+            return topic("orders", 1);
+        };
+
+        cache.topic("orders", loader);
+        Thread.sleep(5);
+        cache.topic("orders", loader);
+        await().atMost(WAIT).until(() -> attempts.get() >= 2);
+
+        assertThat(cache.topic("orders", loader).getPartitionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void bulkEntriesAreRefreshedThroughTheirOwnLoader() throws Exception {
+        MetadataCache cache = cache(Duration.ofMillis(1));
+        AtomicInteger bulkLoads = new AtomicInteger();
+        MetadataCache.BulkLoader<TopicInfo> bulk = names -> {
+            bulkLoads.incrementAndGet();
+            Map<String, TopicInfo> found = new HashMap<>();
+            names.stream().filter(name -> !name.equals("missing")).forEach(name -> found.put(name, topic(name, 1)));
+            return found;
+        };
+
+        Map<String, TopicInfo> loaded = cache.topics(Set.of("orders", "payments", "missing"), bulk,
+                name -> () -> name.equals("payments") ? null : topic(name, 2));
+        Thread.sleep(5);
+        cache.topic("orders", () -> null);
+        cache.topic("payments", () -> null);
+
+        assertThat(loaded).containsOnlyKeys("orders", "payments");
+        await().atMost(WAIT).until(() -> {
+            TopicInfo orders = cache.topic("orders", () -> null);
+            return orders != null && orders.getPartitionCount() == 2;
+        });
+        await().atMost(WAIT).until(() -> cache.topic("payments", () -> null) == null);
+        assertThat(bulkLoads).hasValue(1);
+    }
+
+    private static MetadataCache cache(Duration refreshAfter) {
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        properties.getCache().getTopics().setRefreshAfter(refreshAfter);
+        return new MetadataCache(properties, new SimpleMeterRegistry());
+    }
+
+    private static TopicInfo topic(String name, int partitions) {
+        return TopicInfo.builder().name(name).partitionCount(partitions).build();
+    }
+}
@@ -0,0 +1,174 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Decoding of schema registry wire-format payloads against a stub registry.
+ */
+class PayloadDecoderTest {
+
+    private static final String USER_SCHEMA = """
+            {"type":"record","name":"User","fields":[
+              {"name":"name","type":"string"},
+              {"name":"age","type":"int"}]}""";
+
+    private final Map<Integer, String> registered = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer registry;
+
+    @BeforeEach
+    void startRegistry() throws IOException {
+        registry = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        registry.createContext("/schemas/ids/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            String body = registered.get(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)));
+            int status = body != null ? 200 : 404;
+            byte[] response = (body != null ? body : "{\"error_code\":40403,\"message\":\"Schema not found\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        registry.start();
+    }
+
+    @AfterEach
+    void stopRegistry() {
+        registry.stop(0);
+    }
+
+    @Test
+    void decodesAvroWithTheRegisteredSchema() throws IOException {
+        registered.put(1, "{\"schema\":" + quote(USER_SCHEMA) + "}");
+        Schema schema = new Schema.Parser().parse(USER_SCHEMA);
+        GenericRecord user = new GenericData.Record(schema);
+        user.put("name", "alice");
+        user.put("age", 30);
+
+        PayloadDecoder.Decoded decoded = decoder(registryUrl()).decode(wireFormat(1, avro(schema, user)));
+
+        assertThat(decoded.format()).isEqualTo(PayloadDecoder.AVRO);
+        assertThat(decoded.schemaId()).isEqualTo(1);
+        assertThat(decoded.text()).isEqualTo("{\"name\": \"alice\", \"age\": 30}");
+    }
+
+    @Test
+    void decodesJsonSchemaPayloadsAsTheirJson() {
+        registered.put(2, "{\"schemaType\":\"JSON\",\"schema\":" + quote("{\"type\":\"object\"}") + "}");
+
+        PayloadDecoder.Decoded decoded = decoder(registryUrl())
+                .decode(wireFormat(2, "{\"id\":7}".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(decoded.format()).isEqualTo(PayloadDecoder.JSON);
+        assertThat(decoded.schemaId()).isEqualTo(2);
+        assertThat(decoded.text()).isEqualTo("{\"id\":7}");
+    }
+
+    @Test
+    void unknownSchemaIdFallsBackToBinaryAndIsNotAskedForAgain() {
+        PayloadDecoder decoder = decoder(registryUrl());
+        byte[] payload = wireFormat(99, new byte[]{1, 2, 3});
+
+        PayloadDecoder.Decoded first = decoder.decode(payload);
+        PayloadDecoder.Decoded second = decoder.decode(payload);
+
+        assertThat(first.format()).isEqualTo(PayloadDecoder.BASE64);
+        assertThat(first.schemaId()).isEqualTo(99);
+        assertThat(first.text()).isEqualTo(Base64.getEncoder().encodeToString(payload));
+        assertThat(second).isEqualTo(first);
+        // The failure is cached for failure-ttl
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void unreachableRegistryFallsBackToBinary() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        SchemaRegistryClient client = new SchemaRegistryClient(properties("http://localhost:" + closedPort),
+                new SimpleMeterRegistry());
+        byte[] payload = wireFormat(1, new byte[]{1, 2, 3});
+
+        PayloadDecoder.Decoded decoded = new PayloadDecoder(client, PayloadDecoder.HEX).decode(payload);
+
+        assertThat(client.schema(1).error()).isNotNull();
+        assertThat(decoded.format()).isEqualTo(PayloadDecoder.HEX);
+        assertThat(decoded.schemaId()).isEqualTo(1);
+        assertThat(decoded.text()).isEqualTo("0000000001010203");
+    }
+
+    @Test
+    void plainTextIsNotSentToTheRegistry() {
+        PayloadDecoder.Decoded decoded = decoder(registryUrl()).decode("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(decoded.text()).isEqualTo("hello");
+        assertThat(decoded.format()).isNull();
+        assertThat(requests).hasValue(0);
+    }
+
+    private String registryUrl() {
+        return "http://localhost:" + registry.getAddress().getPort();
+    }
+
+    private static PayloadDecoder decoder(String url) {
+        return new PayloadDecoder(new SchemaRegistryClient(properties(url), new SimpleMeterRegistry()),
+                PayloadDecoder.BASE64);
+    }
+
+    private static KafkaMcpProperties.SchemaRegistry properties(String url) {
+        KafkaMcpProperties.SchemaRegistry properties = new KafkaMcpProperties.SchemaRegistry();
+        properties.setUrl(url);
+        properties.setRequestTimeout(Duration.ofSeconds(2));
+        return properties;
+    }
+
+    private static byte[] wireFormat(int schemaId, byte[] payload) {
+        return ByteBuffer.allocate(5 + payload.length)
+                .put((byte) 0)
+                .putInt(schemaId)
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] avro(Schema schema, GenericRecord record) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static String quote(String json) {
+        return "\"" + json.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,161 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Offset chaining, expiry, size bound and invalidation of recently fetched records.
+ */
+class RecentRecordCacheTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+    private static final TopicPartition ORDERS = new TopicPartition("orders", 0);
+    private static final Consumer<ConsumerRecord<byte[], byte[]>> DISCARD = record -> {
+    };
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void readWalksAcrossOffsetGapsOfTheSameFetch() {
+        RecentRecordCache cache = cache(spec -> spec.setEnabled(true));
+        // Offsets 11, 13 and 14 were compacted away or are transaction markers
+        cache.put("local", List.of(record(10, "a"), record(12, "b"), record(15, "c")));
+        List<ConsumerRecord<byte[], byte[]>> read = new ArrayList<>();
+
+        long next = cache.read("local", ORDERS, 10, 100, read::add);
+
+        assertThat(read).extracting(ConsumerRecord::offset).containsExactly(10L, 12L, 15L);
+        // The successor of the last record was not fetched, so the broker is asked for the offset after it
+        assertThat(next).isEqualTo(16);
+    }
+
+    @Test
+    void readStopsAtMaxAndAtTheFirstOffsetNotCached() {
+        RecentRecordCache cache = cache(spec -> spec.setEnabled(true));
+        cache.put("local", List.of(record(10, "a"), record(12, "b"), record(15, "c")));
+        List<ConsumerRecord<byte[], byte[]>> read = new ArrayList<>();
+
+        assertThat(cache.read("local", ORDERS, 10, 2, read::add)).isEqualTo(15);
+        assertThat(read).hasSize(2);
+        read.clear();
+        assertThat(cache.read("local", ORDERS, 11, 100, read::add)).isEqualTo(11);
+        assertThat(read).isEmpty();
+    }
+
+    @Test
+    void separateFetchesAreNotChainedOverAGap() {
+        RecentRecordCache cache = cache(spec -> spec.setEnabled(true));
+        cache.put("local", List.of(record(10, "a")));
+        cache.put("local", List.of(record(12, "b")));
+        List<ConsumerRecord<byte[], byte[]>> read = new ArrayList<>();
+
+        // Whether offset 11 exists is unknown, so it is fetched
+        assertThat(cache.read("local", ORDERS, 10, 100, read::add)).isEqualTo(11);
+        assertThat(read).extracting(ConsumerRecord::offset).containsExactly(10L);
+    }
+
+    @Test
+    void recordsAreKeptPerClusterAndDroppedWithTheirTopic() {
+        RecentRecordCache cache = cache(spec -> spec.setEnabled(true));
+        cache.put("local", List.of(record(0, "a")));
+        cache.put("remote", List.of(record(0, "b")));
+        cache.put("local", List.of(new ConsumerRecord<>("payments", 0, 0, bytes("k"), bytes("c"))));
+
+        cache.invalidateTopic("local", "orders");
+
+        assertThat(cache.read("local", ORDERS, 0, 100, DISCARD)).isZero();
+        assertThat(cache.read("remote", ORDERS, 0, 100, DISCARD)).isEqualTo(1);
+        assertThat(cache.read("local", new TopicPartition("payments", 0), 0, 100, DISCARD)).isEqualTo(1);
+    }
+
+    @Test
+    void offHeapValuesAreCopiedBackWithTheRestOfTheRecord() {
+        RecentRecordCache cache = cache(spec -> spec.setOffHeap(true));
+        ConsumerRecord<byte[], byte[]> original = record(7, "shipped");
+        cache.put("local", List.of(original));
+        List<ConsumerRecord<byte[], byte[]>> read = new ArrayList<>();
+
+        cache.read("local", ORDERS, 7, 1, read::add);
+        cache.read("local", ORDERS, 7, 1, read::add);
+
+        assertThat(read).hasSize(2);
+        ConsumerRecord<byte[], byte[]> hit = read.getFirst();
+        assertThat(hit.value()).isEqualTo(original.value()).isNotSameAs(read.get(1).value());
+        assertThat(hit.key()).isEqualTo(original.key());
+        assertThat(hit.timestamp()).isEqualTo(original.timestamp());
+        assertThat(hit.timestampType()).isEqualTo(TimestampType.LOG_APPEND_TIME);
+        assertThat(hit.headers().lastHeader("trace").value()).isEqualTo(bytes("t-7"));
+        assertThat(hit.leaderEpoch()).contains(3);
+        assertThat(size("off-heap")).isEqualTo(original.value().length);
+    }
+
+    @Test
+    void expiredRecordsAreFetchedAgain() throws Exception {
+        RecentRecordCache cache = cache(spec -> spec.setTtl(Duration.ofMillis(50)));
+        cache.put("local", List.of(record(0, "a")));
+
+        Thread.sleep(100);
+
+        assertThat(cache.read("local", ORDERS, 0, 100, DISCARD)).isZero();
+    }
+
+    @Test
+    void cacheIsBoundedByRecordBytes() {
+        RecentRecordCache cache = cache(spec -> spec.setMaxSize(DataSize.ofKilobytes(4)));
+        String value = "x".repeat(500);
+
+        cache.put("local", IntStream.range(0, 50).mapToObj(offset -> record(offset, value)).toList());
+
+        // Each record weighs its overhead plus key, value and header bytes, about 680 bytes
+        await().atMost(WAIT).until(() -> size("total") <= 4096);
+        assertThat(size("total")).isPositive();
+    }
+
+    @Test
+    void disabledCacheReadsNothing() {
+        RecentRecordCache cache = cache(spec -> spec.setEnabled(false));
+        cache.put("local", List.of(record(0, "a")));
+
+        assertThat(cache.read("local", ORDERS, 0, 100, DISCARD)).isZero();
+    }
+
+    private RecentRecordCache cache(Consumer<KafkaMcpProperties.RecordCache> spec) {
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        spec.accept(properties.getRecordCache());
+        return new RecentRecordCache(properties, meterRegistry);
+    }
+
+    private double size(String memory) {
+        return meterRegistry.get("kafka.mcp.record.cache.size").tag("memory", memory).gauge().value();
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(long offset, String value) {
+        byte[] key = bytes("order-" + offset);
+        byte[] bytes = bytes(value);
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("trace", bytes("t-" + offset));
+        return new ConsumerRecord<>(ORDERS.topic(), ORDERS.partition(), offset, 1_000 + offset,
+                TimestampType.LOG_APPEND_TIME, key.length, bytes.length, key, bytes, headers, Optional.of(3));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,234 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Single-flight execution: who runs, who joins, what joiners receive and how long they wait.
+ */
+class RequestCoalescerTest {
+
+    private static final String OPERATION = "describeTopics";
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stopThreads() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalCallsRunOnce() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        BlockingCall call = new BlockingCall();
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        call.awaitStarted();
+
+        List<Future<List<String>>> joiners = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            joiners.add(executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0)));
+        }
+        await().atMost(WAIT).until(() -> joined(OPERATION) == 3);
+        call.release();
+
+        List<String> result = leader.get(WAIT.toSeconds(), TimeUnit.SECONDS);
+        for (Future<List<String>> joiner : joiners) {
+            assertThat(joiner.get(WAIT.toSeconds(), TimeUnit.SECONDS)).isSameAs(result);
+        }
+        assertThat(call.invocations).hasValue(1);
+    }
+
+    @Test
+    void differentOperationsAndArgumentsRunSeparately() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        BlockingCall call = new BlockingCall();
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        call.awaitStarted();
+
+        AtomicInteger others = new AtomicInteger();
+        coalescer.execute(OPERATION, () -> others.incrementAndGet(), "orders", 1);
+        coalescer.execute(OPERATION, () -> others.incrementAndGet(), "orders", null);
+        coalescer.execute("listOffsets", () -> others.incrementAndGet(), "orders", 0);
+        call.release();
+        leader.get(WAIT.toSeconds(), TimeUnit.SECONDS);
+
+        assertThat(others).hasValue(3);
+        assertThat(joined(OPERATION)).isZero();
+    }
+
+    @Test
+    void joinersFailWithTheExceptionOfTheLeadingCall() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        ExecutionException failure = new ExecutionException(new IllegalStateException("broker down"));
+        BlockingCall call = new BlockingCall(failure);
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        call.awaitStarted();
+        Future<List<String>> joiner = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        await().atMost(WAIT).until(() -> joined(OPERATION) == 1);
+        call.release();
+
+        // Future.get wraps what the task threw in another ExecutionException
+        assertThatThrownBy(() -> leader.get(WAIT.toSeconds(), TimeUnit.SECONDS)).cause().isSameAs(failure);
+        assertThatThrownBy(() -> joiner.get(WAIT.toSeconds(), TimeUnit.SECONDS)).cause().isSameAs(failure);
+        assertThat(call.invocations).hasValue(1);
+    }
+
+    @Test
+    void callAfterCompletionRunsAfresh() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        AtomicInteger invocations = new AtomicInteger();
+
+        int first = coalescer.execute(OPERATION, invocations::incrementAndGet, "orders", 0);
+        int second = coalescer.execute(OPERATION, invocations::incrementAndGet, "orders", 0);
+
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(2);
+        assertThat(joined(OPERATION)).isZero();
+    }
+
+    @Test
+    void callAfterAFailureRunsAfresh() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+
+        assertThatThrownBy(() -> coalescer.execute(OPERATION, () -> {
+            throw new IllegalStateException("broker down");
+        }, "orders", 0)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.execute(OPERATION, () -> "ok", "orders", 0)).isEqualTo("ok");
+    }
+
+    @Test
+    void disabledCoalescerRunsEveryCall() throws Exception {
+        RequestCoalescer coalescer = coalescer(false);
+        BlockingCall call = new BlockingCall();
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        call.awaitStarted();
+
+        AtomicInteger second = new AtomicInteger();
+        coalescer.execute(OPERATION, () -> second.incrementAndGet(), "orders", 0);
+        call.release();
+        leader.get(WAIT.toSeconds(), TimeUnit.SECONDS);
+
+        assertThat(second).hasValue(1);
+        assertThat(joined(OPERATION)).isZero();
+    }
+
+    @Test
+    void joinerGivesUpAtItsOwnDeadline() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        BlockingCall call = new BlockingCall();
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute(OPERATION, call, "orders", 0));
+        call.awaitStarted();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(200),
+                () -> coalescer.execute(OPERATION, call, "orders", 0)))
+                .isInstanceOf(TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(WAIT);
+
+        // The leading call is not affected and still completes
+        call.release();
+        assertThat(leader.get(WAIT.toSeconds(), TimeUnit.SECONDS)).containsExactly("orders");
+        assertThat(call.invocations).hasValue(1);
+    }
+
+    @Test
+    void joinerRunsTheCallItselfWhenTheLeaderRanOutOfItsOwnTime() throws Exception {
+        RequestCoalescer coalescer = coalescer(true);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger invocations = new AtomicInteger();
+        RequestCoalescer.Call<String> call = () -> {
+            if (invocations.incrementAndGet() == 1) {
+                // The leading call waits for the broker until its short deadline passes, with a call joined
+                started.countDown();
+                await().atMost(WAIT).until(() -> joined("listConsumerGroups") == 1);
+                while (!Deadline.expired()) {
+                    Thread.sleep(5);
+                }
+                throw Deadline.exceeded();
+            }
+            return "groups";
+        };
+        Future<String> leader = executor.submit(() -> Deadline.within(Duration.ofMillis(300),
+                () -> coalescer.execute("listConsumerGroups", call)));
+        assertThat(started.await(WAIT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+
+        String joined = Deadline.within(WAIT, () -> coalescer.execute("listConsumerGroups", call));
+
+        assertThat(joined).isEqualTo("groups");
+        assertThat(invocations).hasValue(2);
+        assertThat(joined("listConsumerGroups")).isEqualTo(1);
+        assertThatThrownBy(() -> leader.get(WAIT.toSeconds(), TimeUnit.SECONDS))
+                .cause().isInstanceOf(TimeoutException.class);
+    }
+
+    private RequestCoalescer coalescer(boolean enabled) {
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        properties.getCoalescing().setEnabled(enabled);
+        return new RequestCoalescer(properties, meterRegistry);
+    }
+
+    private double joined(String operation) {
+        Counter counter = meterRegistry.find("kafka.mcp.requests.coalesced").tag("operation", operation).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    /**
+     * A call that waits for {@link #release()} and then returns a fresh list, or throws {@code failure}.
+     */
+    private static final class BlockingCall implements RequestCoalescer.Call<List<String>> {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger invocations = new AtomicInteger();
+        private final ExecutionException failure;
+
+        BlockingCall() {
+            this(null);
+        }
+
+        BlockingCall(ExecutionException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public List<String> call() throws ExecutionException, InterruptedException {
+            invocations.incrementAndGet();
+            started.countDown();
+            released.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return new ArrayList<>(List.of("orders"));
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertThat(started.await(WAIT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.elzakaria.kafkamcpsbai.service;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.elzakaria.kafkamcpsbai.dto.ExportResult;
+import com.elzakaria.kafkamcpsbai.dto.ImportResult;
+import com.elzakaria.kafkamcpsbai.dto.ScanStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Export to a file and import back through {@link TopicTransfer} and {@link RecordFiles}, against an embedded
+ * broker: every layout and compression must reproduce partitions, timestamps, keys, values and headers exactly,
+ * and damaged files must fail the import rather than be read short.
+ */
+class TopicTransferTest {
+
+    private static final String SOURCE = "transfer-source";
+    /** Target of imports expected to fail part-way. */
+    private static final String DAMAGED = "transfer-damaged";
+    private static final Duration MAX_TIME = Duration.ofSeconds(30);
+
+    @TempDir
+    static Path directory;
+
+    private static EmbeddedKafkaKraftBroker broker;
+    private static KafkaClusters clusters;
+    private static KafkaCluster kafka;
+    private static TopicTransfer transfer;
+    private static List<Rec> produced;
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        broker = new EmbeddedKafkaKraftBroker(1, 2, SOURCE, DAMAGED);
+        broker.afterPropertiesSet();
+
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        KafkaMcpProperties.Cluster cluster = new KafkaMcpProperties.Cluster();
+        cluster.setBootstrapServers(broker.getBrokersAsString());
+        properties.getClusters().put("test", cluster);
+        properties.getTransfer().setDirectory(directory.resolve("transfer"));
+        // Smaller than the records written, so reads and writes cross buffer boundaries
+        properties.getTransfer().setBufferSize(DataSize.ofKilobytes(1));
+        properties.getKeyIndex().setDirectory(directory.resolve("key-index"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        clusters = new KafkaClusters(null, properties, PayloadDecoder.PLAIN, new ReadMetrics(registry), registry);
+        kafka = clusters.get("test");
+        transfer = new TopicTransfer(properties);
+
+        produced = produceSource();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        if (clusters != null) {
+            clusters.close();
+        }
+        if (broker != null) {
+            broker.destroy();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "ndjson, none",
+            "ndjson, gzip",
+            "ndjson, zstd",
+            "binary, none",
+            "binary, gzip",
+            "binary, zstd"
+    })
+    void exportedTopicImportsBackUnchanged(String format, String compression) throws Exception {
+        String fileName = "round-trip-" + format + "-" + compression;
+        String target = "transfer-target-" + format + "-" + compression;
+        broker.addTopics(new NewTopic(target, 2, (short) 1));
+
+        ExportResult exported = transfer.export(kafka, SOURCE, PartitionScanner.Bounds.none(), fileName, format,
+                compression, MAX_TIME);
+
+        assertThat(exported.getRecordsWritten()).isEqualTo(produced.size());
+        assertThat(exported.getStopReason()).isEqualTo(ScanBudget.COMPLETED);
+        assertThat(exported.getPartitions()).allMatch(ScanStats.PartitionProgress::isCompleted);
+        byte[] head = Arrays.copyOf(Files.readAllBytes(directory.resolve("transfer").resolve(fileName)), 4);
+        switch (compression) {
+            case "gzip" -> assertThat(HexFormat.of().formatHex(head)).startsWith("1f8b");
+            case "zstd" -> assertThat(HexFormat.of().formatHex(head)).isEqualTo("28b52ffd");
+            default -> assertThat(new String(head, StandardCharsets.UTF_8))
+                    .isEqualTo("binary".equals(format) ? "KMCP" : "{\"pa");
+        }
+
+        ImportResult imported = transfer.importFile(kafka, fileName, target, 0, true, true, MAX_TIME);
+
+        assertThat(imported.getRecordsRead()).isEqualTo(produced.size());
+        assertThat(imported.getRecordsSent()).isEqualTo(produced.size());
+        assertThat(imported.getFailureCount()).isZero();
+        assertThat(imported.getStopReason()).isEqualTo(ScanBudget.COMPLETED);
+        assertThat(readAll(target, produced.size())).containsExactlyElementsOf(produced);
+    }
+
+    @Test
+    void truncatedBinaryFileFailsTheImport() throws Exception {
+        Path file = export("truncated.kmcp", RecordFiles.BINARY, RecordFiles.NONE);
+        byte[] bytes = Files.readAllBytes(file);
+        // Cuts into the last record's trailing header count or header bytes
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThatThrownBy(() -> transfer.importFile(kafka, "truncated.kmcp", DAMAGED, 0, true, true,
+                MAX_TIME))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void truncatedCompressedFileFailsTheImport() throws Exception {
+        Path file = export("truncated.ndjson.gz", RecordFiles.NDJSON, RecordFiles.GZIP);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThatThrownBy(() -> transfer.importFile(kafka, "truncated.ndjson.gz", DAMAGED, 0, true,
+                true, MAX_TIME))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void corruptNdjsonFailsTheImport() throws Exception {
+        Files.createDirectories(directory.resolve("transfer"));
+        Files.writeString(directory.resolve("transfer").resolve("corrupt.ndjson"),
+                "{\"partition\":0,\"offset\":0,\"timestamp\":1,\"value\":\"ok\"}\n{\"partition\":0,\"value\":\n");
+
+        assertThatThrownBy(() -> transfer.importFile(kafka, "corrupt.ndjson", DAMAGED, 0, true, true,
+                MAX_TIME))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void unknownBinaryVersionIsRejected() throws Exception {
+        Files.createDirectories(directory.resolve("transfer"));
+        Files.write(directory.resolve("transfer").resolve("future.kmcp"), new byte[]{'K', 'M', 'C', 'P', 9});
+
+        assertThatThrownBy(() -> transfer.importFile(kafka, "future.kmcp", DAMAGED, 0, true, true,
+                MAX_TIME))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("version 9");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "-5, 0",
+            "1, -7"
+    })
+    void negativeCountsInABinaryFileAreRejected(int headerCount, int headerNameLength) throws Exception {
+        ByteBuffer record = ByteBuffer.allocate(64)
+                .put(new byte[]{'K', 'M', 'C', 'P', 1})
+                .putInt(0)
+                .putLong(0)
+                .putLong(1_700_000_000_000L)
+                .putInt(-1)
+                .putInt(2).put(utf8("ok"))
+                .putInt(headerCount)
+                .putInt(headerNameLength);
+        Files.createDirectories(directory.resolve("transfer"));
+        Files.write(directory.resolve("transfer").resolve("negative.kmcp"),
+                Arrays.copyOf(record.array(), record.position()));
+
+        assertThatThrownBy(() -> transfer.importFile(kafka, "negative.kmcp", DAMAGED, 0, true, true,
+                MAX_TIME))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("negative");
+    }
+
+    private static Path export(String fileName, String format, String compression) throws Exception {
+        ExportResult exported = transfer.export(kafka, SOURCE, PartitionScanner.Bounds.none(), fileName, format,
+                compression, MAX_TIME);
+        assertThat(exported.getRecordsWritten()).isEqualTo(produced.size());
+        return directory.resolve("transfer").resolve(fileName);
+    }
+
+    /**
+     * Writes keyed, unkeyed, tombstone and non-UTF-8 records with and without headers to both partitions.
+     */
+    private static List<Rec> produceSource() throws Exception {
+        List<ProducerRecord<byte[], byte[]>> records = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+        records.add(new ProducerRecord<>(SOURCE, 0, timestamp++, utf8("k1"), utf8("{\"n\":1}"),
+                List.<Header>of(new RecordHeader("trace", utf8("abc")))));
+        records.add(new ProducerRecord<>(SOURCE, 0, timestamp++, null, utf8("no key")));
+        records.add(new ProducerRecord<>(SOURCE, 1, timestamp++, utf8("k2"), null,
+                List.<Header>of(new RecordHeader("empty", (byte[]) null))));
+        records.add(new ProducerRecord<>(SOURCE, 1, timestamp++, new byte[]{(byte) 0xff, 0},
+                new byte[]{(byte) 0xc3, 0x28}, List.<Header>of(new RecordHeader("binary", new byte[]{(byte) 0xfe}),
+                new RecordHeader("text", utf8("é")))));
+        for (int i = 0; i < 200; i++) {
+            records.add(new ProducerRecord<>(SOURCE, i % 2, timestamp++, utf8("key-" + i),
+                    utf8("value-" + i + "-" + "x".repeat(i * 10))));
+        }
+
+        try (KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class))) {
+            for (ProducerRecord<byte[], byte[]> record : records) {
+                producer.send(record).get();
+            }
+        }
+        return readAll(SOURCE, records.size());
+    }
+
+    private static List<Rec> readAll(String topic, int expected) {
+        List<Rec> records = new ArrayList<>();
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class))) {
+            List<TopicPartition> partitions = List.of(new TopicPartition(topic, 0), new TopicPartition(topic, 1));
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            long end = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (records.size() < expected && System.nanoTime() - end < 0) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(200))) {
+                    records.add(Rec.of(record));
+                }
+            }
+        }
+        // Order is only defined within a partition
+        records.sort((a, b) -> Integer.compare(a.partition(), b.partition()));
+        return records;
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * What must survive a round trip; bytes as hex so that equality compares content.
+     */
+    private record Rec(int partition, long timestamp, String key, String value, List<String> headers) {
+
+        static Rec of(ConsumerRecord<byte[], byte[]> record) {
+            List<String> headers = new ArrayList<>();
+            for (Header header : record.headers()) {
+                headers.add(header.key() + "=" + hex(header.value()));
+            }
+            return new Rec(record.partition(), record.timestamp(), hex(record.key()), hex(record.value()), headers);
+        }
+
+        private static String hex(byte[] bytes) {
+            return bytes != null ? HexFormat.of().formatHex(bytes) : null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.elzakaria.kafkamcpsbai.tool;
+
+import com.elzakaria.kafkamcpsbai.config.KafkaMcpProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The response byte budget, string truncation and the truncation summary.
+ */
+class ResponseRendererTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * A bean result, rendered through the unwrapping serializer rather than as a map.
+     */
+    record Page(String topic, List<String> items) {
+    }
+
+    @Test
+    void smallResponseIsWrittenWhole() throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", "orders");
+        result.put("items", List.of("a", "b"));
+
+        String rendered = renderer(DataSize.ofKilobytes(256), 4096).render(result);
+
+        assertThat(rendered).isEqualTo("{\"topic\":\"orders\",\"items\":[\"a\",\"b\"]}");
+    }
+
+    @Test
+    void listElementsPastTheBudgetAreDroppedAndEstimated() throws Exception {
+        List<String> items = items(100);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", "orders");
+        result.put("items", items);
+        result.put("count", 100);
+
+        String rendered = renderer(DataSize.ofBytes(1000), 4096).render(result);
+        JsonNode json = JSON.readTree(rendered);
+
+        List<String> kept = new ArrayList<>();
+        json.get("items").forEach(item -> kept.add(item.asText()));
+        assertThat(kept).isNotEmpty().hasSizeLessThan(100);
+        assertThat(kept).containsExactlyElementsOf(items.subList(0, kept.size()));
+        // Fields after the list are still written
+        assertThat(json.get("count").asInt()).isEqualTo(100);
+
+        JsonNode truncation = json.get("truncation");
+        assertThat(truncation.get("maxBytes").asLong()).isEqualTo(1000);
+        assertThat(truncation.get("droppedItems").asLong()).isEqualTo(100 - kept.size());
+        // Every item is 103 bytes with its quotes and comma
+        long dropped = 100L - kept.size();
+        assertThat(truncation.get("droppedBytes").asLong()).isBetween(dropped * 100, dropped * 110);
+        assertThat(truncation.get("truncatedValues").asLong()).isZero();
+
+        // Only the summary and the fields after the list may go past the budget
+        String withoutSummary = rendered.substring(0, rendered.indexOf(",\"count\""));
+        assertThat(withoutSummary.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(1000);
+    }
+
+    @Test
+    void beanResultGetsTheSummaryToo() throws Exception {
+        JsonNode json = JSON.readTree(renderer(DataSize.ofBytes(500), 4096).render(new Page("orders", items(50))));
+
+        assertThat(json.get("topic").asText()).isEqualTo("orders");
+        assertThat(json.get("items").size() + json.get("truncation").get("droppedItems").asInt()).isEqualTo(50);
+    }
+
+    @Test
+    void topLevelListIsCutWithoutASummary() throws Exception {
+        JsonNode json = JSON.readTree(renderer(DataSize.ofBytes(500), 4096).render(items(50)));
+
+        assertThat(json.isArray()).isTrue();
+        assertThat(json.size()).isBetween(1, 49);
+        assertThat(json.get(0).asText()).isEqualTo(items(1).getFirst());
+    }
+
+    @Test
+    void longStringsAreCutWithAMarker() throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("short", "abcdefghij");
+        result.put("long", "abcdefghijklmnop");
+        // Cutting after nine characters keeps the surrogate pair of the emoji together
+        result.put("emoji", "123456789\uD83D\uDE00xyz");
+
+        JsonNode json = JSON.readTree(renderer(DataSize.ofKilobytes(256), 10).render(result));
+
+        assertThat(json.get("short").asText()).isEqualTo("abcdefghij");
+        assertThat(json.get("long").asText()).isEqualTo("abcdefghij…[truncated 6 chars]");
+        assertThat(json.get("emoji").asText()).isEqualTo("123456789…[truncated 5 chars]");
+        assertThat(json.get("truncation").get("truncatedValues").asLong()).isEqualTo(2);
+        assertThat(json.get("truncation").get("droppedItems").asLong()).isZero();
+    }
+
+    @Test
+    void errorsAreEscapedAndNeverTruncated() throws Exception {
+        String message = "bad \"quote\" " + "x".repeat(100);
+
+        String rendered = renderer(DataSize.ofBytes(10), 10).renderError(message);
+
+        assertThat(rendered).startsWith(ResponseRenderer.ERROR_PREFIX);
+        assertThat(JSON.readTree(rendered).get("error").asText()).isEqualTo(message);
+    }
+
+    private static ResponseRenderer renderer(DataSize maxBytes, int maxValueLength) {
+        KafkaMcpProperties properties = new KafkaMcpProperties();
+        properties.getResponse().setMaxBytes(maxBytes);
+        properties.getResponse().setMaxValueLength(maxValueLength);
+        return new ResponseRenderer(properties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Items of 100 characters each, numbered so that their order can be checked.
+     */
+    private static List<String> items(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> String.format("item-%03d-", i) + "x".repeat(91))
+                .toList();
+    }
+}